@@ -0,0 +1,470 @@
+package main.java.br.com.intuitivecare.comum;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Formato binário colunar entre o Teste 1 e o Teste 2 (arquivo .col).
+ *
+ * O CSV intermediário obriga cada passo a ler e separar todas as colunas de
+ * todas as linhas, mesmo usando duas delas. Aqui cada coluna fica num trecho
+ * contíguo do arquivo, e quem lê carrega só as colunas que usa:
+ * - TEXTO: dicionário ordenado + um int por linha (RazaoSocial, UF,
+ *   Modalidade, Trimestre e Ano têm poucos valores distintos)
+ * - CNPJ: long com os 14 dígitos
+ * - CENTAVOS: long em centavos (ponto fixo, sem parse de texto)
+ *
+ * Layout (little-endian, trechos alinhados em 8 bytes):
+ *   "COLN" | versão | linhas | linhas por bloco
+ *   por coluna: [dicionário] valores | exceções | estatísticas por bloco
+ *   diretório (nome, tipo, início de cada coluna) | início do diretório | "COLN"
+ *
+ * As estatísticas por bloco de LINHAS_POR_BLOCO linhas (mínimo, máximo, soma
+ * e quantidade de inválidos) deixam o leitor pular a checagem linha a linha
+ * de um bloco inteiro (ex.: bloco sem valor inválido e mínimo > 0).
+ *
+ * abrir() mapeia o arquivo em memória (FileChannel.map): ler(coluna) copia
+ * os valores com um get em lote, sem decodificar nada.
+ *
+ * exportarCSV() gera o CSV de antes (mesmo header e textos, inclusive os
+ * que não eram números), para quem ainda consome CSV.
+ */
+public final class ArquivoColunar implements Closeable {
+
+    public static final int LINHAS_POR_BLOCO = 65_536;
+
+    private static final int MAGICO = 0x4E4C4F43; // "COLN" em little-endian
+    private static final int VERSAO = 1;
+
+    private final String caminho;
+    private final FileChannel canal;
+    private final ByteBuffer dados;
+    private final int linhas;
+    private final int linhasPorBloco;
+    private final Map<String, Integer> inicios = new LinkedHashMap<>();
+    private final Map<String, Coluna.Tipo> tipos = new LinkedHashMap<>();
+
+    private ArquivoColunar(String caminho, FileChannel canal, ByteBuffer dados) throws IOException {
+        this.caminho = caminho;
+        this.canal = canal;
+        this.dados = dados;
+
+        if (dados.limit() < 24 || dados.getInt(0) != MAGICO || dados.getInt(dados.limit() - 4) != MAGICO) {
+            throw new IOException("Arquivo colunar inválido: " + caminho);
+        }
+        if (dados.getInt(4) != VERSAO) {
+            throw new IOException("Versão do arquivo colunar não suportada (" + dados.getInt(4) + "): " + caminho);
+        }
+        linhas = dados.getInt(8);
+        linhasPorBloco = dados.getInt(12);
+
+        ByteBuffer diretorio = leitura();
+        diretorio.position((int) dados.getLong(dados.limit() - 12));
+        int quantidade = diretorio.getInt();
+        for (int i = 0; i < quantidade; i++) {
+            String nome = lerTexto(diretorio);
+            tipos.put(nome, Coluna.Tipo.values()[diretorio.getInt()]);
+            inicios.put(nome, (int) diretorio.getLong());
+        }
+    }
+
+    /**
+     * Abre o arquivo mapeado em memória (só leitura)
+     */
+    public static ArquivoColunar abrir(String caminho) throws IOException {
+        FileChannel canal = FileChannel.open(Paths.get(caminho), StandardOpenOption.READ);
+        try {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("Arquivo colunar maior que 2 GB: " + caminho);
+            }
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            mapa.order(ByteOrder.LITTLE_ENDIAN);
+            return new ArquivoColunar(caminho, canal, mapa);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    public int linhas() {
+        return linhas;
+    }
+
+    public List<String> colunas() {
+        return new ArrayList<>(tipos.keySet());
+    }
+
+    public boolean temColuna(String nome) {
+        return tipos.containsKey(nome);
+    }
+
+    public Coluna.Tipo tipo(String nome) {
+        return tipos.get(nome);
+    }
+
+    /**
+     * Carrega só a coluna pedida
+     */
+    public Coluna ler(String nome) throws IOException {
+        ByteBuffer b = posicionar(nome);
+        Coluna.Tipo tipo = tipos.get(nome);
+
+        if (tipo == Coluna.Tipo.TEXTO) {
+            int entradas = b.getInt();
+            List<String> dicionario = new ArrayList<>(entradas);
+            for (int i = 0; i < entradas; i++) dicionario.add(lerTexto(b));
+            alinhar(b);
+            int[] codigos = new int[linhas];
+            b.asIntBuffer().get(codigos);
+            b.position(b.position() + linhas * 4);
+            alinhar(b);
+            return lerExcecoes(b, nome, tipo, codigos, dicionario, null);
+        }
+
+        long[] valores = new long[linhas];
+        b.asLongBuffer().get(valores);
+        b.position(b.position() + linhas * 8);
+        return lerExcecoes(b, nome, tipo, null, null, valores);
+    }
+
+    /**
+     * Estatísticas por bloco da coluna (CNPJ e CENTAVOS)
+     */
+    public List<EstatisticasBloco> blocos(String nome) throws IOException {
+        ByteBuffer b = posicionar(nome);
+        if (tipos.get(nome) == Coluna.Tipo.TEXTO) return Collections.emptyList();
+
+        // Pula valores e exceções até as estatísticas
+        b.position(b.position() + linhas * 8);
+        pularExcecoes(b);
+
+        int quantidade = b.getInt();
+        b.getInt();
+        List<EstatisticasBloco> blocos = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            int inicio = i * linhasPorBloco;
+            blocos.add(new EstatisticasBloco(inicio, Math.min(linhasPorBloco, linhas - inicio),
+                b.getLong(), b.getLong(), b.getLong(), b.getLong()));
+        }
+        return blocos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    /**
+     * Grava as colunas (todas com o mesmo número de linhas); o arquivo só
+     * aparece no caminho final depois de completo
+     */
+    public static void gravar(String caminho, List<Coluna> colunas) throws IOException {
+        Path destino = Paths.get(caminho);
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = new FileOutputStream(temporario.toFile())) {
+                gravar(out, colunas);
+            }
+            mover(temporario, destino);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    public static void gravar(OutputStream out, List<Coluna> colunas) throws IOException {
+        int linhas = colunas.isEmpty() ? 0 : colunas.get(0).tamanho();
+        for (Coluna coluna : colunas) {
+            if (coluna.tamanho() != linhas) {
+                throw new IllegalArgumentException("Coluna " + coluna.nome() + " com " + coluna.tamanho()
+                    + " linhas; esperado " + linhas);
+            }
+        }
+
+        Gravador g = new Gravador(out);
+        g.putInt(MAGICO).putInt(VERSAO).putInt(linhas).putInt(LINHAS_POR_BLOCO);
+
+        long[] posicoes = new long[colunas.size()];
+        for (int c = 0; c < colunas.size(); c++) {
+            posicoes[c] = g.posicao;
+            Coluna coluna = colunas.get(c);
+            if (coluna.tipo() == Coluna.Tipo.TEXTO) {
+                gravarTexto(g, coluna, linhas);
+            } else {
+                long[] valores = coluna.valores();
+                for (int i = 0; i < linhas; i++) g.putLong(valores[i]);
+                gravarExcecoes(g, coluna);
+                gravarEstatisticas(g, coluna, linhas);
+            }
+        }
+
+        long diretorio = g.posicao;
+        g.putInt(colunas.size());
+        for (int c = 0; c < colunas.size(); c++) {
+            g.putTexto(colunas.get(c).nome()).putInt(colunas.get(c).tipo().ordinal()).putLong(posicoes[c]);
+        }
+        g.putLong(diretorio).putInt(MAGICO);
+        g.flush();
+    }
+
+    /**
+     * CSV com as colunas do arquivo, na ordem gravada (header = nomes)
+     */
+    public static void exportarCSV(String caminhoColunar, String caminhoCSV) throws IOException {
+        try (ArquivoColunar arquivo = abrir(caminhoColunar)) {
+            List<Coluna> colunas = new ArrayList<>();
+            for (String nome : arquivo.colunas()) colunas.add(arquivo.ler(nome));
+            exportarCSV(colunas, caminhoCSV);
+        }
+    }
+
+    // CSV ao lado do .col (troca só a extensão do final: dados.col -> dados.csv)
+    public static String caminhoCSV(String caminhoColunar) {
+        String base = caminhoColunar.endsWith(".col")
+            ? caminhoColunar.substring(0, caminhoColunar.length() - ".col".length()) : caminhoColunar;
+        return base + ".csv";
+    }
+
+    public static void exportarCSV(List<Coluna> colunas, String caminhoCSV) throws IOException {
+        Path destino = Paths.get(caminhoCSV);
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        int linhas = colunas.isEmpty() ? 0 : colunas.get(0).tamanho();
+        try {
+            try (EscritorCSV escritor = EscritorCSV.abrir(temporario.toString(), StandardCharsets.UTF_8)) {
+                for (Coluna coluna : colunas) escritor.campo(coluna.nome());
+                escritor.fimLinha();
+                for (int i = 0; i < linhas; i++) {
+                    for (Coluna coluna : colunas) escritor.campo(coluna.texto(i));
+                    escritor.fimLinha();
+                }
+            }
+            mover(temporario, destino);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    // Rename atômico quando o sistema de arquivos suporta; senão, rename simples
+    private static void mover(Path temporario, Path destino) throws IOException {
+        try {
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Uso: java ... ArquivoColunar arquivo.col [arquivo.csv]
+     * Sem o segundo argumento, mostra as colunas e as estatísticas
+     */
+    public static void main(String[] args) throws IOException {
+        if (args == null || args.length == 0) {
+            System.out.println("Uso: ArquivoColunar arquivo.col [arquivo.csv]");
+            return;
+        }
+        if (args.length > 1) {
+            exportarCSV(args[0], args[1]);
+            System.out.println("CSV exportado: " + args[1]);
+            return;
+        }
+        try (ArquivoColunar arquivo = abrir(args[0])) {
+            System.out.println(args[0] + ": " + arquivo.linhas() + " linhas");
+            for (String nome : arquivo.colunas()) {
+                System.out.println("  " + nome + " (" + arquivo.tipo(nome) + ")");
+                for (EstatisticasBloco bloco : arquivo.blocos(nome)) System.out.println("    " + bloco);
+            }
+        }
+    }
+
+    /**
+     * Resumo de um bloco de linhas de uma coluna numérica. Valores inválidos
+     * (CNPJ -1, Dinheiro.INVALIDO) ficam fora de mínimo, máximo e soma.
+     */
+    public static final class EstatisticasBloco {
+        public final int inicio;
+        public final int linhas;
+        public final long minimo;
+        public final long maximo;
+        public final long soma;
+        public final long invalidos;
+
+        EstatisticasBloco(int inicio, int linhas, long minimo, long maximo, long soma, long invalidos) {
+            this.inicio = inicio;
+            this.linhas = linhas;
+            this.minimo = minimo;
+            this.maximo = maximo;
+            this.soma = soma;
+            this.invalidos = invalidos;
+        }
+
+        @Override
+        public String toString() {
+            return "linhas " + inicio + "-" + (inicio + linhas - 1) + ": min=" + minimo + " max=" + maximo
+                + " soma=" + soma + " invalidos=" + invalidos;
+        }
+    }
+
+    private ByteBuffer posicionar(String nome) throws IOException {
+        Integer inicio = inicios.get(nome);
+        if (inicio == null) throw new IOException("Coluna " + nome + " não existe em " + caminho);
+        ByteBuffer b = leitura();
+        b.position(inicio);
+        return b;
+    }
+
+    // Cópia independente da posição (o mapa é compartilhado); duplicate perde a ordem dos bytes
+    private ByteBuffer leitura() {
+        return dados.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private Coluna lerExcecoes(ByteBuffer b, String nome, Coluna.Tipo tipo, int[] codigos,
+                               List<String> dicionario, long[] valores) {
+        int quantidade = b.getInt();
+        int[] linhasExcecao = new int[quantidade];
+        String[] textos = new String[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            linhasExcecao[i] = b.getInt();
+            textos[i] = lerTexto(b);
+        }
+        alinhar(b);
+        if (tipo == Coluna.Tipo.TEXTO) return Coluna.deTexto(nome, codigos, dicionario, linhasExcecao, textos);
+        return Coluna.deValores(nome, tipo, valores, linhasExcecao, textos);
+    }
+
+    private static void pularExcecoes(ByteBuffer b) {
+        int quantidade = b.getInt();
+        for (int i = 0; i < quantidade; i++) {
+            b.getInt();
+            int tamanho = b.getInt();
+            b.position(b.position() + tamanho);
+        }
+        alinhar(b);
+    }
+
+    private static String lerTexto(ByteBuffer b) {
+        int tamanho = b.getInt();
+        byte[] bytes = new byte[tamanho];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void alinhar(ByteBuffer b) {
+        b.position((b.position() + 7) & ~7);
+    }
+
+    // Dicionário ordenado (mesmo arquivo para a mesma entrada), códigos remapeados
+    private static void gravarTexto(Gravador g, Coluna coluna, int linhas) throws IOException {
+        List<String> dicionario = coluna.dicionario();
+        Integer[] ordem = new Integer[dicionario.size()];
+        for (int i = 0; i < ordem.length; i++) ordem[i] = i;
+        Arrays.sort(ordem, Comparator.comparing(dicionario::get));
+        int[] novoCodigo = new int[ordem.length];
+        for (int i = 0; i < ordem.length; i++) novoCodigo[ordem[i]] = i;
+
+        g.putInt(ordem.length);
+        for (Integer codigo : ordem) g.putTexto(dicionario.get(codigo));
+        g.alinhar();
+        int[] codigos = coluna.codigos();
+        for (int i = 0; i < linhas; i++) g.putInt(novoCodigo[codigos[i]]);
+        g.alinhar();
+        gravarExcecoes(g, coluna);
+    }
+
+    private static void gravarExcecoes(Gravador g, Coluna coluna) throws IOException {
+        g.putInt(coluna.quantidadeExcecoes());
+        for (int i = 0; i < coluna.quantidadeExcecoes(); i++) {
+            g.putInt(coluna.linhaExcecao(i)).putTexto(coluna.textoExcecao(i));
+        }
+        g.alinhar();
+    }
+
+    private static void gravarEstatisticas(Gravador g, Coluna coluna, int linhas) throws IOException {
+        long invalido = coluna.tipo() == Coluna.Tipo.CNPJ ? -1 : Dinheiro.INVALIDO;
+        long[] valores = coluna.valores();
+        int quantidade = (linhas + LINHAS_POR_BLOCO - 1) / LINHAS_POR_BLOCO;
+        g.putInt(quantidade).putInt(0);
+        for (int bloco = 0; bloco < quantidade; bloco++) {
+            long minimo = Long.MAX_VALUE;
+            long maximo = Long.MIN_VALUE;
+            long soma = 0;
+            long invalidos = 0;
+            int fim = Math.min(linhas, (bloco + 1) * LINHAS_POR_BLOCO);
+            for (int i = bloco * LINHAS_POR_BLOCO; i < fim; i++) {
+                long valor = valores[i];
+                if (valor == invalido) {
+                    invalidos++;
+                    continue;
+                }
+                if (valor < minimo) minimo = valor;
+                if (valor > maximo) maximo = valor;
+                if (coluna.tipo() == Coluna.Tipo.CENTAVOS) soma += valor;
+            }
+            g.putLong(minimo).putLong(maximo).putLong(soma).putLong(invalidos);
+        }
+    }
+
+    // Buffer little-endian sobre o OutputStream, contando a posição no arquivo
+    private static final class Gravador {
+        private final OutputStream out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long posicao = 0;
+
+        Gravador(OutputStream out) {
+            this.out = out;
+        }
+
+        Gravador putInt(int valor) throws IOException {
+            garantir(4);
+            buffer.putInt(valor);
+            posicao += 4;
+            return this;
+        }
+
+        Gravador putLong(long valor) throws IOException {
+            garantir(8);
+            buffer.putLong(valor);
+            posicao += 8;
+            return this;
+        }
+
+        Gravador putTexto(String texto) throws IOException {
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            int escrito = 0;
+            while (escrito < bytes.length) {
+                garantir(1);
+                int n = Math.min(buffer.remaining(), bytes.length - escrito);
+                buffer.put(bytes, escrito, n);
+                escrito += n;
+            }
+            posicao += bytes.length;
+            return this;
+        }
+
+        void alinhar() throws IOException {
+            while ((posicao & 7) != 0) {
+                garantir(1);
+                buffer.put((byte) 0);
+                posicao++;
+            }
+        }
+
+        void flush() throws IOException {
+            out.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+            out.flush();
+        }
+
+        private void garantir(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                out.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package main.java.br.com.intuitivecare.comum;
+
+/**
+ * Validação de CNPJ (14 dígitos + dígitos verificadores) sem alocar nada.
+ *
+ * Lê o trecho de texto (ou de bytes, em laço separado) uma vez só,
+ * ignorando o que não é dígito (pontos, barra, hífen, aspas), e junta os
+ * 14 dígitos num long; os dígitos verificadores são conferidos sobre esse
+ * número, em valido(long).
+ * Sem replaceAll, sem regex e sem String por dígito.
+ *
+ * Pesos (Receita Federal):
+ *   1º DV: 5,4,3,2,9,8,7,6,5,4,3,2 sobre os 12 primeiros dígitos
+ *   2º DV: 6,5,4,3,2,9,8,7,6,5,4,3,2 sobre os 13 primeiros dígitos
+ *   DV = 11 - (soma % 11), ou 0 se o resto for menor que 2
+ * Sequências repetidas (00000000000000, 11111111111111...) são inválidas.
+ *
+ * Para uma coluna inteira há o validar(...) em lote, que preenche um
+ * boolean[] reaproveitável e retorna quantos são válidos.
+ */
+public final class CNPJ {
+
+    // PESOS[k] é o peso do dígito k no 2º DV; PESOS[k + 1], no 1º DV
+    private static final int[] PESOS = {6, 5, 4, 3, 2, 9, 8, 7, 6, 5, 4, 3, 2};
+
+    private CNPJ() {
+    }
+
+    public static boolean valido(CharSequence cnpj) {
+        return cnpj != null && valido(cnpj, 0, cnpj.length());
+    }
+
+    // Valida o trecho [inicio, fim) do texto
+    public static boolean valido(CharSequence texto, int inicio, int fim) {
+        return valido(digitos(texto, inicio, fim));
+    }
+
+    // Mesmo algoritmo sobre bytes ASCII (ex.: campo de uma linha lida direto do arquivo)
+    public static boolean valido(byte[] b, int inicio, int fim) {
+        return valido(digitos(b, inicio, fim));
+    }
+
+    // Os 14 dígitos do trecho como número (ignora pontos, barra, hífen, aspas); -1 se não forem 14
+    public static long digitos(CharSequence texto, int inicio, int fim) {
+        long cnpj = 0;
+        int digitos = 0;
+        for (int i = inicio; i < fim; i++) {
+            int d = texto.charAt(i) - '0';
+            if (d < 0 || d > 9) continue;
+            if (++digitos > 14) return -1;
+            cnpj = cnpj * 10 + d;
+        }
+        return digitos == 14 ? cnpj : -1;
+    }
+
+    // Mesma leitura sobre bytes ASCII (laço próprio, para o JIT não misturar os dois tipos)
+    public static long digitos(byte[] b, int inicio, int fim) {
+        long cnpj = 0;
+        int digitos = 0;
+        for (int i = inicio; i < fim; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) continue;
+            if (++digitos > 14) return -1;
+            cnpj = cnpj * 10 + d;
+        }
+        return digitos == 14 ? cnpj : -1;
+    }
+
+    // CNPJ já guardado como número (ex.: coluna do ArquivoColunar); negativo = texto sem 14 dígitos
+    public static boolean valido(long cnpj) {
+        if (cnpj < 0 || cnpj > 99_999_999_999_999L) return false;
+        int primeiro = (int) (cnpj / 10_000_000_000_000L);
+        boolean repetido = true;
+        int soma1 = 0;
+        int soma2 = 0;
+
+        long divisor = 10_000_000_000_000L;
+        for (int k = 0; k < 12; k++) {
+            int d = (int) (cnpj / divisor % 10);
+            if (d != primeiro) repetido = false;
+            soma1 += d * PESOS[k + 1];
+            soma2 += d * PESOS[k];
+            divisor /= 10;
+        }
+        int dv1 = (int) (cnpj / 10 % 10);
+        int dv2 = (int) (cnpj % 10);
+        if (dv1 != primeiro || dv2 != primeiro) repetido = false;
+        soma2 += dv1 * PESOS[12];
+
+        return !repetido && dv1 == digitoVerificador(soma1) && dv2 == digitoVerificador(soma2);
+    }
+
+    /**
+     * Valida os "quantidade" primeiros CNPJs da coluna, gravando o resultado
+     * de cada um em validos[i]. Retorna quantos são válidos.
+     */
+    public static int validar(CharSequence[] coluna, int quantidade, boolean[] validos) {
+        int total = 0;
+        for (int i = 0; i < quantidade; i++) {
+            boolean ok = valido(coluna[i]);
+            validos[i] = ok;
+            if (ok) total++;
+        }
+        return total;
+    }
+
+    // Lote sobre um buffer de bytes: o CNPJ i está em [inicios[i], fins[i])
+    public static int validar(byte[] dados, int[] inicios, int[] fins, int quantidade, boolean[] validos) {
+        int total = 0;
+        for (int i = 0; i < quantidade; i++) {
+            boolean ok = valido(dados, inicios[i], fins[i]);
+            validos[i] = ok;
+            if (ok) total++;
+        }
+        return total;
+    }
+
+    private static int digitoVerificador(int soma) {
+        int resto = soma % 11;
+        return resto < 2 ? 0 : 11 - resto;
+    }
+}
@@ -0,0 +1,293 @@
+package main.java.br.com.intuitivecare.comum;
+
+import java.util.*;
+
+/**
+ * Uma coluna do ArquivoColunar, em memória, em arrays primitivos.
+ *
+ * Tipos:
+ * - TEXTO: dicionário (cada texto distinto uma vez) + um código int por linha;
+ *   RazaoSocial, UF, Modalidade e Trimestre têm poucos valores distintos
+ * - CNPJ: long com os 14 dígitos (-1 se o texto não tiver 14 dígitos)
+ * - CENTAVOS: long em centavos (Dinheiro.INVALIDO se não for número)
+ *
+ * Nada se perde: quando o texto original não é o que sai do número
+ * ("N/A", CNPJ com máscara, "0,5" em vez de "0,50"), ele fica numa lista de
+ * exceções por linha, e texto(i) devolve o original. Assim a exportação
+ * para CSV reproduz o arquivo de antes.
+ *
+ * Uma coluna montada (adicionar) não é thread-safe; depois de pronta, a
+ * leitura (texto, valor, codigo) pode ser feita por várias threads.
+ */
+public final class Coluna {
+
+    public enum Tipo { TEXTO, CNPJ, CENTAVOS }
+
+    private final String nome;
+    private final Tipo tipo;
+    private int tamanho = 0;
+
+    // TEXTO
+    private int[] codigos;
+    private List<String> dicionario;
+    private Map<String, Integer> indices;
+
+    // CNPJ e CENTAVOS
+    private long[] valores;
+
+    // Linhas (em ordem crescente) cujo texto não sai do valor, e esses textos
+    private int[] linhasExcecao = new int[0];
+    private String[] textosExcecao = new String[0];
+    private int excecoes = 0;
+
+    private final StringBuilder formatado = new StringBuilder(24);
+
+    private Coluna(String nome, Tipo tipo) {
+        this.nome = nome;
+        this.tipo = tipo;
+        if (tipo == Tipo.TEXTO) {
+            codigos = new int[1024];
+            dicionario = new ArrayList<>();
+        } else {
+            valores = new long[1024];
+        }
+    }
+
+    public static Coluna texto(String nome) {
+        return new Coluna(nome, Tipo.TEXTO);
+    }
+
+    public static Coluna cnpj(String nome) {
+        return new Coluna(nome, Tipo.CNPJ);
+    }
+
+    public static Coluna centavos(String nome) {
+        return new Coluna(nome, Tipo.CENTAVOS);
+    }
+
+    // Coluna lida do arquivo (ArquivoColunar.ler)
+    static Coluna deTexto(String nome, int[] codigos, List<String> dicionario, int[] linhasExcecao, String[] textosExcecao) {
+        Coluna coluna = new Coluna(nome, Tipo.TEXTO);
+        coluna.codigos = codigos;
+        coluna.dicionario = dicionario;
+        coluna.tamanho = codigos.length;
+        coluna.definirExcecoes(linhasExcecao, textosExcecao);
+        return coluna;
+    }
+
+    static Coluna deValores(String nome, Tipo tipo, long[] valores, int[] linhasExcecao, String[] textosExcecao) {
+        Coluna coluna = new Coluna(nome, tipo);
+        coluna.valores = valores;
+        coluna.tamanho = valores.length;
+        coluna.definirExcecoes(linhasExcecao, textosExcecao);
+        return coluna;
+    }
+
+    /**
+     * Acrescenta o valor de uma linha, a partir do texto do CSV
+     */
+    public void adicionar(CharSequence texto) {
+        switch (tipo) {
+            case TEXTO:
+                adicionarTexto(texto.toString());
+                break;
+            case CNPJ:
+                adicionarCNPJ(texto);
+                break;
+            default:
+                adicionarCentavos(texto);
+                break;
+        }
+        tamanho++;
+    }
+
+    public String nome() {
+        return nome;
+    }
+
+    public Tipo tipo() {
+        return tipo;
+    }
+
+    public int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Texto original da linha (como estava no CSV)
+     */
+    public String texto(int linha) {
+        int excecao = excecao(linha);
+        if (excecao >= 0) return textosExcecao[excecao];
+        switch (tipo) {
+            case TEXTO:
+                return dicionario.get(codigos[linha]);
+            case CNPJ:
+                return formatarCNPJ(valores[linha]);
+            default:
+                return Dinheiro.formatar(valores[linha]);
+        }
+    }
+
+    // CNPJ (14 dígitos, -1 se não tiver) ou centavos (Dinheiro.INVALIDO se não for número)
+    public long valor(int linha) {
+        return valores[linha];
+    }
+
+    // Código da linha no dicionário (TEXTO)
+    public int codigo(int linha) {
+        return codigos[linha];
+    }
+
+    public int tamanhoDicionario() {
+        return dicionario.size();
+    }
+
+    public String entrada(int codigo) {
+        return dicionario.get(codigo);
+    }
+
+    public boolean temExcecao(int linha) {
+        return excecao(linha) >= 0;
+    }
+
+    /**
+     * Nova coluna só com as linhas pedidas (em ordem crescente), mesmo dicionário
+     */
+    public Coluna selecionar(int[] linhas, int quantidade) {
+        Coluna nova = new Coluna(nome, tipo);
+        if (tipo == Tipo.TEXTO) {
+            nova.dicionario = dicionario;
+            nova.codigos = new int[quantidade];
+            for (int i = 0; i < quantidade; i++) nova.codigos[i] = codigos[linhas[i]];
+        } else {
+            nova.valores = new long[quantidade];
+            for (int i = 0; i < quantidade; i++) nova.valores[i] = valores[linhas[i]];
+        }
+        nova.tamanho = quantidade;
+        for (int i = 0; i < quantidade; i++) {
+            int excecao = excecao(linhas[i]);
+            if (excecao >= 0) nova.acrescentarExcecao(i, textosExcecao[excecao]);
+        }
+        return nova;
+    }
+
+    // Usados pelo ArquivoColunar na gravação
+    int[] codigos() {
+        return codigos;
+    }
+
+    List<String> dicionario() {
+        return dicionario;
+    }
+
+    long[] valores() {
+        return valores;
+    }
+
+    int quantidadeExcecoes() {
+        return excecoes;
+    }
+
+    int linhaExcecao(int i) {
+        return linhasExcecao[i];
+    }
+
+    String textoExcecao(int i) {
+        return textosExcecao[i];
+    }
+
+    /**
+     * CNPJ com 14 dígitos (zeros à esquerda)
+     */
+    public static String formatarCNPJ(long cnpj) {
+        if (cnpj < 0) return "";
+        char[] digitos = new char[14];
+        for (int i = 13; i >= 0; i--) {
+            digitos[i] = (char) ('0' + cnpj % 10);
+            cnpj /= 10;
+        }
+        return new String(digitos);
+    }
+
+    private void adicionarTexto(String texto) {
+        Integer codigo = indices().get(texto);
+        if (codigo == null) {
+            codigo = dicionario.size();
+            dicionario.add(texto);
+            indices.put(texto, codigo);
+        }
+        if (tamanho == codigos.length) codigos = Arrays.copyOf(codigos, tamanho * 2);
+        codigos[tamanho] = codigo;
+    }
+
+    private void adicionarCNPJ(CharSequence texto) {
+        // Só os dígitos; o texto vai para as exceções se não for exatamente os 14 dígitos
+        long cnpj = 0;
+        int digitos = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            int d = texto.charAt(i) - '0';
+            if (d < 0 || d > 9) continue;
+            if (++digitos > 14) break;
+            cnpj = cnpj * 10 + d;
+        }
+        if (digitos != 14) cnpj = -1;
+        // 14 dígitos e nada mais: o texto sai do número (formatarCNPJ)
+        if (digitos != 14 || texto.length() != 14) acrescentarExcecao(tamanho, texto.toString());
+        guardarValor(cnpj);
+    }
+
+    private void adicionarCentavos(CharSequence texto) {
+        long centavos = Dinheiro.centavos(texto);
+        formatado.setLength(0);
+        if (centavos == Dinheiro.INVALIDO || !iguais(Dinheiro.formatar(centavos, formatado), texto)) {
+            acrescentarExcecao(tamanho, texto.toString());
+        }
+        guardarValor(centavos);
+    }
+
+    private void guardarValor(long valor) {
+        if (tamanho == valores.length) valores = Arrays.copyOf(valores, tamanho * 2);
+        valores[tamanho] = valor;
+    }
+
+    private Map<String, Integer> indices() {
+        if (indices == null) {
+            indices = new HashMap<>();
+            for (int i = 0; i < dicionario.size(); i++) indices.put(dicionario.get(i), i);
+        }
+        return indices;
+    }
+
+    private void acrescentarExcecao(int linha, String texto) {
+        if (excecoes == linhasExcecao.length) {
+            int novo = Math.max(16, excecoes * 2);
+            linhasExcecao = Arrays.copyOf(linhasExcecao, novo);
+            textosExcecao = Arrays.copyOf(textosExcecao, novo);
+        }
+        linhasExcecao[excecoes] = linha;
+        textosExcecao[excecoes] = texto;
+        excecoes++;
+    }
+
+    private void definirExcecoes(int[] linhas, String[] textos) {
+        linhasExcecao = linhas;
+        textosExcecao = textos;
+        excecoes = linhas.length;
+    }
+
+    // Posição da linha na lista de exceções, ou -1
+    private int excecao(int linha) {
+        if (excecoes == 0) return -1;
+        int i = Arrays.binarySearch(linhasExcecao, 0, excecoes, linha);
+        return i >= 0 ? i : -1;
+    }
+
+    private static boolean iguais(CharSequence a, CharSequence b) {
+        if (a.length() != b.length()) return false;
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,248 @@
+package main.java.br.com.intuitivecare.comum;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Valor monetário em centavos (long), usado pelo Teste 1 e pelo Teste 2.
+ *
+ * Por que não double: Double.parseDouble(valor.replace(",", ".")) cria uma
+ * String nova a cada valor e acumula erro de arredondamento em somas grandes.
+ * Com centavos em long, a soma é exata até ~92 quatrilhões de reais.
+ *
+ * O parser aceita os formatos que aparecem nos arquivos da ANS e trabalha
+ * direto sobre um trecho de String/char/byte, sem alocar nada:
+ *   1234,56   -1234,56   1.234.567,89   "1234,56"   1234.56   +10   (1.234,56)
+ * - com vírgula, ela é a casa decimal e os pontos são separadores de milhar
+ * - sem vírgula, um único ponto é a casa decimal; vários pontos são milhares
+ * - mais de 2 casas decimais: arredonda (meio para cima, longe do zero)
+ * - aspas e espaços nas pontas são ignorados; parênteses = negativo
+ * Valor que não é número (ou não cabe em long) vira INVALIDO.
+ */
+public final class Dinheiro implements Comparable<Dinheiro> {
+
+    // Retorno dos parsers para texto que não é valor monetário
+    public static final long INVALIDO = Long.MIN_VALUE;
+
+    public static final Dinheiro ZERO = new Dinheiro(0);
+
+    private static final long LIMITE = (Long.MAX_VALUE - 99) / 100;
+
+    private final long centavos;
+
+    private Dinheiro(long centavos) {
+        this.centavos = centavos;
+    }
+
+    public static Dinheiro deCentavos(long centavos) {
+        return centavos == 0 ? ZERO : new Dinheiro(centavos);
+    }
+
+    // Valor a partir do texto; IllegalArgumentException se não for número
+    public static Dinheiro de(CharSequence texto) {
+        long c = centavos(texto);
+        if (c == INVALIDO) throw new IllegalArgumentException("Valor monetário inválido: " + texto);
+        return deCentavos(c);
+    }
+
+    public long centavos() {
+        return centavos;
+    }
+
+    public Dinheiro somar(Dinheiro outro) {
+        return deCentavos(Math.addExact(centavos, outro.centavos));
+    }
+
+    public boolean positivo() {
+        return centavos > 0;
+    }
+
+    // Para cálculos estatísticos (média, desvio); não use para somar valores
+    public double emReais() {
+        return centavos / 100.0;
+    }
+
+    // Exato, para formatar com String.format("%.2f", ...) respeitando o Locale
+    public BigDecimal emBigDecimal() {
+        return new BigDecimal(BigInteger.valueOf(centavos), 2);
+    }
+
+    // Formato dos arquivos da ANS: "1234,56" (sem separador de milhar)
+    @Override
+    public String toString() {
+        return formatar(centavos);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Dinheiro && ((Dinheiro) o).centavos == centavos;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(centavos);
+    }
+
+    @Override
+    public int compareTo(Dinheiro outro) {
+        return Long.compare(centavos, outro.centavos);
+    }
+
+    public static String formatar(long centavos) {
+        return formatar(centavos, new StringBuilder(24)).toString();
+    }
+
+    // Acrescenta "1234,56" ao StringBuilder (sem criar Strings intermediárias)
+    public static StringBuilder formatar(long centavos, StringBuilder destino) {
+        if (centavos < 0) destino.append('-');
+        // Long.MIN_VALUE não tem positivo; é o INVALIDO e não deveria chegar aqui
+        long absoluto = Math.abs(centavos);
+        long resto = absoluto % 100;
+        destino.append(absoluto / 100).append(',');
+        if (resto < 10) destino.append('0');
+        return destino.append(resto);
+    }
+
+    public static long centavos(CharSequence texto) {
+        return centavos(texto, 0, texto.length());
+    }
+
+    // Centavos do trecho [inicio, fim) do texto, ou INVALIDO
+    public static long centavos(CharSequence texto, int inicio, int fim) {
+        // Remove espaços e aspas das pontas
+        while (inicio < fim && ignoravel(texto.charAt(inicio))) inicio++;
+        while (fim > inicio && ignoravel(texto.charAt(fim - 1))) fim--;
+        if (inicio == fim) return INVALIDO;
+
+        boolean negativo = false;
+        if (texto.charAt(inicio) == '(' && texto.charAt(fim - 1) == ')') {
+            negativo = true;
+            inicio++;
+            fim--;
+        }
+        if (inicio < fim && (texto.charAt(inicio) == '-' || texto.charAt(inicio) == '+')) {
+            negativo ^= texto.charAt(inicio) == '-';
+            inicio++;
+        }
+
+        // Separador decimal: vírgula se houver; senão ponto, se for um só
+        char decimal = '.';
+        int pontos = 0;
+        for (int i = inicio; i < fim; i++) {
+            char c = texto.charAt(i);
+            if (c == ',') {
+                decimal = ',';
+                break;
+            }
+            if (c == '.') pontos++;
+        }
+        if (decimal == '.' && pontos > 1) decimal = 0;
+
+        long inteiro = 0;
+        long fracao = 0;
+        int casas = 0;
+        boolean naFracao = false;
+        boolean arredondar = false;
+        boolean algumDigito = false;
+
+        for (int i = inicio; i < fim; i++) {
+            char c = texto.charAt(i);
+            if (c >= '0' && c <= '9') {
+                algumDigito = true;
+                int d = c - '0';
+                if (!naFracao) {
+                    if (inteiro > LIMITE / 10) return INVALIDO;
+                    inteiro = inteiro * 10 + d;
+                } else if (casas < 2) {
+                    fracao = fracao * 10 + d;
+                    casas++;
+                } else if (casas == 2) {
+                    arredondar = d >= 5;
+                    casas++;
+                }
+            } else if (c == decimal && !naFracao) {
+                naFracao = true;
+            } else if (c == '.' && !naFracao) {
+                // separador de milhar
+            } else {
+                return INVALIDO;
+            }
+        }
+
+        return montar(algumDigito, negativo, inteiro, fracao, casas, arredondar);
+    }
+
+    // Mesmo parser, sobre bytes ASCII (ex.: linha lida direto do arquivo)
+    public static long centavos(byte[] b, int inicio, int fim) {
+        while (inicio < fim && ignoravel((char) b[inicio])) inicio++;
+        while (fim > inicio && ignoravel((char) b[fim - 1])) fim--;
+        if (inicio == fim) return INVALIDO;
+
+        boolean negativo = false;
+        if (b[inicio] == '(' && b[fim - 1] == ')') {
+            negativo = true;
+            inicio++;
+            fim--;
+        }
+        if (inicio < fim && (b[inicio] == '-' || b[inicio] == '+')) {
+            negativo ^= b[inicio] == '-';
+            inicio++;
+        }
+
+        byte decimal = '.';
+        int pontos = 0;
+        for (int i = inicio; i < fim; i++) {
+            if (b[i] == ',') {
+                decimal = ',';
+                break;
+            }
+            if (b[i] == '.') pontos++;
+        }
+        if (decimal == '.' && pontos > 1) decimal = 0;
+
+        long inteiro = 0;
+        long fracao = 0;
+        int casas = 0;
+        boolean naFracao = false;
+        boolean arredondar = false;
+        boolean algumDigito = false;
+
+        for (int i = inicio; i < fim; i++) {
+            byte c = b[i];
+            if (c >= '0' && c <= '9') {
+                algumDigito = true;
+                int d = c - '0';
+                if (!naFracao) {
+                    if (inteiro > LIMITE / 10) return INVALIDO;
+                    inteiro = inteiro * 10 + d;
+                } else if (casas < 2) {
+                    fracao = fracao * 10 + d;
+                    casas++;
+                } else if (casas == 2) {
+                    arredondar = d >= 5;
+                    casas++;
+                }
+            } else if (c == decimal && !naFracao) {
+                naFracao = true;
+            } else if (c == '.' && !naFracao) {
+                // separador de milhar
+            } else {
+                return INVALIDO;
+            }
+        }
+
+        return montar(algumDigito, negativo, inteiro, fracao, casas, arredondar);
+    }
+
+    private static long montar(boolean algumDigito, boolean negativo, long inteiro, long fracao,
+                               int casas, boolean arredondar) {
+        if (!algumDigito) return INVALIDO;
+        if (casas == 1) fracao *= 10;
+        long valor = inteiro * 100 + fracao + (arredondar ? 1 : 0);
+        return negativo ? -valor : valor;
+    }
+
+    private static boolean ignoravel(char c) {
+        return c == '"' || c == ' ' || c == '\t';
+    }
+}
@@ -0,0 +1,222 @@
+package main.java.br.com.intuitivecare.comum;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.Charset;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Escritor de CSV (RFC 4180) com charset explícito, par do LeitorCSV.
+ *
+ * Campo com delimitador, aspas ou quebra de linha sai entre aspas (aspas
+ * internas duplicadas); os demais saem como estão, então arquivos que não
+ * têm esses caracteres ficam iguais aos gravados antes com write + ";".
+ *
+ * Números são escritos direto no buffer, sem String.format:
+ * - centavos(long): "1234.56", exato
+ * - decimal(double): 2 casas, mesmo resultado de String.format("%.2f")
+ *   (arredondamento meio para cima)
+ * O separador decimal é o do Locale padrão, como no String.format que
+ * estes métodos substituem (vírgula em pt-BR).
+ */
+public final class EscritorCSV implements Closeable, Flushable {
+
+    private static final String FIM_LINHA = System.lineSeparator();
+
+    private final Writer saida;
+    private final char delimitador;
+    private final char separadorDecimal =
+        DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getDecimalSeparator();
+    private final char[] buffer = new char[1 << 16];
+    private int posicao = 0;
+    private boolean inicioLinha = true;
+
+    public EscritorCSV(Writer saida, char delimitador) {
+        this.saida = saida;
+        this.delimitador = delimitador;
+    }
+
+    public static EscritorCSV abrir(String caminho, Charset charset) throws IOException {
+        return new EscritorCSV(new OutputStreamWriter(new FileOutputStream(caminho), charset), ';');
+    }
+
+    public EscritorCSV campo(CharSequence texto) throws IOException {
+        separar();
+        if (precisaAspas(texto)) {
+            escrever('"');
+            for (int i = 0; i < texto.length(); i++) {
+                char c = texto.charAt(i);
+                if (c == '"') escrever('"');
+                escrever(c);
+            }
+            escrever('"');
+        } else {
+            escrever(texto);
+        }
+        return this;
+    }
+
+    public EscritorCSV campo(long valor) throws IOException {
+        separar();
+        if (valor == Long.MIN_VALUE) {
+            escrever(Long.toString(valor));
+            return this;
+        }
+        if (valor < 0) {
+            escrever('-');
+            valor = -valor;
+        }
+        escreverDigitos(valor);
+        return this;
+    }
+
+    // Valor em centavos com 2 casas (igual a %.2f de Dinheiro.emBigDecimal)
+    public EscritorCSV centavos(long centavos) throws IOException {
+        separar();
+        if (centavos < 0) escrever('-');
+        long absoluto = Math.abs(centavos);
+        escreverDigitos(absoluto / 100);
+        escrever(separadorDecimal);
+        long resto = absoluto % 100;
+        escrever((char) ('0' + resto / 10));
+        escrever((char) ('0' + resto % 10));
+        return this;
+    }
+
+    // double com 2 casas, como String.format("%.2f")
+    public EscritorCSV decimal(double valor) throws IOException {
+        separar();
+        if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+            escrever(valor > 0 ? "Infinity" : valor < 0 ? "-Infinity" : "NaN");
+            return this;
+        }
+        if (Double.doubleToRawLongBits(valor) < 0) escrever('-');
+        long centesimos = centesimos(Math.abs(valor));
+        if (centesimos >= 0) {
+            escreverDigitos(centesimos / 100);
+            escrever(separadorDecimal);
+            escrever((char) ('0' + centesimos % 100 / 10));
+            escrever((char) ('0' + centesimos % 10));
+        } else {
+            String texto = arredondar(Math.abs(valor)).toPlainString();
+            escrever(separadorDecimal == '.' ? texto : texto.replace('.', separadorDecimal));
+        }
+        return this;
+    }
+
+    /**
+     * Texto já no formato CSV (ex.: registro lido repassado adiante), sem aspas extras
+     */
+    public EscritorCSV bruto(CharSequence texto) throws IOException {
+        escrever(texto);
+        inicioLinha = false;
+        return this;
+    }
+
+    // Registro lido pelo LeitorCSV, como veio (sem criar a String da linha)
+    public EscritorCSV bruto(LinhaCSV linha) throws IOException {
+        for (int i = 0; i < linha.tamanhoBruto; i++) escrever(linha.bruto[i]);
+        inicioLinha = false;
+        return this;
+    }
+
+    public EscritorCSV fimLinha() throws IOException {
+        escrever(FIM_LINHA);
+        inicioLinha = true;
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        saida.write(buffer, 0, posicao);
+        posicao = 0;
+        saida.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            saida.write(buffer, 0, posicao);
+            posicao = 0;
+        } finally {
+            saida.close();
+        }
+    }
+
+    /**
+     * Formata como String.format("%.2f", valor), sem Formatter
+     */
+    public static String formatarDecimal(double valor) {
+        StringWriter texto = new StringWriter(24);
+        try (EscritorCSV escritor = new EscritorCSV(texto, ';')) {
+            escritor.decimal(valor);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return texto.toString();
+    }
+
+    // valor * 100 arredondado, ou -1 quando está perto demais de um empate (aí decide o BigDecimal)
+    private static long centesimos(double valor) {
+        if (valor >= 1e9) return -1;
+        double x = valor * 100;
+        double piso = Math.floor(x);
+        double fracao = x - piso;
+        if (Math.abs(fracao - 0.5) < 1e-3) return -1;
+        return (long) piso + (fracao > 0.5 ? 1 : 0);
+    }
+
+    // Mesma regra do Formatter: dígitos do Double.toString, meio para cima
+    private static BigDecimal arredondar(double valor) {
+        return new BigDecimal(Double.toString(valor)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private boolean precisaAspas(CharSequence texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c == delimitador || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    private void separar() throws IOException {
+        if (!inicioLinha) escrever(delimitador);
+        inicioLinha = false;
+    }
+
+    private void escreverDigitos(long valor) throws IOException {
+        if (buffer.length - posicao < 20) esvaziar();
+        int fim = posicao + tamanhoDecimal(valor);
+        int i = fim;
+        do {
+            buffer[--i] = (char) ('0' + valor % 10);
+            valor /= 10;
+        } while (valor > 0);
+        posicao = fim;
+    }
+
+    private static int tamanhoDecimal(long valor) {
+        int digitos = 1;
+        while (valor >= 10) {
+            valor /= 10;
+            digitos++;
+        }
+        return digitos;
+    }
+
+    private void escrever(char c) throws IOException {
+        if (posicao == buffer.length) esvaziar();
+        buffer[posicao++] = c;
+    }
+
+    private void escrever(CharSequence texto) throws IOException {
+        for (int i = 0; i < texto.length(); i++) escrever(texto.charAt(i));
+    }
+
+    private void esvaziar() throws IOException {
+        saida.write(buffer, 0, posicao);
+        posicao = 0;
+    }
+}
@@ -0,0 +1,306 @@
+package main.java.br.com.intuitivecare.comum;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Índice das partições Ano/Trimestre de um conjunto de dados.
+ *
+ * Em vez de um arquivo único, o conjunto (ex.: consolidado_despesas) fica em
+ * um arquivo por trimestre, num layout de pastas chave=valor dentro da pasta
+ * da execução que o gravou:
+ *   particoes/consolidado_despesas-20240615-101500-123/ano=2024/trimestre=1T/consolidado_despesas.csv
+ * e o índice (particoes/indice_consolidado_despesas.csv) lista cada partição:
+ *   Ano;Trimestre;Arquivo;Registros
+ *
+ * Quem lê consulta só o índice para saber que arquivos abrir: com o filtro
+ * --ano=2024 --trimestre=1T,2T (listas separadas por vírgula), as outras
+ * partições nem são abertas. O índice é a referência: uma partição que não
+ * está nele não existe, mesmo que o arquivo tenha ficado de uma execução
+ * anterior.
+ *
+ * Uma execução nunca sobrescreve arquivos de outra: grava as partições na
+ * sua pasta e troca o índice por último (rename). Até lá, quem lê vê o
+ * índice anterior e os arquivos dele, intactos; depois, limpar() apaga as
+ * pastas de execução que o novo índice não usa mais.
+ */
+public final class IndiceParticoes {
+
+    private static final String CABECALHO = "Ano;Trimestre;Arquivo;Registros";
+
+    /**
+     * Uma partição: valores de Ano e Trimestre (sem espaços nas pontas) e o
+     * arquivo, relativo à pasta do índice
+     */
+    public static final class Particao {
+        public final String ano;
+        public final String trimestre;
+        public final String arquivo;
+        public final int registros;
+
+        Particao(String ano, String trimestre, String arquivo, int registros) {
+            this.ano = ano;
+            this.trimestre = trimestre;
+            this.arquivo = arquivo;
+            this.registros = registros;
+        }
+
+        // "2024/1T", mesma chave de trimestre do EstadoAgregado
+        public String chave() {
+            return IndiceParticoes.chave(ano, trimestre);
+        }
+    }
+
+    private final Path pasta;
+    private final String conjunto;
+    // Pasta desta execução (criada no primeiro novoArquivo)
+    private String execucao;
+    // Ordenado pela chave: as partições são lidas em ordem de Ano/Trimestre
+    private final Map<String, Particao> particoes = new TreeMap<>();
+
+    private IndiceParticoes(Path pasta, String conjunto) {
+        this.pasta = pasta;
+        this.conjunto = conjunto;
+    }
+
+    public static IndiceParticoes novo(String pasta, String conjunto) {
+        return new IndiceParticoes(Paths.get(pasta), conjunto);
+    }
+
+    /**
+     * Lê o índice do conjunto na pasta (vazio se ainda não existir)
+     */
+    public static IndiceParticoes carregar(String pasta, String conjunto) throws IOException {
+        IndiceParticoes indice = novo(pasta, conjunto);
+        if (!indice.existe()) return indice;
+
+        try (LeitorCSV leitor = LeitorCSV.abrir(indice.arquivoIndice().toString(), StandardCharsets.UTF_8)) {
+            LinhaCSV campos = new LinhaCSV();
+            leitor.proximo(campos); // Pula header
+            while (leitor.proximo(campos)) {
+                if (campos.campos() < 4) continue;
+                try {
+                    indice.registrar(campos.texto(0), campos.texto(1), campos.texto(2),
+                        Integer.parseInt(campos.textoSemEspacos(3)));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Indice de particoes corrompido (" + indice.arquivoIndice() + "): "
+                        + campos.registro());
+                }
+            }
+        }
+        return indice;
+    }
+
+    public boolean existe() {
+        return Files.exists(arquivoIndice());
+    }
+
+    public Path arquivoIndice() {
+        return pasta.resolve("indice_" + conjunto + ".csv");
+    }
+
+    public Collection<Particao> particoes() {
+        return particoes.values();
+    }
+
+    /**
+     * Inclui (ou substitui) a partição Ano/Trimestre
+     */
+    public void registrar(String ano, String trimestre, String arquivo, int registros) {
+        Particao particao = new Particao(ano.trim(), trimestre.trim(), arquivo, registros);
+        particoes.put(particao.chave(), particao);
+    }
+
+    /**
+     * Caminho do arquivo da partição (pasta do índice + arquivo relativo)
+     */
+    public String caminho(Particao particao) {
+        return pasta.resolve(particao.arquivo).toString();
+    }
+
+    public String caminho(String arquivo) {
+        return pasta.resolve(arquivo).toString();
+    }
+
+    /**
+     * Arquivo da partição com outra extensão (".csv" ou ".col"), trocando a
+     * extensão inteira do nome (".csv.gz" inclusive); null se não existir
+     * (ex.: partição colunar sem o CSV exportado)
+     */
+    public String caminho(Particao particao, String extensao) {
+        String arquivo = particao.arquivo;
+        int ponto = arquivo.indexOf('.', arquivo.lastIndexOf('/') + 1);
+        Path caminho = pasta.resolve((ponto < 0 ? arquivo : arquivo.substring(0, ponto)) + extensao);
+        return Files.exists(caminho) ? caminho.toString() : null;
+    }
+
+    /**
+     * Arquivo novo de uma partição, relativo à pasta do índice, dentro da
+     * pasta desta execução:
+     * conjunto-execução/ano=2024/trimestre=1T/nomeArquivo (caracteres fora de [A-Za-z0-9-] viram '_')
+     */
+    public String novoArquivo(String ano, String trimestre, String nomeArquivo) {
+        return novoDiretorio(ano, trimestre) + "/" + nomeArquivo;
+    }
+
+    // Pasta nova da partição, relativa à pasta do índice
+    public String novoDiretorio(String ano, String trimestre) {
+        if (execucao == null) {
+            String carimbo = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+            execucao = conjunto + "-" + carimbo;
+            for (int i = 2; Files.exists(pasta.resolve(execucao)); i++) {
+                execucao = conjunto + "-" + carimbo + "-" + i;
+            }
+        }
+        return execucao + "/ano=" + seguro(ano) + "/trimestre=" + seguro(trimestre);
+    }
+
+    /**
+     * Depois de gravar o índice, apaga as pastas de execução do conjunto que
+     * ele não referencia (execuções antigas, ou interrompidas antes de gravar
+     * o índice). Falha aqui só deixa espaço ocupado: apenas avisa
+     */
+    public void limpar() {
+        if (!Files.isDirectory(pasta)) return;
+        Set<String> usadas = new HashSet<>();
+        for (Particao particao : particoes.values()) {
+            int barra = particao.arquivo.indexOf('/');
+            if (barra > 0) usadas.add(particao.arquivo.substring(0, barra));
+        }
+        try (DirectoryStream<Path> pastas = Files.newDirectoryStream(pasta, conjunto + "-*")) {
+            for (Path execucaoAntiga : pastas) {
+                if (Files.isDirectory(execucaoAntiga) && !usadas.contains(execucaoAntiga.getFileName().toString())) {
+                    apagar(execucaoAntiga);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("[AVISO] ao apagar particoes de execucoes anteriores: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Descarta a pasta desta execução (execução que não chegou a gravar o índice)
+     */
+    public void descartarExecucao() {
+        if (execucao == null) return;
+        try {
+            apagar(pasta.resolve(execucao));
+        } catch (IOException e) {
+            System.out.println("[AVISO] Nao foi possivel apagar " + pasta.resolve(execucao) + ": " + e.getMessage());
+        }
+        execucao = null;
+    }
+
+    private static void apagar(Path raiz) throws IOException {
+        if (!Files.exists(raiz)) return;
+        List<Path> caminhos = new ArrayList<>();
+        try (Stream<Path> arvore = Files.walk(raiz)) {
+            arvore.forEach(caminhos::add);
+        }
+        // Arquivos antes das pastas que os contêm
+        Collections.reverse(caminhos);
+        for (Path caminho : caminhos) Files.deleteIfExists(caminho);
+    }
+
+    /**
+     * Arquivos das partições selecionadas com a extensão pedida, ou null se
+     * faltar algum (cada um que falta é logado): o passo não roda com dados
+     * parciais
+     */
+    public List<String> caminhos(List<Particao> selecionadas, String extensao) {
+        List<String> caminhos = new ArrayList<>();
+        boolean faltando = false;
+        for (Particao particao : selecionadas) {
+            String caminho = caminho(particao, extensao);
+            if (caminho == null) {
+                System.out.println("[ERRO] Particao " + particao.chave() + " sem arquivo " + extensao + ": " + particao.arquivo);
+                faltando = true;
+            }
+            caminhos.add(caminho);
+        }
+        return faltando ? null : caminhos;
+    }
+
+    /**
+     * Partições que passam no filtro --ano=... --trimestre=... dos argumentos
+     * (sem filtro, todas)
+     */
+    public List<Particao> selecionar(String[] args) {
+        Set<String> anos = Opcoes.lista(args, "--ano");
+        Set<String> trimestres = Opcoes.lista(args, "--trimestre");
+        List<Particao> selecionadas = new ArrayList<>();
+        for (Particao particao : particoes.values()) {
+            if (!anos.isEmpty() && !anos.contains(particao.ano)) continue;
+            if (!trimestres.isEmpty() && !trimestres.contains(particao.trimestre)) continue;
+            selecionadas.add(particao);
+        }
+        return selecionadas;
+    }
+
+    /**
+     * Grava o índice (temporário + rename, como os outros arquivos do pipeline)
+     */
+    public void gravar() throws IOException {
+        Files.createDirectories(pasta);
+        Path destino = arquivoIndice();
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = new FileOutputStream(temporario.toFile())) {
+                gravar(out);
+            }
+            try {
+                Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            // Só sobra se a gravação falhou
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    public void gravar(OutputStream out) throws IOException {
+        EscritorCSV escritor = new EscritorCSV(new OutputStreamWriter(out, StandardCharsets.UTF_8), ';');
+        escritor.bruto(CABECALHO).fimLinha();
+        for (Particao particao : particoes.values()) {
+            escritor.campo(particao.ano).campo(particao.trimestre).campo(particao.arquivo)
+                .campo(particao.registros).fimLinha();
+        }
+        escritor.flush();
+    }
+
+    // Chaves das partições, para log ([2024/1T, 2024/2T])
+    public static List<String> chaves(Collection<Particao> particoes) {
+        List<String> chaves = new ArrayList<>();
+        for (Particao particao : particoes) chaves.add(particao.chave());
+        return chaves;
+    }
+
+    public static String chave(String ano, String trimestre) {
+        return ano.trim() + "/" + trimestre.trim();
+    }
+
+    /**
+     * Leitura por partições: --particionado ou algum filtro (--ano, --trimestre)
+     */
+    public static boolean particionado(String[] args) {
+        if (Opcoes.tem(args, "--particionado")) return true;
+        return !Opcoes.lista(args, "--ano").isEmpty() || !Opcoes.lista(args, "--trimestre").isEmpty();
+    }
+
+    private static String seguro(String valor) {
+        String texto = valor.trim();
+        if (texto.isEmpty()) return "_";
+        StringBuilder seguro = new StringBuilder(texto.length());
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            boolean permitido = (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '-';
+            seguro.append(permitido ? c : '_');
+        }
+        return seguro.toString();
+    }
+}
@@ -0,0 +1,159 @@
+package main.java.br.com.intuitivecare.comum;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Leitor de CSV (RFC 4180) com charset explícito, usado pelo Teste 1 e pelo Teste 2.
+ *
+ * Lê registros inteiros: quebra de linha dentro de aspas não termina o
+ * registro (o readLine quebraria a razão social no meio). CRLF e LF são
+ * aceitos; o BOM do UTF-8 no início do arquivo é ignorado.
+ *
+ * proximo(linha) separa o registro direto no buffer da LinhaCSV, sem
+ * alocar nada por linha; proximoRegistro() devolve o texto do registro
+ * (para quem precisa repassar a linha ou montar blocos para outras threads).
+ *
+ * Os arquivos da ANS vêm em UTF-8 ou ISO-8859-1: detectarCharset decide
+ * pelo começo do arquivo.
+ */
+public final class LeitorCSV implements Closeable {
+
+    private final Reader entrada;
+    private final char delimitador;
+    private final char[] buffer = new char[1 << 16];
+    private int posicao = 0;
+    private int limite = 0;
+    private boolean inicioArquivo = true;
+    private LinhaCSV interna = null;
+
+    public LeitorCSV(Reader entrada, char delimitador) {
+        this.entrada = entrada;
+        this.delimitador = delimitador;
+    }
+
+    public static LeitorCSV abrir(String caminho, Charset charset) throws IOException {
+        return abrir(caminho, charset, ';');
+    }
+
+    public static LeitorCSV abrir(String caminho, Charset charset, char delimitador) throws IOException {
+        return new LeitorCSV(new InputStreamReader(new FileInputStream(caminho), charset), delimitador);
+    }
+
+    /**
+     * Lê o próximo registro para dentro da linha; false no fim do arquivo
+     */
+    public boolean proximo(LinhaCSV linha) throws IOException {
+        if (!lerBruto(linha)) return false;
+        linha.separarBruto();
+        return true;
+    }
+
+    /**
+     * Texto do próximo registro (sem a quebra de linha final); null no fim do arquivo
+     */
+    public String proximoRegistro() throws IOException {
+        if (interna == null) interna = new LinhaCSV(delimitador);
+        if (!lerBruto(interna)) return null;
+        return interna.registro();
+    }
+
+    public char delimitador() {
+        return delimitador;
+    }
+
+    @Override
+    public void close() throws IOException {
+        entrada.close();
+    }
+
+    /**
+     * UTF-8 se o começo do arquivo for UTF-8 válido; senão ISO-8859-1
+     */
+    public static Charset detectarCharset(String caminho) throws IOException {
+        byte[] amostra = new byte[1 << 16];
+        int lidos = 0;
+        try (InputStream in = new FileInputStream(caminho)) {
+            int n;
+            while (lidos < amostra.length && (n = in.read(amostra, lidos, amostra.length - lidos)) > 0) lidos += n;
+        }
+        // Não corta um caractere multibyte no fim da amostra
+        int fim = lidos;
+        if (lidos == amostra.length) {
+            int volta = 0;
+            while (volta < 3 && fim > 0 && (amostra[fim - 1] & 0xC0) == 0x80) {
+                fim--;
+                volta++;
+            }
+            if (fim > 0 && (amostra[fim - 1] & 0xC0) == 0xC0) fim--;
+        }
+
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        try {
+            decoder.decode(ByteBuffer.wrap(amostra, 0, fim));
+            return StandardCharsets.UTF_8;
+        } catch (CharacterCodingException e) {
+            return StandardCharsets.ISO_8859_1;
+        }
+    }
+
+    // Copia o próximo registro (até a quebra de linha fora de aspas) para linha.bruto
+    private boolean lerBruto(LinhaCSV linha) throws IOException {
+        int tamanho = 0;
+        boolean emAspas = false;
+        boolean temAspas = false;
+        boolean leuAlgo = false;
+        boolean fimRegistro = false;
+
+        while (!fimRegistro) {
+            if (posicao >= limite && !encher()) break;
+            leuAlgo = true;
+
+            // Procura o fim do registro no buffer e copia o trecho de uma vez
+            int i = posicao;
+            while (i < limite) {
+                char c = buffer[i];
+                if (c == '"') {
+                    emAspas = !emAspas;
+                    temAspas = true;
+                } else if (c == '\n' && !emAspas) {
+                    fimRegistro = true;
+                    break;
+                }
+                i++;
+            }
+            int trecho = i - posicao;
+            linha.garantirBruto(tamanho + trecho);
+            System.arraycopy(buffer, posicao, linha.bruto, tamanho, trecho);
+            tamanho += trecho;
+            posicao = fimRegistro ? i + 1 : i;
+        }
+
+        if (!leuAlgo) return false;
+        if (tamanho > 0 && linha.bruto[tamanho - 1] == '\r') tamanho--;
+        linha.tamanhoBruto = tamanho;
+        linha.brutoTemAspas = temAspas;
+        return true;
+    }
+
+    private boolean encher() throws IOException {
+        int n = entrada.read(buffer, 0, buffer.length);
+        while (n == 0) n = entrada.read(buffer, 0, buffer.length);
+        if (n < 0) return false;
+        posicao = 0;
+        limite = n;
+        if (inicioArquivo) {
+            inicioArquivo = false;
+            if (buffer[0] == '\uFEFF') posicao = 1;
+            if (posicao >= limite) return encher();
+        }
+        return true;
+    }
+}
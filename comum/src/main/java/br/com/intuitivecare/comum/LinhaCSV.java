@@ -0,0 +1,245 @@
+package main.java.br.com.intuitivecare.comum;
+
+/**
+ * Um registro CSV separado em campos, sem criar array nem Strings por linha.
+ *
+ * Substitui o linha.split(";") + replace("\"", "") espalhado pelos testes:
+ * - RFC 4180: campo entre aspas pode ter o delimitador, quebra de linha e
+ *   aspas duplicadas ("" = "); as aspas de fora são removidas
+ * - delimitador configurável (';' por padrão, como nos arquivos da ANS)
+ * - diferente do split, campos vazios no fim da linha contam ("a;b;" = 3 campos)
+ *
+ * Os campos ficam num char[] reaproveitado (o próprio registro, quando ele
+ * não tem aspas); campo(i) devolve uma vista (CharSequence) sobre esse
+ * buffer, válida até o próximo separar. texto(i) cria a String quando ela
+ * precisa sobreviver.
+ *
+ * Não é thread-safe: uma LinhaCSV por thread.
+ */
+public final class LinhaCSV {
+
+    private final char delimitador;
+
+    // Registro como veio (com aspas), preenchido pelo separar ou pelo LeitorCSV
+    char[] bruto = new char[256];
+    int tamanhoBruto = 0;
+    boolean brutoTemAspas = true;
+
+    // Campos já sem aspas; campo i = dados[inicios[i], fins[i]). Sem aspas no
+    // registro, dados é o próprio bruto (nada é copiado)
+    private char[] dados = bruto;
+    private char[] semAspas = new char[256];
+    private int[] inicios = new int[16];
+    private int[] fins = new int[16];
+    private Campo[] vistas = new Campo[16];
+    private int quantidade = 0;
+
+    public LinhaCSV() {
+        this(';');
+    }
+
+    public LinhaCSV(char delimitador) {
+        this.delimitador = delimitador;
+    }
+
+    /**
+     * Separa um registro já lido (pode ter quebras de linha dentro de aspas)
+     */
+    public LinhaCSV separar(CharSequence registro) {
+        int n = registro.length();
+        garantirBruto(n);
+        boolean temAspas = false;
+        for (int i = 0; i < n; i++) {
+            char c = registro.charAt(i);
+            bruto[i] = c;
+            if (c == '"') temAspas = true;
+        }
+        tamanhoBruto = n;
+        brutoTemAspas = temAspas;
+        separarBruto();
+        return this;
+    }
+
+    public int campos() {
+        return quantidade;
+    }
+
+    // Campos sem contar os vazios do fim (mesma contagem de split(";").length)
+    public int camposPreenchidos() {
+        int n = quantidade;
+        while (n > 0 && fins[n - 1] == inicios[n - 1]) n--;
+        return n;
+    }
+
+    /**
+     * Vista do campo i (sem aspas). Reaproveitada: vale até o próximo separar
+     */
+    public CharSequence campo(int i) {
+        verificar(i);
+        if (vistas[i] == null) vistas[i] = new Campo(this, i);
+        return vistas[i];
+    }
+
+    public String texto(int i) {
+        verificar(i);
+        return new String(dados, inicios[i], fins[i] - inicios[i]);
+    }
+
+    // Campo sem espaços nas pontas (equivale a campos[i].trim())
+    public String textoSemEspacos(int i) {
+        verificar(i);
+        int inicio = inicios[i];
+        int fim = fins[i];
+        while (inicio < fim && dados[inicio] <= ' ') inicio++;
+        while (fim > inicio && dados[fim - 1] <= ' ') fim--;
+        return new String(dados, inicio, fim - inicio);
+    }
+
+    public int tamanho(int i) {
+        verificar(i);
+        return fins[i] - inicios[i];
+    }
+
+    // Campo ausente ou de tamanho zero
+    public boolean vazio(int i) {
+        return i >= quantidade || fins[i] == inicios[i];
+    }
+
+    // Campo ausente ou só com espaços
+    public boolean vazioSemEspacos(int i) {
+        if (i >= quantidade) return true;
+        for (int k = inicios[i]; k < fins[i]; k++) {
+            if (dados[k] > ' ') return false;
+        }
+        return true;
+    }
+
+    public boolean igual(int i, CharSequence texto) {
+        verificar(i);
+        int tamanho = fins[i] - inicios[i];
+        if (tamanho != texto.length()) return false;
+        for (int k = 0; k < tamanho; k++) {
+            if (dados[inicios[i] + k] != texto.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    // Valor monetário do campo i em centavos (Dinheiro.INVALIDO se não for número)
+    public long centavos(int i) {
+        if (i >= quantidade) return Dinheiro.INVALIDO;
+        return Dinheiro.centavos(campo(i));
+    }
+
+    /**
+     * Registro como foi lido, com aspas e delimitadores (para repassar a linha adiante)
+     */
+    public String registro() {
+        return new String(bruto, 0, tamanhoBruto);
+    }
+
+    void garantirBruto(int tamanho) {
+        if (bruto.length < tamanho) bruto = java.util.Arrays.copyOf(bruto, Math.max(tamanho, bruto.length * 2));
+    }
+
+    // Separa bruto[0, tamanhoBruto) em campos
+    void separarBruto() {
+        int n = tamanhoBruto;
+        quantidade = 0;
+
+        if (!brutoTemAspas) {
+            // Caso comum: só procura os delimitadores, os campos ficam no bruto
+            dados = bruto;
+            int inicio = 0;
+            for (int i = 0; i < n; i++) {
+                if (bruto[i] == delimitador) {
+                    adicionar(inicio, i);
+                    inicio = i + 1;
+                }
+            }
+            adicionar(inicio, n);
+            return;
+        }
+
+        if (semAspas.length < n) semAspas = new char[Math.max(n, semAspas.length * 2)];
+        dados = semAspas;
+
+        int i = 0;
+        int pos = 0;
+        while (true) {
+            int inicio = pos;
+            if (i < n && bruto[i] == '"') {
+                i++;
+                while (i < n) {
+                    char c = bruto[i++];
+                    if (c == '"') {
+                        if (i < n && bruto[i] == '"') {
+                            dados[pos++] = '"';
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        dados[pos++] = c;
+                    }
+                }
+                // Tolerante: texto entre a aspa de fechamento e o delimitador fica no campo
+                while (i < n && bruto[i] != delimitador) dados[pos++] = bruto[i++];
+            } else {
+                while (i < n && bruto[i] != delimitador) dados[pos++] = bruto[i++];
+            }
+            adicionar(inicio, pos);
+
+            if (i >= n) break;
+            i++; // Pula o delimitador
+        }
+    }
+
+    private void adicionar(int inicio, int fim) {
+        if (quantidade == inicios.length) {
+            int novo = quantidade * 2;
+            inicios = java.util.Arrays.copyOf(inicios, novo);
+            fins = java.util.Arrays.copyOf(fins, novo);
+            vistas = java.util.Arrays.copyOf(vistas, novo);
+        }
+        inicios[quantidade] = inicio;
+        fins[quantidade] = fim;
+        quantidade++;
+    }
+
+    private void verificar(int i) {
+        if (i < 0 || i >= quantidade) {
+            throw new IndexOutOfBoundsException("campo " + i + " de " + quantidade);
+        }
+    }
+
+    // Vista de um campo: lê direto do buffer da linha (continua válida se o buffer crescer)
+    private static final class Campo implements CharSequence {
+        private final LinhaCSV linha;
+        private final int indice;
+
+        Campo(LinhaCSV linha, int indice) {
+            this.linha = linha;
+            this.indice = indice;
+        }
+
+        @Override
+        public int length() {
+            return linha.fins[indice] - linha.inicios[indice];
+        }
+
+        @Override
+        public char charAt(int k) {
+            return linha.dados[linha.inicios[indice] + k];
+        }
+
+        @Override
+        public CharSequence subSequence(int inicio, int fim) {
+            return new String(linha.dados, linha.inicios[indice] + inicio, fim - inicio);
+        }
+
+        @Override
+        public String toString() {
+            return linha.texto(indice);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package main.java.br.com.intuitivecare.comum;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Leitura simples dos argumentos de linha de comando.
+ * Aceita flags no formato --nome e valores no formato --nome=valor.
+ * Os orquestradores chamam main(null), então args nulo é tratado como vazio.
+ * Usada pelo Teste 1 e pelo Teste 2.
+ */
+public final class Opcoes {
+
+    private Opcoes() {
+    }
+
+    // Verifica se a flag foi passada (ex: --concorrente)
+    public static boolean tem(String[] args, String nome) {
+        if (args == null) return false;
+        for (String arg : args) {
+            if (arg.equals(nome)) return true;
+        }
+        return false;
+    }
+
+    // Retorna o valor de --nome=valor, ou o padrão se não informado
+    public static String texto(String[] args, String nome, String padrao) {
+        if (args == null) return padrao;
+        String prefixo = nome + "=";
+        for (String arg : args) {
+            if (arg.startsWith(prefixo)) return arg.substring(prefixo.length());
+        }
+        return padrao;
+    }
+
+    // Igual a texto(), mas convertendo para inteiro (valor inválido usa o padrão)
+    public static int inteiro(String[] args, String nome, int padrao) {
+        String valor = texto(args, nome, null);
+        if (valor == null) return padrao;
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("[AVISO] Valor inválido para " + nome + ": " + valor + " (usando " + padrao + ")");
+            return padrao;
+        }
+    }
+
+    // Valores de --nome=a,b,c sem espaços nas pontas (vazio se a opção não foi passada)
+    public static Set<String> lista(String[] args, String nome) {
+        Set<String> valores = new LinkedHashSet<>();
+        if (args == null) return valores;
+        String prefixo = nome + "=";
+        for (String arg : args) {
+            if (!arg.startsWith(prefixo)) continue;
+            for (String valor : arg.substring(prefixo.length()).split(",")) {
+                if (!valor.trim().isEmpty()) valores.add(valor.trim());
+            }
+        }
+        return valores;
+    }
+}
@@ -0,0 +1,220 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Agrupamento por RegANS com memória limitada (--agrupamento-externo).
+ *
+ * Em vez de montar um Map com todos os registros do eventos_sinistros.csv:
+ * 1. lê o arquivo em lotes de no máximo "registrosPorLote" registros; cada
+ *    lote é ordenado por RegANS e gravado em disco (um "run")
+ * 2. junta os runs com merge k-way (fila de prioridade com o registro atual
+ *    de cada run) e entrega os registros já agrupados, uma operadora de cada vez
+ *
+ * O heap fica limitado a um lote, qualquer que seja o tamanho da entrada.
+ * Com muitos runs, eles são juntados antes em passadas de até MAXIMO_RUNS.
+ * Dentro de uma operadora, os registros saem na ordem original do arquivo
+ * (sort estável e empate desempatado pela ordem do run).
+ */
+public class AgrupadorExterno {
+
+    private static final int MAXIMO_RUNS = 64;
+    private static final int BUFFER_RUN = 1 << 16;
+
+    private static final Comparator<RegistroAtual> ORDEM = Comparator
+        .comparing((RegistroAtual r) -> r.registro.regANS)
+        .thenComparingInt(r -> r.run.ordem);
+
+    private final int registrosPorLote;
+    private final List<File> runs = new ArrayList<>();
+    // Último lote fica em memória (não precisa ir para o disco)
+    private List<DespesaProcessor.RegistroSinistro> ultimoLote = new ArrayList<>();
+    private Path pastaTemporaria;
+
+    public AgrupadorExterno(int registrosPorLote) {
+        this.registrosPorLote = Math.max(1, registrosPorLote);
+    }
+
+    /**
+     * Fase 1: lê o CSV de eventos e grava os runs ordenados.
+     * Retorna os RegANS distintos (poucos: um por operadora).
+     */
+    public Set<String> particionar(File entrada, DespesaProcessor processor) throws IOException {
+        Set<String> registrosANS = new HashSet<>();
+        List<DespesaProcessor.RegistroSinistro> lote = new ArrayList<>();
+
+        try (BufferedReader br = new BufferedReader(new FileReader(entrada), 1 << 16)) {
+            String linha;
+            while ((linha = br.readLine()) != null) {
+                DespesaProcessor.RegistroSinistro registro = processor.lerRegistro(linha);
+                if (registro == null) continue;
+
+                registrosANS.add(registro.regANS);
+                lote.add(registro);
+                if (lote.size() >= registrosPorLote) {
+                    gravarRun(lote);
+                    lote = new ArrayList<>();
+                }
+            }
+        }
+
+        lote.sort(Comparator.comparing(r -> r.regANS));
+        ultimoLote = lote;
+
+        // Muitos runs: junta os mais antigos até sobrar no máximo MAXIMO_RUNS abertos ao mesmo tempo
+        while (runs.size() >= MAXIMO_RUNS) {
+            List<File> primeiros = new ArrayList<>(runs.subList(0, MAXIMO_RUNS));
+            File juntado = novoRun();
+            try (DataOutputStream out = abrirEscrita(juntado)) {
+                mesclar(primeiros, null, (regANS, r) -> escrever(out, r));
+                out.writeBoolean(false);
+            }
+            for (File run : primeiros) Files.delete(run.toPath());
+            runs.subList(0, MAXIMO_RUNS).clear();
+            runs.add(0, juntado);
+        }
+
+        System.out.println("Agrupamento externo: " + runs.size() + " runs em disco + " + ultimoLote.size()
+            + " registros em memória (lote de " + registrosPorLote + ")");
+        return registrosANS;
+    }
+
+    // Fase 2: entrega os registros em ordem de RegANS, todos os de uma operadora em sequência
+    public void mesclar(DestinoRegistro destino) throws IOException {
+        mesclar(runs, ultimoLote, destino);
+    }
+
+    // Apaga os runs temporários
+    public void limpar() {
+        runs.clear();
+        if (pastaTemporaria == null) return;
+        try {
+            ExtratorParalelo.apagar(pastaTemporaria);
+        } catch (IOException e) {
+            System.out.println("[ERRO] ao apagar " + pastaTemporaria + ": " + e.getMessage());
+        }
+    }
+
+    private void mesclar(List<File> arquivos, List<DespesaProcessor.RegistroSinistro> memoria,
+                         DestinoRegistro destino) throws IOException {
+        List<Run> abertos = new ArrayList<>();
+        PriorityQueue<RegistroAtual> fila = new PriorityQueue<>(ORDEM);
+
+        try {
+            int ordem = 0;
+            for (File arquivo : arquivos) {
+                abertos.add(new Run(ordem++, new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(arquivo.toPath()), BUFFER_RUN))));
+            }
+            if (memoria != null && !memoria.isEmpty()) abertos.add(new Run(ordem, memoria.iterator()));
+
+            for (Run run : abertos) {
+                DespesaProcessor.RegistroSinistro primeiro = run.proximo();
+                if (primeiro != null) fila.add(new RegistroAtual(primeiro, run));
+            }
+
+            while (!fila.isEmpty()) {
+                RegistroAtual atual = fila.poll();
+                destino.aceitar(atual.registro.regANS, atual.registro);
+
+                DespesaProcessor.RegistroSinistro proximo = atual.run.proximo();
+                if (proximo != null) {
+                    atual.registro = proximo;
+                    fila.add(atual);
+                }
+            }
+        } finally {
+            for (Run run : abertos) run.fechar();
+        }
+    }
+
+    private void gravarRun(List<DespesaProcessor.RegistroSinistro> lote) throws IOException {
+        // List.sort é estável: registros da mesma operadora mantêm a ordem do arquivo
+        lote.sort(Comparator.comparing(r -> r.regANS));
+
+        File run = novoRun();
+        try (DataOutputStream out = abrirEscrita(run)) {
+            for (DespesaProcessor.RegistroSinistro r : lote) escrever(out, r);
+            out.writeBoolean(false);
+        }
+        runs.add(run);
+    }
+
+    private File novoRun() throws IOException {
+        if (pastaTemporaria == null) pastaTemporaria = Files.createTempDirectory("agrupamento_regans");
+        return Files.createTempFile(pastaTemporaria, "run", ".bin").toFile();
+    }
+
+    private static DataOutputStream abrirEscrita(File arquivo) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(arquivo.toPath()), BUFFER_RUN));
+    }
+
+    // Formato do run: true + 4 campos (writeUTF) por registro, false no fim
+    private static void escrever(DataOutputStream out, DespesaProcessor.RegistroSinistro r) throws IOException {
+        out.writeBoolean(true);
+        out.writeUTF(r.regANS);
+        out.writeUTF(r.trimestre);
+        out.writeUTF(r.ano);
+        out.writeUTF(r.valorDespesas);
+    }
+
+    // Recebe cada registro já em ordem de RegANS
+    public interface DestinoRegistro {
+        void aceitar(String regANS, DespesaProcessor.RegistroSinistro registro) throws IOException;
+    }
+
+    // Um run sendo lido: arquivo em disco ou o último lote em memória
+    private static class Run {
+        final int ordem;
+        final DataInputStream in;
+        final Iterator<DespesaProcessor.RegistroSinistro> memoria;
+
+        Run(int ordem, DataInputStream in) {
+            this.ordem = ordem;
+            this.in = in;
+            this.memoria = null;
+        }
+
+        Run(int ordem, Iterator<DespesaProcessor.RegistroSinistro> memoria) {
+            this.ordem = ordem;
+            this.in = null;
+            this.memoria = memoria;
+        }
+
+        DespesaProcessor.RegistroSinistro proximo() throws IOException {
+            if (memoria != null) return memoria.hasNext() ? memoria.next() : null;
+            if (!in.readBoolean()) return null;
+            return new DespesaProcessor.RegistroSinistro(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+        }
+
+        void fechar() throws IOException {
+            if (in != null) in.close();
+        }
+    }
+
+    private static class RegistroAtual {
+        DespesaProcessor.RegistroSinistro registro;
+        final Run run;
+
+        RegistroAtual(DespesaProcessor.RegistroSinistro registro, Run run) {
+            this.registro = registro;
+            this.run = run;
+        }
+    }
+}
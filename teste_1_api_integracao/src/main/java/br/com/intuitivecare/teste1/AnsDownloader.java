@@ -1,14 +1,17 @@
 package main.java.br.com.intuitivecare.teste1;
 
+import main.java.br.com.intuitivecare.comum.Opcoes;
+
 import java.io.*;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Year;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 /**
  * Responsável por baixar e extrair dados de demonstrações contábeis da ANS.
@@ -16,45 +19,102 @@ import java.util.zip.ZipInputStream;
  */
 public class AnsDownloader {
 
+    // Procura por arquivos no padrão 1T2025.zip, 2Q2025.zip e esses ai
+    static final Pattern PADRAO_ZIP = Pattern.compile("href=[\"']?([0-9][TQ][0-9]{4}\\.zip)[\"']?", Pattern.CASE_INSENSITIVE);
+
+    private static final String URL_BASE = "https://dadosabertos.ans.gov.br/FTP/PDA/demonstracoes_contabeis/";
+    private static final String PASTA_RAW = "teste_1_api_integracao/data/raw";
+
+    // Modo concorrente (--concorrente): pool de downloads com HttpClient compartilhado
+    private boolean concorrente = false;
+    private int trabalhadores = 4;
+    private int segmentos = 4;
+    private int conexoes = DownloadConcorrente.CONEXOES_PADRAO;
+    // Modo streaming (--streaming): o DespesaProcessor lê direto dos ZIPs, sem extração
+    private boolean extrair = true;
+    // Modo manifesto (--manifesto): descoberta com GET/HEAD condicional e detecção de alterações
+    private boolean usarManifesto = false;
+    private boolean verificarIntegridade = false;
+
+    // Manifesto carregado na seleção (só no modo --manifesto)
+    private ManifestoTrimestres manifesto = null;
+
     public static void main(String[] args) {
         try {
-            new AnsDownloader().baixarUltimosTrimestres(3);
+            configurar(args).baixarUltimosTrimestres(3);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    // Cria o downloader com os modos escolhidos na linha de comando
+    static AnsDownloader configurar(String[] args) {
+        AnsDownloader downloader = new AnsDownloader();
+        downloader.concorrente = Opcoes.tem(args, "--concorrente");
+        downloader.trabalhadores = Opcoes.inteiro(args, "--trabalhadores", 4);
+        downloader.segmentos = Opcoes.inteiro(args, "--segmentos", 4);
+        downloader.conexoes = Opcoes.inteiro(args, "--conexoes", DownloadConcorrente.CONEXOES_PADRAO);
+        downloader.extrair = !Opcoes.tem(args, "--streaming");
+        downloader.usarManifesto = Opcoes.tem(args, "--manifesto");
+        downloader.verificarIntegridade = Opcoes.tem(args, "--verificar-integridade");
+        return downloader;
+    }
+
     // Baixa os últimos N trimestres da ANS
     public void baixarUltimosTrimestres(int quantidade) throws Exception {
-        System.out.println("=== Buscando últimos " + quantidade + " trimestres ===\n");
+        List<String> selecionados = selecionarTrimestres(quantidade);
+        if (selecionados.isEmpty()) return;
         
-        List<String> todosOsTrimestres = new ArrayList<>();
-        int[] anos = {2025, 2024, 2023, 2022, 2021};
+        List<String> paraBaixar = prepararDownloads(selecionados);
         
-        // Varre os últimos anos procurando por trimestres disponíveis
-        for (int ano : anos) {
-            System.out.println("Verificando: " + ano);
-            String urlAno = "https://dadosabertos.ans.gov.br/FTP/PDA/demonstracoes_contabeis/" + ano + "/";
-            
-            try {
-                String html = lerURL(urlAno);
-                
-                // Procura por arquivos no padrão 1T2025.zip, 2Q2025.zip e esses ai
-                Matcher m = Pattern.compile("href=[\"']?([0-9][TQ][0-9]{4}\\.zip)[\"']?", Pattern.CASE_INSENSITIVE).matcher(html);
-                
-                while (m.find()) {
-                    String zip = m.group(1);
-                    todosOsTrimestres.add(urlAno + zip);
-                    System.out.println("  Encontrado: " + zip);
-                }
-            } catch (Exception e) {
-                System.out.println("  Ano não disponível");
+        int baixados = 0;
+        if (concorrente) {
+            // Baixa os N mais recentes em paralelo
+            baixados = new DownloadConcorrente(trabalhadores, segmentos, conexoes).baixarTodos(paraBaixar, PASTA_RAW);
+        } else {
+            // Itera pelos trimestres e baixa os N mais recentes
+            for (String url : paraBaixar) {
+                String nome = url.substring(url.lastIndexOf('/') + 1);
+                System.out.println("Baixando: " + nome);
+                baixarArquivo(url);
+                baixados++;
             }
         }
         
+        finalizarDownloads(paraBaixar);
+        
+        // Após baixar, extrai todos os ZIPs (no modo streaming os CSVs são lidos de dentro do ZIP)
+        if (extrair) {
+            System.out.println("\n=== Extraindo ===");
+            extrairTodos();
+        } else {
+            System.out.println("\nModo streaming: extração pulada");
+        }
+        System.out.println("Concluído! " + baixados + " trimestres baixados\n");
+    }
+
+    // Descobre os trimestres disponíveis e devolve as URLs dos N mais recentes
+    List<String> selecionarTrimestres(int quantidade) throws Exception {
+        System.out.println("=== Buscando últimos " + quantidade + " trimestres ===\n");
+        
+        // Últimos 5 anos a partir do ano corrente (o próximo ano entra sozinho)
+        List<String> urlsAnos = new ArrayList<>();
+        int anoAtual = Year.now().getValue();
+        for (int ano = anoAtual; ano > anoAtual - 5; ano--) {
+            urlsAnos.add(URL_BASE + ano + "/");
+        }
+        
+        List<String> todosOsTrimestres;
+        if (usarManifesto) {
+            manifesto = ManifestoTrimestres.carregar("teste_1_api_integracao/data/manifesto_trimestres.csv");
+            todosOsTrimestres = manifesto.descobrir(urlsAnos);
+        } else {
+            todosOsTrimestres = descobrirTrimestres(urlsAnos);
+        }
+        
         if (todosOsTrimestres.isEmpty()) {
             System.out.println("\n Nenhum trimestre encontrado!");
-            return;
+            return todosOsTrimestres;
         }
         
         // Ordena do mais recente pro mais antigo para pegar os últimos N
@@ -62,21 +122,85 @@ public class AnsDownloader {
         
         System.out.println("\n=== Baixando os " + quantidade + " mais recentes ===\n");
         
-        int baixados = 0;
-        // Itera pelos trimestres e baixa os N mais recentes
-        for (String url : todosOsTrimestres) {
-            if (baixados >= quantidade) break;
-            
-            String nome = url.substring(url.lastIndexOf('/') + 1);
+        return new ArrayList<>(todosOsTrimestres.subList(0, Math.min(quantidade, todosOsTrimestres.size())));
+    }
+
+    // Decide o que baixar: sem manifesto, todos (baixarArquivo pula os existentes)
+    List<String> prepararDownloads(List<String> selecionados) throws IOException {
+        if (manifesto == null) return selecionados;
+        
+        // Só baixa o que é novo ou mudou no servidor; versões antigas são descartadas
+        List<String> paraBaixar = manifesto.verificar(selecionados, PASTA_RAW);
+        if (verificarIntegridade) {
+            for (String url : selecionados) {
+                if (!paraBaixar.contains(url) && !manifesto.integro(url, PASTA_RAW)) {
+                    System.out.println("  [INTEGRIDADE] SHA-256 divergente: " + url.substring(url.lastIndexOf('/') + 1));
+                    paraBaixar.add(url);
+                }
+            }
+        }
+        for (String url : paraBaixar) {
+            descartarVersaoLocal(url);
+        }
+        System.out.println((selecionados.size() - paraBaixar.size()) + " trimestres já atualizados, "
+            + paraBaixar.size() + " para baixar\n");
+        return paraBaixar;
+    }
+
+    // Baixa um único trimestre (usado pelo pipeline, um arquivo por vez)
+    File baixarTrimestre(String url) throws Exception {
+        String nome = url.substring(url.lastIndexOf('/') + 1);
+        if (concorrente) {
+            // Um arquivo por vez, mas ainda segmentado e com retomada
+            new DownloadConcorrente(1, segmentos, conexoes).baixarTodos(Collections.singletonList(url), PASTA_RAW);
+        } else {
             System.out.println("Baixando: " + nome);
             baixarArquivo(url);
-            baixados++;
         }
+        return new File(PASTA_RAW, nome);
+    }
+
+    // Registra os downloads no manifesto (quando em uso)
+    void finalizarDownloads(List<String> baixados) throws IOException {
+        if (manifesto == null) return;
+        for (String url : baixados) {
+            manifesto.registrarDownload(url, PASTA_RAW);
+        }
+        manifesto.salvar();
+    }
+
+    // Varre os anos em sequência procurando por trimestres disponíveis
+    private List<String> descobrirTrimestres(List<String> urlsAnos) {
+        List<String> todosOsTrimestres = new ArrayList<>();
         
-        // Após baixar, extrai todos os ZIPs
-        System.out.println("\n=== Extraindo ===");
-        extrairTodos();
-        System.out.println("Concluído! " + baixados + " trimestres baixados\n");
+        for (String urlAno : urlsAnos) {
+            System.out.println("Verificando: " + urlAno.substring(URL_BASE.length(), urlAno.length() - 1));
+            
+            try {
+                String html = lerURL(urlAno);
+                Matcher m = PADRAO_ZIP.matcher(html);
+                
+                while (m.find()) {
+                    String zip = m.group(1);
+                    todosOsTrimestres.add(urlAno + zip);
+                    System.out.println("  Encontrado: " + zip);
+                }
+            } catch (Exception e) {
+                System.out.println("  Ano não disponível");
+            }
+        }
+        
+        return todosOsTrimestres;
+    }
+
+    // Remove o ZIP antigo, os parciais de download, a pasta extraída e a entrada
+    // do manifesto de um trimestre que será baixado de novo
+    private void descartarVersaoLocal(String url) throws IOException {
+        String nome = url.substring(url.lastIndexOf('/') + 1);
+        Files.deleteIfExists(Paths.get(PASTA_RAW, nome));
+        DownloadConcorrente.apagarParciais(Paths.get(PASTA_RAW, nome));
+        ExtratorParalelo.apagar(Paths.get("teste_1_api_integracao/data/extracted", nome.replace(".zip", "")));
+        manifesto.remover(url);
     }
 
     // Lê HTML de uma URL
@@ -92,7 +216,7 @@ public class AnsDownloader {
     // Baixa um arquivo ZIP da ANS se ainda não existir localmente
     private void baixarArquivo(String url) throws Exception {
         String nome = url.substring(url.lastIndexOf('/') + 1);
-        String destino = "teste_1_api_integracao/data/raw/" + nome;
+        String destino = PASTA_RAW + "/" + nome;
         
         // Se arquivo já existe, não baixa novamente
         File arquivo = new File(destino);
@@ -101,7 +225,7 @@ public class AnsDownloader {
             return;
         }
         
-        new File("teste_1_api_integracao/data/raw").mkdirs();
+        new File(PASTA_RAW).mkdirs();
         
         // Copia o arquivo da URL para o disco
         InputStream in = new URL(url).openStream();
@@ -118,50 +242,10 @@ public class AnsDownloader {
         System.out.println("  Baixado");
     }
 
-    // Extrai todos os ZIPs da pasta raw para extracted
+    // Extrai todos os ZIPs da pasta raw para extracted (vários ZIPs e entradas em paralelo)
     private void extrairTodos() {
-        File pasta = new File("teste_1_api_integracao/data/raw");
-        // Filtra apenas arquivos .zip
-        File[] zips = pasta.listFiles((d, n) -> n.endsWith(".zip"));
-        
-        if (zips == null) return;
-        
-        for (File zip : zips) {
-            String destino = "teste_1_api_integracao/data/extracted/" + zip.getName().replace(".zip", "");
-            File pastaDestino = new File(destino);
-            
-            // Se já foi extraído, pula
-            if (pastaDestino.exists() && pastaDestino.list() != null && pastaDestino.list().length > 0) {
-                System.out.println("Já extraído: " + zip.getName());
-                continue;
-            }
-            
-            pastaDestino.mkdirs();
-            System.out.println("Extraindo: " + zip.getName());
-            
-            // Abre o ZIP e extrai cada arquivo para a pasta de destino
-            try (ZipInputStream zin = new ZipInputStream(new FileInputStream(zip))) {
-                ZipEntry entry;
-                while ((entry = zin.getNextEntry()) != null) {
-                    File arquivo = new File(destino, entry.getName());
-                    
-                    if (entry.isDirectory()) {
-                        arquivo.mkdirs();
-                    } else {
-                        arquivo.getParentFile().mkdirs();
-                        OutputStream out = new FileOutputStream(arquivo);
-                        byte[] buffer = new byte[8192];
-                        int bytesRead;
-                        while ((bytesRead = zin.read(buffer)) != -1) {
-                            out.write(buffer, 0, bytesRead);
-                        }
-                        out.close();
-                    }
-                    zin.closeEntry();
-                }
-            } catch (Exception e) {
-                System.out.println("Erro: " + zip.getName());
-            }
-        }
+        new ExtratorParalelo(Runtime.getRuntime().availableProcessors()).extrairTodos(
+            new File(PASTA_RAW),
+            new File("teste_1_api_integracao/data/extracted"));
     }
 }
\ No newline at end of file
@@ -0,0 +1,195 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import main.java.br.com.intuitivecare.comum.Dinheiro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registros de eventos/sinistros em colunas de tipos primitivos (--colunar).
+ *
+ * Um RegistroSinistro são 4 Strings por linha (~250 bytes com cabeçalhos de
+ * objeto e arrays de char). Aqui cada linha ocupa ~15 bytes:
+ * - RegANS como int (+ 1 byte com a quantidade de dígitos, para manter zeros à esquerda)
+ * - Trimestre e Ano codificados em dicionário (1 byte por linha; 2 se passar de 256 valores)
+ * - valor em centavos (long, ver Dinheiro)
+ *
+ * O agrupamento por operadora ordena um único long[] (código do RegANS << 32 | linha),
+ * sem objetos por linha e com acesso sequencial à memória. O código leva em
+ * conta os dígitos: "0123" e "123" são operadoras diferentes, como no
+ * agrupamento por String.
+ *
+ * O valor volta para texto sempre com 2 casas decimais ("29,5" vira "29,50").
+ * Valores que não são números ficam guardados como texto, à parte.
+ */
+public class ArmazemSinistros {
+
+    private int tamanho = 0;
+    private int[] regANS = new int[1024];
+    private byte[] digitosRegANS = new byte[1024];
+    private long[] centavos = new long[1024];
+    private final ColunaDicionario trimestres = new ColunaDicionario();
+    private final ColunaDicionario anos = new ColunaDicionario();
+    // Linha -> texto original, só para valores não numéricos
+    private final Map<Integer, String> valoresTexto = new HashMap<>();
+
+    // Primeiro código de cada quantidade de dígitos: 1 dígito = 0..9, 2 dígitos = 10..109, ...
+    private static final int[] INICIO_POR_DIGITOS = new int[10];
+    static {
+        int potencia = 10;
+        for (int d = 2; d <= 9; d++) {
+            INICIO_POR_DIGITOS[d] = INICIO_POR_DIGITOS[d - 1] + potencia;
+            if (d < 9) potencia *= 10;
+        }
+    }
+
+    /**
+     * Adiciona um registro já validado pelo lerRegistro (RegANS só com dígitos).
+     * Retorna false (registro não guardado) se o RegANS tiver mais de 9 dígitos
+     */
+    public boolean adicionar(DespesaProcessor.RegistroSinistro registro) {
+        String reg = registro.regANS;
+        if (reg.isEmpty() || reg.length() > 9) return false;
+        if (tamanho == regANS.length) crescer();
+
+        regANS[tamanho] = Integer.parseInt(reg);
+        digitosRegANS[tamanho] = (byte) reg.length();
+
+        trimestres.adicionar(tamanho, registro.trimestre);
+        anos.adicionar(tamanho, registro.ano);
+
+        long valor = Dinheiro.centavos(registro.valorDespesas);
+        centavos[tamanho] = valor;
+        if (valor == Dinheiro.INVALIDO) valoresTexto.put(tamanho, registro.valorDespesas);
+
+        tamanho++;
+        return true;
+    }
+
+    public int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Linhas ordenadas por RegANS (quantidade de dígitos, depois valor; dentro
+     * da operadora, na ordem de inserção). Cada posição tem
+     * (código do RegANS << 32 | linha); use linha() para extrair o índice.
+     */
+    public long[] ordenarPorRegANS() {
+        long[] chaves = new long[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            chaves[i] = ((long) codigoRegANS(i) << 32) | i;
+        }
+        Arrays.sort(chaves);
+        return chaves;
+    }
+
+    public static int linha(long chave) {
+        return (int) chave;
+    }
+
+    // Código do RegANS da chave: igual só para o mesmo texto (zeros à esquerda inclusive)
+    public static int regANSDaChave(long chave) {
+        return (int) (chave >>> 32);
+    }
+
+    // Numeração de todos os textos de até 9 dígitos (cabe em 31 bits: 1.111.111.110 códigos)
+    private int codigoRegANS(int linha) {
+        return INICIO_POR_DIGITOS[digitosRegANS[linha]] + regANS[linha];
+    }
+
+    public String regANS(int linha) {
+        return comZeros(regANS[linha], digitosRegANS[linha]);
+    }
+
+    public String trimestre(int linha) {
+        return trimestres.valor(linha);
+    }
+
+    public String ano(int linha) {
+        return anos.valor(linha);
+    }
+
+    public long centavos(int linha) {
+        return centavos[linha];
+    }
+
+    public String valor(int linha) {
+        long c = centavos[linha];
+        return c == Dinheiro.INVALIDO ? valoresTexto.get(linha) : Dinheiro.formatar(c);
+    }
+
+    // Registro temporário para quem ainda trabalha com RegistroSinistro (gravação do consolidado)
+    public DespesaProcessor.RegistroSinistro registro(int linha) {
+        return new DespesaProcessor.RegistroSinistro(regANS(linha), trimestre(linha), ano(linha), valor(linha));
+    }
+
+    // Memória aproximada das colunas (só a parte usada dos arrays)
+    public long bytesPorLinha() {
+        return 4 + 1 + 8 + trimestres.bytesPorLinha() + anos.bytesPorLinha();
+    }
+
+    private void crescer() {
+        int novo = regANS.length * 2;
+        regANS = Arrays.copyOf(regANS, novo);
+        digitosRegANS = Arrays.copyOf(digitosRegANS, novo);
+        centavos = Arrays.copyOf(centavos, novo);
+    }
+
+    private static String comZeros(int valor, int digitos) {
+        String texto = Integer.toString(valor);
+        if (texto.length() >= digitos) return texto;
+        StringBuilder sb = new StringBuilder(digitos);
+        for (int i = texto.length(); i < digitos; i++) sb.append('0');
+        return sb.append(texto).toString();
+    }
+
+    /**
+     * Coluna de texto com poucos valores distintos: cada linha guarda só o
+     * código do valor. Códigos em byte até 256 valores; depois passa para char.
+     */
+    static class ColunaDicionario {
+        private final Map<String, Integer> codigos = new HashMap<>();
+        private final List<String> valores = new ArrayList<>();
+        private byte[] pequenos = new byte[1024];
+        private char[] grandes;
+
+        void adicionar(int linha, String valor) {
+            Integer codigo = codigos.get(valor);
+            if (codigo == null) {
+                codigo = valores.size();
+                if (codigo > Character.MAX_VALUE) throw new IllegalStateException("Valores distintos demais na coluna");
+                codigos.put(valor, codigo);
+                valores.add(valor);
+                if (codigo == 256) promover(linha);
+            }
+
+            if (grandes != null) {
+                if (linha == grandes.length) grandes = Arrays.copyOf(grandes, grandes.length * 2);
+                grandes[linha] = (char) (int) codigo;
+            } else {
+                if (linha == pequenos.length) pequenos = Arrays.copyOf(pequenos, pequenos.length * 2);
+                pequenos[linha] = (byte) (int) codigo;
+            }
+        }
+
+        String valor(int linha) {
+            int codigo = grandes != null ? grandes[linha] : pequenos[linha] & 0xFF;
+            return valores.get(codigo);
+        }
+
+        int bytesPorLinha() {
+            return grandes != null ? 2 : 1;
+        }
+
+        // Mais de 256 valores: copia os códigos já gravados para char[]
+        private void promover(int linhas) {
+            grandes = new char[Math.max(1024, pequenos.length)];
+            for (int i = 0; i < linhas; i++) grandes[i] = (char) (pequenos[i] & 0xFF);
+            pequenos = null;
+        }
+    }
+}
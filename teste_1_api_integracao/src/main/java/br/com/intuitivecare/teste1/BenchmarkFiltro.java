@@ -0,0 +1,128 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmark do filtro de "Eventos/Sinistros": implementação original
+ * (BufferedReader + contains + split) contra o FiltroBytes.
+ *
+ * Gera um CSV sintético no formato das demonstrações contábeis, roda as duas
+ * versões alternadamente (aquecimento + medições) e confere que as saídas
+ * são idênticas.
+ *
+ * Uso: java ... BenchmarkFiltro [linhas=2000000] [rodadas=5]
+ */
+public class BenchmarkFiltro {
+
+    private static final int AQUECIMENTO = 2;
+
+    public static void main(String[] args) throws Exception {
+        int linhas = args != null && args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int rodadas = args != null && args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File entrada = File.createTempFile("bench_eventos", ".csv");
+        File saidaTexto = File.createTempFile("bench_saida_texto", ".csv");
+        File saidaBytes = File.createTempFile("bench_saida_bytes", ".csv");
+        entrada.deleteOnExit();
+        saidaTexto.deleteOnExit();
+        saidaBytes.deleteOnExit();
+
+        gerarCSV(entrada, linhas);
+        double megabytes = entrada.length() / (1024.0 * 1024.0);
+        System.out.println(String.format("Entrada: %d linhas, %.1f MB", linhas, megabytes));
+
+        long[] temposTexto = new long[rodadas];
+        long[] temposBytes = new long[rodadas];
+        int linhasTexto = 0;
+        int linhasBytes = 0;
+
+        for (int i = -AQUECIMENTO; i < rodadas; i++) {
+            long inicio = System.nanoTime();
+            linhasTexto = filtrarTexto(entrada, saidaTexto);
+            long meio = System.nanoTime();
+            linhasBytes = filtrarBytes(entrada, saidaBytes);
+            long fim = System.nanoTime();
+
+            if (i >= 0) {
+                temposTexto[i] = meio - inicio;
+                temposBytes[i] = fim - meio;
+            }
+        }
+
+        boolean iguais = linhasTexto == linhasBytes
+            && Arrays.equals(Files.readAllBytes(saidaTexto.toPath()), Files.readAllBytes(saidaBytes.toPath()));
+
+        System.out.println("Linhas filtradas: " + linhasTexto + " (texto) / " + linhasBytes + " (bytes)");
+        System.out.println("Saídas idênticas: " + (iguais ? "SIM" : "NAO"));
+        imprimir("BufferedReader + split", temposTexto, megabytes);
+        imprimir("FiltroBytes", temposBytes, megabytes);
+        System.out.println(String.format("Ganho (mediana): %.1fx", (double) mediana(temposTexto) / mediana(temposBytes)));
+    }
+
+    // Implementação original do DespesaProcessor
+    private static int filtrarTexto(File entrada, File saida) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(entrada));
+             BufferedWriter writer = new BufferedWriter(new FileWriter(saida))) {
+            return DespesaProcessor.filtrarEventos(br, writer);
+        }
+    }
+
+    private static int filtrarBytes(File entrada, File saida) throws IOException {
+        try (FileChannel canal = FileChannel.open(entrada.toPath(), StandardOpenOption.READ);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(saida), 1 << 20)) {
+            return new FiltroBytes().filtrar(canal, Long.MAX_VALUE, true, out);
+        }
+    }
+
+    // CSV no layout DATA;REG_ANS;CD_CONTA_CONTABIL;DESCRICAO;VL_SALDO_INICIAL;VL_SALDO_FINAL
+    private static void gerarCSV(File arquivo, int linhas) throws IOException {
+        String[] descricoes = {
+            "Eventos/Sinistros Conhecidos ou Avisados de Assistência a Saúde Médico Hospitalar",
+            "Contraprestações Efetivas de Plano de Assistência à Saúde",
+            "Provisões Técnicas de Operações de Assistência à Saúde",
+            "Receitas com Operações de Assistência à Saúde",
+            "Despesas Administrativas",
+            "Eventos/Sinistros"
+        };
+        Random random = new Random(42);
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(arquivo), 1 << 20)) {
+            writer.write("\"DATA\";\"REG_ANS\";\"CD_CONTA_CONTABIL\";\"DESCRICAO\";\"VL_SALDO_INICIAL\";\"VL_SALDO_FINAL\"");
+            writer.newLine();
+            for (int i = 0; i < linhas; i++) {
+                int regANS = 300000 + random.nextInt(1000);
+                writer.write("\"2025-01-01\";\"" + regANS + "\";\"" + (41 + random.nextInt(5000)) + "\";\""
+                    + descricoes[random.nextInt(descricoes.length)] + "\";\""
+                    + random.nextInt(10_000_000) + "," + random.nextInt(100) + "\";\""
+                    + random.nextInt(10_000_000) + "," + random.nextInt(100) + "\"");
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void imprimir(String nome, long[] tempos, double megabytes) {
+        long melhor = Arrays.stream(tempos).min().orElse(0);
+        long med = mediana(tempos);
+        System.out.println(String.format("  %-24s mediana %6d ms | melhor %6d ms | %7.1f MB/s",
+            nome, med / 1_000_000, melhor / 1_000_000, megabytes / (med / 1_000_000_000.0)));
+    }
+
+    private static long mediana(long[] tempos) {
+        long[] ordenados = tempos.clone();
+        Arrays.sort(ordenados);
+        return ordenados[ordenados.length / 2];
+    }
+}
@@ -0,0 +1,287 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import main.java.br.com.intuitivecare.comum.Opcoes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache persistente RegANS -> operadora (--cache), na frente da API da ANS.
+ *
+ * Duas camadas:
+ * - disco: log só de acréscimo (data/cache_operadoras.csv), uma linha por
+ *   consulta; a última linha de cada RegANS é a que vale
+ * - memória: LRU com as entradas usadas recentemente
+ *
+ * Ao abrir, o log é lido uma vez só para montar o índice RegANS -> posição
+ * no arquivo; a entrada em si só é lida (e vai para o LRU) quando pedida.
+ * Se o log tiver muitas linhas substituídas/expiradas, é compactado
+ * (tmp + rename) antes de usar.
+ *
+ * Cada entrada tem validade própria: operadoras encontradas valem
+ * --cache-ttl-dias (30), e 404 (cache negativo) vale --cache-ttl-404-horas (24).
+ * Erros temporários (timeout, 5xx) não são guardados.
+ *
+ * Formato (CSV com ;): RegANS;Status;GravadoEm;ExpiraEm;CNPJ;RazaoSocial
+ * Status = OK ou 404; datas em milissegundos desde 1970
+ */
+public class CacheOperadoras {
+
+    private static final String CABECALHO = "RegANS;Status;GravadoEm;ExpiraEm;CNPJ;RazaoSocial";
+    private static final String CAMINHO_PADRAO = "teste_1_api_integracao/data/cache_operadoras.csv";
+    private static final int LINHAS_MINIMAS_COMPACTACAO = 1000;
+
+    private final Path arquivo;
+    private final long ttlMs;
+    private final long ttlNegativoMs;
+    private final int capacidadeMemoria;
+
+    // Camada de disco: posição da linha mais recente de cada RegANS
+    private final Map<String, Long> indice = new HashMap<>();
+    // Camada de memória: LRU (LinkedHashMap em ordem de acesso)
+    private final LinkedHashMap<String, Entrada> memoria;
+    private FileChannel canal;
+    // Fim da última linha completa do log
+    private long fimValido = 0;
+
+    private int acertos = 0;
+    private int faltas = 0;
+
+    CacheOperadoras(Path arquivo, long ttlMs, long ttlNegativoMs, int capacidadeMemoria) {
+        this.arquivo = arquivo;
+        this.ttlMs = ttlMs;
+        this.ttlNegativoMs = ttlNegativoMs;
+        this.capacidadeMemoria = Math.max(1, capacidadeMemoria);
+        this.memoria = new LinkedHashMap<String, Entrada>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> maisAntiga) {
+                return size() > CacheOperadoras.this.capacidadeMemoria;
+            }
+        };
+    }
+
+    // Lê --cache-ttl-dias, --cache-ttl-404-horas e --cache-memoria; null se o cache não abrir
+    static CacheOperadoras abrir(String[] args) {
+        CacheOperadoras cache = new CacheOperadoras(
+            Paths.get(CAMINHO_PADRAO),
+            Opcoes.inteiro(args, "--cache-ttl-dias", 30) * 24L * 3600 * 1000,
+            Opcoes.inteiro(args, "--cache-ttl-404-horas", 24) * 3600L * 1000,
+            Opcoes.inteiro(args, "--cache-memoria", 1000));
+        try {
+            cache.abrir();
+            return cache;
+        } catch (IOException e) {
+            System.out.println("[ERRO] cache de operadoras: " + e.getMessage() + " (seguindo sem cache)");
+            return null;
+        }
+    }
+
+    void abrir() throws IOException {
+        long inicio = System.nanoTime();
+        Files.createDirectories(arquivo.toAbsolutePath().getParent());
+
+        int linhas = indexar();
+        if (linhas >= LINHAS_MINIMAS_COMPACTACAO && linhas > 2 * indice.size()) {
+            compactar();
+            linhas = indexar();
+        }
+
+        canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (canal.size() > fimValido) canal.truncate(fimValido); // descarta linha interrompida
+        if (canal.size() == 0) gravar(CABECALHO + "\n");
+
+        System.out.println(String.format("Cache de operadoras: %d entradas (%d linhas) em %d ms",
+            indice.size(), linhas, (System.nanoTime() - inicio) / 1_000_000));
+    }
+
+    /**
+     * Procura o RegANS no cache.
+     * Retorna null se não houver entrada válida (consultar a API); senão a
+     * entrada, cujo campo dados é null para operadoras não encontradas (404).
+     */
+    synchronized Entrada buscar(String regANS) {
+        Entrada entrada = memoria.get(regANS);
+        if (entrada == null) {
+            Long posicao = indice.get(regANS);
+            if (posicao != null) {
+                entrada = lerEntrada(canal, posicao);
+                if (entrada != null) memoria.put(regANS, entrada);
+            }
+        }
+
+        if (entrada == null || entrada.expiraEm <= System.currentTimeMillis()) {
+            faltas++;
+            return null;
+        }
+        acertos++;
+        return entrada;
+    }
+
+    // Guarda uma operadora encontrada
+    synchronized void guardar(String regANS, DespesaProcessor.DadosOperadora dados) {
+        acrescentar(new Entrada(regANS, dados, System.currentTimeMillis() + ttlMs));
+    }
+
+    // Guarda um 404 (cache negativo, validade menor)
+    synchronized void guardarNaoEncontrada(String regANS) {
+        acrescentar(new Entrada(regANS, null, System.currentTimeMillis() + ttlNegativoMs));
+    }
+
+    synchronized void fechar() {
+        System.out.println("Cache de operadoras: " + acertos + " acertos, " + faltas + " consultas à API\n");
+        try {
+            if (canal != null) canal.close();
+        } catch (IOException e) {
+            System.out.println("[ERRO] ao fechar cache: " + e.getMessage());
+        }
+    }
+
+    private void acrescentar(Entrada entrada) {
+        try {
+            long posicao = canal.size();
+            gravar(formatar(entrada, System.currentTimeMillis()));
+            indice.put(entrada.regANS, posicao);
+            memoria.put(entrada.regANS, entrada);
+        } catch (IOException e) {
+            System.out.println("[ERRO] ao gravar cache (Reg ANS " + entrada.regANS + "): " + e.getMessage());
+        }
+    }
+
+    private void gravar(String texto) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(texto.getBytes(StandardCharsets.UTF_8));
+        long posicao = canal.size();
+        while (buffer.hasRemaining()) {
+            posicao += canal.write(buffer, posicao);
+        }
+    }
+
+    // Varre o log montando o índice (última linha de cada RegANS); retorna o número de linhas
+    private int indexar() throws IOException {
+        indice.clear();
+        memoria.clear();
+        fimValido = 0;
+        if (!Files.exists(arquivo)) return 0;
+
+        byte[] dados = Files.readAllBytes(arquivo);
+        int linhas = 0;
+        int inicio = 0;
+        boolean header = true;
+        for (int i = 0; i < dados.length; i++) {
+            if (dados[i] != '\n') continue;
+            if (header) {
+                header = false;
+            } else if (i > inicio) {
+                // RegANS vai até o primeiro ';'
+                int fimChave = inicio;
+                while (fimChave < i && dados[fimChave] != ';') fimChave++;
+                indice.put(new String(dados, inicio, fimChave - inicio, StandardCharsets.US_ASCII), (long) inicio);
+                linhas++;
+            }
+            inicio = i + 1;
+        }
+        // Linha final sem '\n' = gravação interrompida, é ignorada
+        fimValido = inicio;
+        return linhas;
+    }
+
+    // Reescreve o log só com as entradas mais recentes ainda válidas
+    private void compactar() throws IOException {
+        long agora = System.currentTimeMillis();
+        StringBuilder conteudo = new StringBuilder(CABECALHO).append('\n');
+        int mantidas = 0;
+
+        try (FileChannel leitura = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            for (Long posicao : indice.values()) {
+                Entrada e = lerEntrada(leitura, posicao);
+                if (e == null || e.expiraEm <= agora) continue;
+                conteudo.append(formatar(e, e.gravadoEm));
+                mantidas++;
+            }
+        }
+
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        Files.write(temporario, conteudo.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING);
+        }
+        System.out.println("Cache de operadoras compactado: " + mantidas + " entradas mantidas");
+    }
+
+    // Lê a linha que começa na posição indicada (null se estiver corrompida)
+    private static Entrada lerEntrada(FileChannel canal, long posicao) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(512);
+            int tamanho = 0;
+            while (true) {
+                int lidos = canal.read(buffer, posicao + tamanho);
+                if (lidos <= 0) return null;
+                for (int i = tamanho; i < tamanho + lidos; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return interpretar(new String(buffer.array(), 0, i, StandardCharsets.UTF_8));
+                    }
+                }
+                tamanho += lidos;
+                if (!buffer.hasRemaining()) {
+                    ByteBuffer maior = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    maior.put(buffer);
+                    buffer = maior;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Entrada interpretar(String linha) {
+        // Razão social fica por último e pode conter ';'
+        String[] campos = linha.split(";", 6);
+        if (campos.length < 6) return null;
+
+        DespesaProcessor.DadosOperadora dados = campos[1].equals("OK")
+            ? new DespesaProcessor.DadosOperadora(campos[4], campos[5])
+            : null;
+        Entrada e = new Entrada(campos[0], dados, Long.parseLong(campos[3]));
+        e.gravadoEm = Long.parseLong(campos[2]);
+        return e;
+    }
+
+    private static String formatar(Entrada e, long gravadoEm) {
+        String cnpj = e.dados != null ? limpar(e.dados.cnpj) : "";
+        String razao = e.dados != null ? limpar(e.dados.razaoSocial) : "";
+        return e.regANS + ";" + (e.dados != null ? "OK" : "404") + ";" + gravadoEm + ";" + e.expiraEm
+            + ";" + cnpj + ";" + razao + "\n";
+    }
+
+    private static String limpar(String valor) {
+        return valor == null ? "" : valor.replace('\n', ' ').replace('\r', ' ');
+    }
+
+    // Uma entrada do cache; dados == null significa operadora não encontrada (404)
+    static class Entrada {
+        final String regANS;
+        final DespesaProcessor.DadosOperadora dados;
+        final long expiraEm;
+        long gravadoEm;
+
+        Entrada(String regANS, DespesaProcessor.DadosOperadora dados, long expiraEm) {
+            this.regANS = regANS;
+            this.dados = dados;
+            this.expiraEm = expiraEm;
+            this.gravadoEm = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import main.java.br.com.intuitivecare.comum.LeitorCSV;
+import main.java.br.com.intuitivecare.comum.LinhaCSV;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cadastro de operadoras ativas da ANS (Relatorio_cadop.csv), indexado por RegANS.
+ *
+ * Usado no modo --cadastro (join local de todos os RegANS, API só para os
+ * que faltarem) e como fonte secundária quando a API de operadoras não
+ * responde a tempo (--orcamento-s). Usa a cópia local se existir (a do Teste 1 ou a baixada
+ * pelo Teste 2); senão baixa o CSV dos dados abertos uma vez e guarda em
+ * data/raw.
+ */
+class CadastroOperadoras {
+
+    private static final String URL_PASTA = "https://dadosabertos.ans.gov.br/FTP/PDA/operadoras_de_plano_de_saude_ativas/";
+    private static final String ARQUIVO_LOCAL = "teste_1_api_integracao/data/raw/Relatorio_cadop.csv";
+    private static final String ARQUIVO_TESTE2 = "teste_2_teste_de_transformacao_e_validacao_de_dados/data/raw/operadoras.csv";
+    private static final Pattern LINK_CADOP = Pattern.compile("href=\"([^\"]*Relatorio_cadop[^\"]*\\.csv)\"");
+
+    private final Map<String, DespesaProcessor.DadosOperadora> porRegistro = new HashMap<>();
+
+    private CadastroOperadoras() {
+    }
+
+    // Carrega o cadastro (baixando se não houver cópia local); vazio em caso de erro
+    static CadastroOperadoras carregar() {
+        CadastroOperadoras cadastro = new CadastroOperadoras();
+        try {
+            File arquivo = localizar();
+            cadastro.ler(arquivo);
+            System.out.println("Cadastro de operadoras: " + cadastro.porRegistro.size() + " registros (" + arquivo.getName() + ")");
+        } catch (Exception e) {
+            System.out.println("[ERRO] cadastro de operadoras: " + e.getMessage());
+        }
+        return cadastro;
+    }
+
+    DespesaProcessor.DadosOperadora buscar(String regANS) {
+        return porRegistro.get(chave(regANS));
+    }
+
+    int tamanho() {
+        return porRegistro.size();
+    }
+
+    // RegANS sem zeros à esquerda ("005711" e "5711" são a mesma operadora)
+    private static String chave(String regANS) {
+        int i = 0;
+        while (i < regANS.length() - 1 && regANS.charAt(i) == '0') i++;
+        return regANS.substring(i);
+    }
+
+    private static File localizar() throws IOException, InterruptedException {
+        File local = new File(ARQUIVO_LOCAL);
+        if (local.exists()) return local;
+        File teste2 = new File(ARQUIVO_TESTE2);
+        if (teste2.exists()) return teste2;
+
+        // Descobre o nome atual do arquivo na listagem da pasta
+        HttpRequest listagem = HttpRequest.newBuilder(URI.create(URL_PASTA)).timeout(Duration.ofSeconds(30)).GET().build();
+        Matcher m = LINK_CADOP.matcher(HttpCompartilhado.CLIENTE.send(listagem, HttpResponse.BodyHandlers.ofString()).body());
+        if (!m.find()) throw new IOException("Relatorio_cadop não encontrado em " + URL_PASTA);
+
+        String url = URI.create(URL_PASTA).resolve(m.group(1)).toString();
+        System.out.println("Baixando cadastro: " + url);
+
+        local.getParentFile().mkdirs();
+        Path tmp = Paths.get(ARQUIVO_LOCAL + ".tmp");
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofMinutes(2)).GET().build();
+        try {
+            HttpResponse<Path> response = HttpCompartilhado.CLIENTE.send(request, HttpResponse.BodyHandlers.ofFile(tmp));
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP " + response.statusCode() + " ao baixar " + url);
+            }
+            try {
+                Files.move(tmp, local.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, local.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return local;
+    }
+
+    // Colunas localizadas pelo nome no header (REGISTRO_OPERADORA;CNPJ;Razao_Social;...)
+    // O Relatorio_cadop vem em UTF-8 ou ISO-8859-1, conforme a publicação
+    private void ler(File arquivo) throws IOException {
+        String caminho = arquivo.getPath();
+        try (LeitorCSV leitor = LeitorCSV.abrir(caminho, LeitorCSV.detectarCharset(caminho))) {
+            LinhaCSV campos = new LinhaCSV();
+            if (!leitor.proximo(campos)) return;
+
+            int registroIdx = -1, cnpjIdx = -1, razaoIdx = -1;
+            for (int i = 0; i < campos.campos(); i++) {
+                String coluna = campos.textoSemEspacos(i).toUpperCase();
+                if (registroIdx < 0 && coluna.contains("REGISTRO")) registroIdx = i;
+                if (cnpjIdx < 0 && coluna.contains("CNPJ")) cnpjIdx = i;
+                if (razaoIdx < 0 && coluna.contains("RAZAO")) razaoIdx = i;
+            }
+            if (registroIdx < 0 || cnpjIdx < 0 || razaoIdx < 0) {
+                throw new IOException("colunas não encontradas no header: " + campos.registro());
+            }
+
+            int ultimaColuna = Math.max(registroIdx, Math.max(cnpjIdx, razaoIdx));
+            while (leitor.proximo(campos)) {
+                if (campos.camposPreenchidos() <= ultimaColuna) continue;
+
+                if (campos.vazioSemEspacos(registroIdx)) continue;
+                porRegistro.putIfAbsent(chave(campos.textoSemEspacos(registroIdx)), new DespesaProcessor.DadosOperadora(
+                    campos.textoSemEspacos(cnpjIdx),
+                    campos.textoSemEspacos(razaoIdx)));
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import main.java.br.com.intuitivecare.comum.Opcoes;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Consulta assíncrona das operadoras na API da ANS (--consulta-async).
+ *
+ * Em vez de uma consulta por vez, todos os RegANS são resolvidos antes da
+ * gravação do consolidado:
+ * - até "concorrencia" consultas em andamento ao mesmo tempo
+ * - token bucket limitando as requisições por segundo enviadas à ANS
+ * - HttpClient compartilhado (conexões keep-alive reaproveitadas)
+ * - erros de rede, 429 e 5xx são repetidos com backoff exponencial + jitter
+ *   (respeitando o Retry-After quando o servidor manda)
+ *
+ * Tempo total aproximado: (operadoras / concorrencia) x tempo de resposta,
+ * desde que o limite de taxa não seja o gargalo.
+ *
+ * Cauda de latência (opcional):
+ * - hedge (--hedge): se a resposta demorar mais que o p95 observado até
+ *   agora, envia uma cópia da requisição e usa a que chegar primeiro
+ * - orçamento (--orcamento-s=N): passado esse tempo, os RegANS ainda sem
+ *   resposta são resolvidos pelo cadastro de operadoras (Relatorio_cadop)
+ * - histogramas de latência por requisição e por consulta no final
+ */
+public class ConsultaOperadoras {
+
+    private static final long BACKOFF_BASE_MS = 500;
+    private static final long BACKOFF_MAXIMO_MS = 15_000;
+
+    // Antes de ter amostras suficientes, o hedge usa o atraso inicial
+    private static final int AMOSTRAS_MINIMAS_HEDGE = 20;
+    private static final long ATRASO_MINIMO_HEDGE_MS = 50;
+
+    private final String urlBase;
+    private final int concorrencia;
+    private final int tentativas;
+    private final LimitadorTaxa limitador;
+
+    // Hedge desligado = -1; senão, atraso usado até haver amostras para o p95
+    private long atrasoInicialHedgeMs = -1;
+    // Sem orçamento = 0
+    private long orcamentoMs = 0;
+    // Cadastro já carregado pelo --cadastro (senão é carregado quando o orçamento estoura)
+    private CadastroOperadoras cadastro;
+
+    private final HistogramaLatencia latenciaRequisicoes = new HistogramaLatencia("por requisição");
+    private final HistogramaLatencia latenciaConsultas = new HistogramaLatencia("por consulta (com hedge e novas tentativas)");
+    private final AtomicInteger hedgesEnviados = new AtomicInteger();
+    private final AtomicInteger hedgesVencedores = new AtomicInteger();
+    // RegANS que a API respondeu com 404 (para o cache negativo)
+    private final Set<String> naoEncontradas = ConcurrentHashMap.newKeySet();
+
+    public ConsultaOperadoras(String urlBase, int concorrencia, double requisicoesPorSegundo, int tentativas) {
+        this.urlBase = urlBase;
+        this.concorrencia = Math.max(1, concorrencia);
+        this.tentativas = Math.max(1, tentativas);
+        // Rajada de no máximo 1 segundo de requisições
+        this.limitador = new LimitadorTaxa(requisicoesPorSegundo, requisicoesPorSegundo);
+    }
+
+    // Lê --concorrencia, --req-por-segundo, --tentativas, --hedge[-ms] e --orcamento-s
+    static ConsultaOperadoras configurar(String[] args) {
+        ConsultaOperadoras consulta = new ConsultaOperadoras(
+            DespesaProcessor.URL_API,
+            Opcoes.inteiro(args, "--concorrencia", 16),
+            Opcoes.inteiro(args, "--req-por-segundo", 20),
+            Opcoes.inteiro(args, "--tentativas", 4));
+        if (Opcoes.tem(args, "--hedge")) consulta.usarHedge(Opcoes.inteiro(args, "--hedge-ms", 1000));
+        consulta.usarOrcamento(Opcoes.inteiro(args, "--orcamento-s", 0) * 1000L);
+        return consulta;
+    }
+
+    // Liga o hedge; atrasoInicialMs vale até o p95 ter amostras suficientes
+    public void usarHedge(long atrasoInicialMs) {
+        this.atrasoInicialHedgeMs = Math.max(ATRASO_MINIMO_HEDGE_MS, atrasoInicialMs);
+    }
+
+    // Tempo máximo de buscarTodas() antes de recorrer ao cadastro (0 = sem limite)
+    public void usarOrcamento(long orcamentoMs) {
+        this.orcamentoMs = Math.max(0, orcamentoMs);
+    }
+
+    // Reaproveita o cadastro já carregado no fallback do orçamento
+    void usarCadastro(CadastroOperadoras cadastro) {
+        this.cadastro = cadastro;
+    }
+
+    // Resolve todos os RegANS; operadoras não encontradas (ou com erro) ficam com valor null
+    public Map<String, DespesaProcessor.DadosOperadora> buscarTodas(Collection<String> registrosANS) {
+        System.out.println("Consulta assíncrona: " + registrosANS.size() + " operadoras, concorrência "
+            + concorrencia + ", " + tentativas + " tentativas"
+            + (atrasoInicialHedgeMs >= 0 ? ", hedge" : "")
+            + (orcamentoMs > 0 ? ", orçamento " + orcamentoMs / 1000 + " s" : "") + "\n");
+
+        ExecutorService pool = Executors.newFixedThreadPool(concorrencia);
+        AtomicInteger concluidas = new AtomicInteger();
+        long inicio = System.nanoTime();
+
+        List<String> ids = new ArrayList<>(registrosANS);
+        List<CompletableFuture<DespesaProcessor.DadosOperadora>> futuros = new ArrayList<>();
+        for (String regANS : ids) {
+            futuros.add(CompletableFuture.supplyAsync(() -> {
+                DespesaProcessor.DadosOperadora dados = buscarMedindo(regANS);
+                System.out.println("[" + concluidas.incrementAndGet() + "/" + ids.size() + "] Reg ANS: " + regANS
+                    + (dados != null ? " OK: " + dados.cnpj + " - " + dados.razaoSocial : " sem dados"));
+                return dados;
+            }, pool));
+        }
+
+        // Espera cada consulta só até o fim do orçamento
+        long prazo = orcamentoMs > 0 ? inicio + orcamentoMs * 1_000_000 : Long.MAX_VALUE;
+        Map<String, DespesaProcessor.DadosOperadora> resultado = new HashMap<>();
+        List<String> semResposta = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            DespesaProcessor.DadosOperadora dados = aguardar(futuros.get(i), prazo);
+            resultado.put(ids.get(i), dados);
+            if (dados == null) semResposta.add(ids.get(i));
+        }
+        // Consultas que estouraram o orçamento são interrompidas
+        pool.shutdownNow();
+
+        System.out.println(String.format("Consultas concluídas em %.1f s\n",
+            (System.nanoTime() - inicio) / 1_000_000_000.0));
+
+        if (orcamentoMs > 0 && !semResposta.isEmpty()) {
+            resolverPeloCadastro(semResposta, resultado);
+        }
+
+        imprimirLatencias();
+        return resultado;
+    }
+
+    // Uma consulta avulsa (mesmas regras de taxa, novas tentativas e hedge)
+    public DespesaProcessor.DadosOperadora buscarUma(String regANS) {
+        return buscarMedindo(regANS);
+    }
+
+    // A API respondeu 404 para esse RegANS (erros temporários não contam)
+    public boolean naoEncontrada(String regANS) {
+        return naoEncontradas.contains(regANS);
+    }
+
+    private DespesaProcessor.DadosOperadora aguardar(CompletableFuture<DespesaProcessor.DadosOperadora> futuro, long prazo) {
+        try {
+            if (prazo == Long.MAX_VALUE) return futuro.get();
+            return futuro.get(Math.max(0, prazo - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // Fonte secundária para quem ficou sem resposta da API
+    private void resolverPeloCadastro(List<String> semResposta, Map<String, DespesaProcessor.DadosOperadora> resultado) {
+        System.out.println(semResposta.size() + " operadoras sem resposta da API; usando o cadastro de operadoras");
+        if (cadastro == null) cadastro = CadastroOperadoras.carregar();
+
+        int resolvidas = 0;
+        for (String regANS : semResposta) {
+            DespesaProcessor.DadosOperadora dados = cadastro.buscar(regANS);
+            if (dados != null) {
+                resultado.put(regANS, dados);
+                resolvidas++;
+            }
+        }
+        System.out.println("Resolvidas pelo cadastro: " + resolvidas + "/" + semResposta.size() + "\n");
+    }
+
+    void imprimirLatencias() {
+        latenciaRequisicoes.imprimir();
+        latenciaConsultas.imprimir();
+        if (atrasoInicialHedgeMs >= 0) {
+            System.out.println("Hedges enviados: " + hedgesEnviados.get() + " (venceram: " + hedgesVencedores.get()
+                + "), atraso atual: " + atrasoHedgeMs() + " ms\n");
+        }
+    }
+
+    private DespesaProcessor.DadosOperadora buscarMedindo(String regANS) {
+        long inicio = System.nanoTime();
+        DespesaProcessor.DadosOperadora dados = buscar(regANS);
+        latenciaConsultas.registrar(System.nanoTime() - inicio);
+        return dados;
+    }
+
+    // Uma operadora, com novas tentativas para falhas temporárias
+    private DespesaProcessor.DadosOperadora buscar(String regANS) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(urlBase + regANS))
+            .header("Accept", "application/json")
+            .timeout(Duration.ofSeconds(5))
+            .GET()
+            .build();
+
+        for (int tentativa = 1; tentativa <= tentativas; tentativa++) {
+            long retryAfter = -1;
+            try {
+                limitador.adquirir();
+                HttpResponse<String> response = enviar(request);
+                int status = response.statusCode();
+
+                if (status == 200) return DespesaProcessor.lerOperadora(response.body());
+
+                // 404 e outros 4xx não mudam tentando de novo
+                if (status == 404) naoEncontradas.add(regANS);
+                if (status != 429 && status < 500) {
+                    System.out.println("  Erro: " + status + " (Reg ANS " + regANS + ")");
+                    return null;
+                }
+                System.out.println("  Erro: " + status + " (Reg ANS " + regANS + ", tentativa " + tentativa + ")");
+                retryAfter = response.headers().firstValue("Retry-After").map(ConsultaOperadoras::segundos).orElse(-1L);
+            } catch (HttpTimeoutException e) {
+                System.out.println("  Timeout (Reg ANS " + regANS + ", tentativa " + tentativa + ")");
+            } catch (IOException e) {
+                System.out.println("  Erro: " + e.getMessage() + " (Reg ANS " + regANS + ", tentativa " + tentativa + ")");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+
+            if (tentativa < tentativas && !esperar(tentativa, retryAfter)) return null;
+        }
+
+        return null;
+    }
+
+    // Envia a requisição (com hedge, se ligado) e espera a primeira resposta
+    private HttpResponse<String> enviar(HttpRequest request) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<String>> futuro = atrasoInicialHedgeMs >= 0
+            ? enviarComHedge(request)
+            : enviarMedindo(request);
+        try {
+            return futuro.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (causa instanceof IOException) throw (IOException) causa;
+            throw new IOException(causa);
+        }
+    }
+
+    private CompletableFuture<HttpResponse<String>> enviarMedindo(HttpRequest request) {
+        long inicio = System.nanoTime();
+        return HttpCompartilhado.CLIENTE.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            .whenComplete((response, erro) -> latenciaRequisicoes.registrar(System.nanoTime() - inicio));
+    }
+
+    /**
+     * Envia a requisição e, se ela não responder dentro do atraso do hedge,
+     * envia uma cópia. Vale a primeira resposta; só falha se as duas falharem.
+     * A cópia só sai se o limitador tiver ficha livre (hedge não fura o limite).
+     */
+    private CompletableFuture<HttpResponse<String>> enviarComHedge(HttpRequest request) {
+        CompletableFuture<HttpResponse<String>> resultado = new CompletableFuture<>();
+        int[] pendentes = {1};
+
+        enviarMedindo(request).whenComplete((response, erro) -> concluir(resultado, pendentes, response, erro, false));
+
+        CompletableFuture.delayedExecutor(atrasoHedgeMs(), TimeUnit.MILLISECONDS).execute(() -> {
+            synchronized (pendentes) {
+                if (resultado.isDone() || pendentes[0] == 0 || !limitador.tentarAdquirir()) return;
+                pendentes[0]++;
+            }
+            hedgesEnviados.incrementAndGet();
+            enviarMedindo(request).whenComplete((response, erro) -> concluir(resultado, pendentes, response, erro, true));
+        });
+
+        return resultado;
+    }
+
+    private void concluir(CompletableFuture<HttpResponse<String>> resultado, int[] pendentes,
+                          HttpResponse<String> response, Throwable erro, boolean hedge) {
+        if (erro == null) {
+            if (resultado.complete(response) && hedge) hedgesVencedores.incrementAndGet();
+            return;
+        }
+        if (erro instanceof CompletionException && erro.getCause() != null) erro = erro.getCause();
+        synchronized (pendentes) {
+            if (--pendentes[0] == 0) resultado.completeExceptionally(erro);
+        }
+    }
+
+    // p95 das requisições até agora (ou o atraso inicial, com poucas amostras)
+    private long atrasoHedgeMs() {
+        if (latenciaRequisicoes.total() < AMOSTRAS_MINIMAS_HEDGE) return atrasoInicialHedgeMs;
+        return Math.max(ATRASO_MINIMO_HEDGE_MS, latenciaRequisicoes.percentil(0.95));
+    }
+
+    // Backoff exponencial com "full jitter": espera aleatória entre 0 e base * 2^(tentativa-1)
+    private static boolean esperar(int tentativa, long retryAfterSegundos) {
+        long teto = Math.min(BACKOFF_MAXIMO_MS, BACKOFF_BASE_MS << (tentativa - 1));
+        long espera = ThreadLocalRandom.current().nextLong(teto + 1);
+        if (retryAfterSegundos >= 0) espera = Math.max(espera, retryAfterSegundos * 1000);
+
+        try {
+            Thread.sleep(espera);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Retry-After em segundos (o formato de data HTTP é ignorado)
+    private static long segundos(String valor) {
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package main.java.br.com.intuitivecare.teste1;
 
+import main.java.br.com.intuitivecare.comum.Dinheiro;
+import main.java.br.com.intuitivecare.comum.LinhaCSV;
+import main.java.br.com.intuitivecare.comum.Opcoes;
+
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 /**
  * Processa dados de eventos/sinistros extraídos e consolida com dados da API ANS.
@@ -12,54 +21,86 @@ import java.util.*;
  */
 public class DespesaProcessor {
 
+    static final String URL_API = "https://www.ans.gov.br/operadoras-entity/v1/operadoras/";
+
+    // Contadores da consolidação (compartilhados entre o modo normal e o pipeline)
+    private final Set<String> cpnjsDuplicados = new HashSet<>();
+    int valoresProblematicos = 0;
+    int processados = 0;
+    int sucessos = 0;
+
+    // Consulta assíncrona (--consulta-async, --hedge, --orcamento-s); null = uma consulta por vez
+    ConsultaOperadoras consulta;
+    // Cache persistente de operadoras (--cache); null = sempre consulta a API
+    CacheOperadoras cache;
+    // Cadastro de operadoras ativas (--cadastro): join local por RegANS; null = só cache/API
+    CadastroOperadoras cadastro;
+    // RegANS que a API respondeu com 404 no modo sequencial
+    private final Set<String> naoEncontradas = new HashSet<>();
+    // Campos da linha em lerRegistro (reaproveitada; lerRegistro roda em uma thread só)
+    private final LinhaCSV colunas = new LinhaCSV();
+
+    // Formato do consolidado (--formato-saida=csv|gzip|binario|colunar) e a saída aberta na execução
+    String formatoSaida = "csv";
+    // --particionar: um arquivo por Ano/Trimestre + índice (SaidaParticionada)
+    boolean particionar = false;
+    private SaidaConsolidado saida;
+
+    // Agrupamento em disco (--agrupamento-externo): registros por lote em memória; 0 = Map em memória
+    int registrosPorLote = 0;
+    // Registros em colunas primitivas (--colunar) em vez de Map de RegistroSinistro
+    boolean colunar = false;
+
     public static void main(String[] args) {
         System.out.println("Iniciando processamento...\n");
 
         String pastaExtracted = "teste_1_api_integracao/data/extracted";
         String arquivoSaida = "teste_1_api_integracao/output/eventos_sinistros.csv";
+        boolean streaming = Opcoes.tem(args, "--streaming");
+        boolean filtroBytes = Opcoes.tem(args, "--filtro-bytes");
+        boolean paralelo = Opcoes.tem(args, "--paralelo");
 
         new File("teste_1_api_integracao/output").mkdirs();
 
-        int contador = 0;
+        // Modo streaming: lê os CSVs de dentro dos ZIPs, sem cópia extraída em disco
+        List<File> entradas = streaming
+            ? listarZips(new File("teste_1_api_integracao/data/raw"))
+            : listarCSVs(new File(pastaExtracted));
 
-        // Lê todos os CSVs extraídos e filtra apenas linhas com "Eventos/Sinistros"
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(arquivoSaida))) {
+        if (entradas == null) {
+            System.out.println(streaming ? "Pasta raw nao encontrada!" : "Pasta extracted nao encontrada!");
+            return;
+        }
 
-            File pastaBase = new File(pastaExtracted);
-            File[] pastas = pastaBase.listFiles();
+        int contador = 0;
 
-            if (pastas == null) {
-                System.out.println("Pasta extracted nao encontrada!");
-                return;
-            }
+        // Lê todos os CSVs e filtra apenas linhas com "Eventos/Sinistros"
+        try {
+            if (paralelo && !streaming) {
+                // Faixas de bytes num pool fixo de threads; mesma saída do --filtro-bytes
+                int threads = Opcoes.inteiro(args, "--threads", Runtime.getRuntime().availableProcessors());
+                contador = new FiltroParalelo(threads).filtrar(entradas, new File(arquivoSaida));
+            } else if (filtroBytes || paralelo) {
+                // Filtro direto sobre bytes, sem decodificar linhas em String
+                try (OutputStream saida = new BufferedOutputStream(new FileOutputStream(arquivoSaida), 1 << 20)) {
+                    FiltroBytes filtro = new FiltroBytes();
+                    for (File entrada : entradas) {
+                        contador += streaming
+                            ? filtrarZipBytes(entrada, filtro, saida)
+                            : filtrarArquivoBytes(entrada, filtro, saida);
+                    }
+                }
+            } else {
+                try (BufferedWriter writer = new BufferedWriter(new FileWriter(arquivoSaida))) {
+                    for (File entrada : entradas) {
+                        if (streaming) {
+                            contador += filtrarZip(entrada, writer);
+                            continue;
+                        }
 
-            // Itera pelas pastas de trimestres (1T2025, 2T2025)
-            for (File pasta : pastas) {
-                if (!pasta.isDirectory()) continue;
-
-                File[] arquivos = pasta.listFiles();
-                if (arquivos == null) continue;
-
-                // Processa cada arquivo CSV da pasta
-                for (File arquivo : arquivos) {
-                    if (!arquivo.getName().endsWith(".csv")) continue;
-
-                    System.out.println("Lendo: " + arquivo.getName());
-
-                    try (BufferedReader br = new BufferedReader(new FileReader(arquivo))) {
-                        br.readLine(); // Pula header
-
-                        String linha;
-                        // Filtra apenas linhas que contêm "Eventos/Sinistros"
-                        while ((linha = br.readLine()) != null) {
-                            if (linha.contains("Eventos/Sinistros")) {
-                                String[] colunas = linha.split(";");
-                                if (colunas.length > 5) {
-                                    writer.write(linha);
-                                    writer.newLine();
-                                    contador++;
-                                }
-                            }
+                        System.out.println("Lendo: " + entrada.getName());
+                        try (BufferedReader br = new BufferedReader(new FileReader(entrada))) {
+                            contador += filtrarEventos(br, writer);
                         }
                     }
                 }
@@ -73,48 +114,163 @@ public class DespesaProcessor {
 
         // Após gerar arquivo de eventos, processa RegANS e consulta API
         System.out.println("Processando Reg ANS...\n");
-        new DespesaProcessor().pegarRegANS();
+        DespesaProcessor processor = configurar(args);
+        processor.pegarRegANS();
+    }
+
+    // Processor com as opções de consulta, cache, cadastro e saída (também usado pelo pipeline)
+    static DespesaProcessor configurar(String[] args) {
+        DespesaProcessor processor = new DespesaProcessor();
+        if (Opcoes.tem(args, "--consulta-async") || Opcoes.tem(args, "--hedge")
+                || Opcoes.texto(args, "--orcamento-s", null) != null) {
+            processor.consulta = ConsultaOperadoras.configurar(args);
+        }
+        if (Opcoes.tem(args, "--cache")) processor.cache = CacheOperadoras.abrir(args);
+        if (Opcoes.tem(args, "--cadastro")) {
+            processor.cadastro = CadastroOperadoras.carregar();
+            if (processor.consulta != null) processor.consulta.usarCadastro(processor.cadastro);
+        }
+        processor.formatoSaida = Opcoes.texto(args, "--formato-saida", "csv");
+        processor.particionar = Opcoes.tem(args, "--particionar");
+        if (Opcoes.tem(args, "--agrupamento-externo")) {
+            processor.registrosPorLote = Opcoes.inteiro(args, "--registros-por-lote", 200_000);
+        }
+        processor.colunar = Opcoes.tem(args, "--colunar");
+        return processor;
+    }
+
+    // CSVs das pastas de trimestres (1T2025, 2T2025), em ordem de pasta e nome; null se não existir
+    static List<File> listarCSVs(File pastaBase) {
+        File[] pastas = pastaBase.listFiles();
+        if (pastas == null) return null;
+        Arrays.sort(pastas);
+
+        List<File> csvs = new ArrayList<>();
+        for (File pasta : pastas) {
+            // Pastas ".parcial" são extrações ainda em andamento/interrompidas
+            if (!pasta.isDirectory() || pasta.getName().startsWith(".")) continue;
+
+            File[] arquivos = pasta.listFiles((d, n) -> n.endsWith(".csv"));
+            if (arquivos == null) continue;
+            Arrays.sort(arquivos);
+            csvs.addAll(Arrays.asList(arquivos));
+        }
+        return csvs;
+    }
+
+    // ZIPs trimestrais em ordem de nome; null se a pasta não existir
+    static List<File> listarZips(File pastaRaw) {
+        File[] zips = pastaRaw.listFiles((d, n) -> n.endsWith(".zip"));
+        if (zips == null) return null;
+        Arrays.sort(zips);
+        return Arrays.asList(zips);
+    }
+
+    static int filtrarArquivoBytes(File arquivo, FiltroBytes filtro, OutputStream saida) throws IOException {
+        System.out.println("Lendo: " + arquivo.getName());
+        try (FileChannel canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.READ)) {
+            return filtro.filtrar(canal, Long.MAX_VALUE, true, saida);
+        }
+    }
+
+    static int filtrarZipBytes(File zip, FiltroBytes filtro, OutputStream saida) throws IOException {
+        int contador = 0;
+
+        try (ZipInputStream zin = new ZipInputStream(new BufferedInputStream(new FileInputStream(zip), 1 << 16))) {
+            ZipEntry entry;
+            while ((entry = zin.getNextEntry()) != null) {
+                if (entry.isDirectory() || !entry.getName().endsWith(".csv")) continue;
+
+                System.out.println("Lendo: " + zip.getName() + "!" + entry.getName());
+                // Sem fechar o canal (fecharia o ZipInputStream)
+                contador += filtro.filtrar(Channels.newChannel(zin), Long.MAX_VALUE, true, saida);
+            }
+        }
+
+        return contador;
+    }
+
+    // Lê cada CSV de dentro do ZIP em sequência (uma única leitura do arquivo compactado)
+    static int filtrarZip(File zip, BufferedWriter writer) throws IOException {
+        return filtrarZip(zip, linha -> {
+            writer.write(linha);
+            writer.newLine();
+        });
+    }
+
+    // Mesma leitura, entregando cada linha filtrada ao destino (arquivo, lote do pipeline...)
+    static int filtrarZip(File zip, DestinoLinha destino) throws IOException {
+        int contador = 0;
+
+        try (ZipInputStream zin = new ZipInputStream(new BufferedInputStream(new FileInputStream(zip), 1 << 16))) {
+            ZipEntry entry;
+            while ((entry = zin.getNextEntry()) != null) {
+                if (entry.isDirectory() || !entry.getName().endsWith(".csv")) continue;
+
+                System.out.println("Lendo: " + zip.getName() + "!" + entry.getName());
+
+                // Não fecha o reader: isso fecharia o ZipInputStream inteiro
+                // (read() devolve -1 ao fim da entrada atual)
+                BufferedReader br = new BufferedReader(new InputStreamReader(zin));
+                contador += filtrarEventos(br, destino);
+            }
+        }
+
+        return contador;
+    }
+
+    // Copia para o writer as linhas com "Eventos/Sinistros" (pula o header)
+    static int filtrarEventos(BufferedReader br, BufferedWriter writer) throws IOException {
+        return filtrarEventos(br, linha -> {
+            writer.write(linha);
+            writer.newLine();
+        });
+    }
+
+    // Entrega ao destino as linhas com "Eventos/Sinistros" (pula o header)
+    static int filtrarEventos(BufferedReader br, DestinoLinha destino) throws IOException {
+        int contador = 0;
+        br.readLine(); // Pula header
+
+        LinhaCSV colunas = new LinhaCSV();
+        String linha;
+        // Filtra apenas linhas que contêm "Eventos/Sinistros"
+        while ((linha = br.readLine()) != null) {
+            if (linha.contains("Eventos/Sinistros")) {
+                if (colunas.separar(linha).camposPreenchidos() > 5) {
+                    destino.aceitar(linha);
+                    contador++;
+                }
+            }
+        }
+
+        return contador;
     }
 
     // Lê arquivo de eventos, agrupa por RegANS e consulta API para consolidar dados
     public void pegarRegANS() {
         File arquivoCSV = new File("teste_1_api_integracao/output/eventos_sinistros.csv");
         Map<String, List<RegistroSinistro>> registrosPorRegANS = new HashMap<>();
-        Set<String> cpnjsDuplicados = new HashSet<>();
-        int valoresProblematicos = 0;
 
         try {
+            if (registrosPorLote > 0) {
+                agruparEmDisco(arquivoCSV);
+                return;
+            }
+            if (colunar) {
+                agruparColunar(arquivoCSV);
+                return;
+            }
+
             Scanner scanner = new Scanner(arquivoCSV);
 
             // Lê arquivo e agrupa registros por RegANS (identificador da operadora)
             while (scanner.hasNextLine()) {
-                String linha = scanner.nextLine();
-                String[] colunas = linha.split(";");
-
-                if (colunas.length < 6) continue;
-
-                String regANS = colunas[1].trim().replace("\"", "");
-                String trimestre = colunas[2].trim().replace("\"", "");
-                String ano = colunas[3].trim().replace("\"", "");
-                String valorDespesas = colunas[5].trim().replace("\"", "");
-
-                // Valida se RegANS é numérico
-                if (!regANS.matches("\\d+")) continue;
-
-                // Detecta valores problemáticos (zero ou negativos)
-                try {
-                    double valor = Double.parseDouble(valorDespesas.replace(",", "."));
-                    if (valor <= 0) {
-                        valoresProblematicos++;
-                        System.out.println("  [AVISO] Valor " + (valor == 0 ? "ZERO" : "NEGATIVO") + ": " + valorDespesas);
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignora erros de parsing
-                }
+                RegistroSinistro registro = lerRegistro(scanner.nextLine());
+                if (registro == null) continue;
 
-                RegistroSinistro registro = new RegistroSinistro(regANS, trimestre, ano, valorDespesas);
-                registrosPorRegANS.putIfAbsent(regANS, new ArrayList<>());
-                registrosPorRegANS.get(regANS).add(registro);
+                registrosPorRegANS.putIfAbsent(registro.regANS, new ArrayList<>());
+                registrosPorRegANS.get(registro.regANS).add(registro);
             }
 
             scanner.close();
@@ -122,8 +278,12 @@ public class DespesaProcessor {
             System.out.println("Reg ANS unicos: " + registrosPorRegANS.size());
             System.out.println("Valores problematicos (zero/negativo): " + valoresProblematicos + "\n");
 
-            int processados = 0;
-            int sucessos = 0;
+            // Modo assíncrono ou cadastro: resolve todos os RegANS antes de gravar
+            Map<String, DadosOperadora> resolvidos = resolverAntes()
+                ? resolverTodos(registrosPorRegANS.keySet())
+                : null;
+
+            abrirSaida();
 
             // Para cada RegANS único, consulta API ANS para obter CNPJ e Razão Social
             for (Map.Entry<String, List<RegistroSinistro>> entry : registrosPorRegANS.entrySet()) {
@@ -131,47 +291,276 @@ public class DespesaProcessor {
                 List<RegistroSinistro> registros = entry.getValue();
 
                 processados++;
-                System.out.println("[" + processados + "/" + registrosPorRegANS.size() + "] Reg ANS: " + regANS);
-
-                DadosOperadora dados = buscarNaAPI(regANS);
+                DadosOperadora dados;
+                if (resolvidos != null) {
+                    dados = resolvidos.get(regANS);
+                } else {
+                    System.out.println("[" + processados + "/" + registrosPorRegANS.size() + "] Reg ANS: " + regANS);
+                    dados = buscarOperadora(regANS);
+                }
 
                 // Grava cada registro com dados da API
                 for (RegistroSinistro reg : registros) {
-                    String cnpj = dados != null ? dados.cnpj : "N/A";
-                    
-                    // Detecta CNPJs duplicados (mesma operadora com registros diferentes)
-                    if (dados != null && cpnjsDuplicados.contains(cnpj)) {
-                        System.out.println("  [DUPLICADO] CNPJ: " + cnpj);
-                    } else if (dados != null) {
-                        cpnjsDuplicados.add(cnpj);
-                    }
-
-                    salvarCSV(
-                        cnpj,
-                        dados != null ? dados.razaoSocial : "N/A",
-                        reg.trimestre,
-                        reg.ano,
-                        reg.valorDespesas
-                    );
+                    gravarConsolidado(reg, dados);
                 }
 
                 if (dados != null) sucessos++;
             }
 
-            // Relatório final de processamento
-            System.out.println("\nProcessados: " + processados);
-            System.out.println("Sucessos API: " + sucessos);
-            System.out.println("CNPJs unicos: " + cpnjsDuplicados.size() + "\n");
+            publicarSaida();
+            imprimirResumo();
 
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            descartarSaida();
+            if (cache != null) cache.fechar();
+        }
+    }
+
+    // Mesmo processamento do pegarRegANS, com os grupos vindos do merge dos runs em disco
+    private void agruparEmDisco(File arquivoCSV) throws IOException {
+        AgrupadorExterno agrupador = new AgrupadorExterno(registrosPorLote);
+        try {
+            Set<String> registrosANS = agrupador.particionar(arquivoCSV, this);
+
+            System.out.println("Reg ANS unicos: " + registrosANS.size());
+            System.out.println("Valores problematicos (zero/negativo): " + valoresProblematicos + "\n");
+
+            Map<String, DadosOperadora> resolvidos = resolverAntes() ? resolverTodos(registrosANS) : null;
+            int total = registrosANS.size();
+
+            abrirSaida();
+
+            // Registros chegam agrupados: consulta a operadora quando o RegANS muda
+            String[] regAtual = {null};
+            DadosOperadora[] dadosAtual = {null};
+            agrupador.mesclar((regANS, reg) -> {
+                if (!regANS.equals(regAtual[0])) {
+                    regAtual[0] = regANS;
+                    dadosAtual[0] = iniciarGrupo(regANS, total, resolvidos);
+                }
+                gravarConsolidado(reg, dadosAtual[0]);
+            });
+
+            publicarSaida();
+            imprimirResumo();
+        } finally {
+            agrupador.limpar();
+        }
+    }
+
+    // Mesmo processamento do pegarRegANS, com os registros guardados em colunas primitivas
+    private void agruparColunar(File arquivoCSV) throws IOException {
+        ArmazemSinistros armazem = new ArmazemSinistros();
+        try (BufferedReader br = new BufferedReader(new FileReader(arquivoCSV), 1 << 16)) {
+            String linha;
+            while ((linha = br.readLine()) != null) {
+                RegistroSinistro registro = lerRegistro(linha);
+                if (registro != null && !armazem.adicionar(registro)) {
+                    System.out.println("  [AVISO] RegANS com mais de 9 digitos ignorado: " + registro.regANS);
+                }
+            }
+        }
+
+        // Ordenação de um único long[]: linhas da mesma operadora ficam contíguas
+        long[] ordem = armazem.ordenarPorRegANS();
+        Set<String> registrosANS = new LinkedHashSet<>();
+        int anterior = -1;
+        for (long chave : ordem) {
+            if (ArmazemSinistros.regANSDaChave(chave) == anterior) continue;
+            anterior = ArmazemSinistros.regANSDaChave(chave);
+            registrosANS.add(armazem.regANS(ArmazemSinistros.linha(chave)));
+        }
+
+        System.out.println("Armazem colunar: " + armazem.tamanho() + " registros, ~"
+            + armazem.bytesPorLinha() + " bytes por registro");
+        System.out.println("Reg ANS unicos: " + registrosANS.size());
+        System.out.println("Valores problematicos (zero/negativo): " + valoresProblematicos + "\n");
+
+        Map<String, DadosOperadora> resolvidos = resolverAntes() ? resolverTodos(registrosANS) : null;
+        abrirSaida();
+
+        int regAtual = -1;
+        DadosOperadora dados = null;
+        for (long chave : ordem) {
+            int linha = ArmazemSinistros.linha(chave);
+            if (ArmazemSinistros.regANSDaChave(chave) != regAtual) {
+                regAtual = ArmazemSinistros.regANSDaChave(chave);
+                dados = iniciarGrupo(armazem.regANS(linha), registrosANS.size(), resolvidos);
+            }
+            gravarConsolidado(armazem.registro(linha), dados);
+        }
+
+        publicarSaida();
+        imprimirResumo();
+    }
+
+    // Início do grupo de uma operadora: busca os dados (já resolvidos ou cache/API) e conta
+    private DadosOperadora iniciarGrupo(String regANS, int total, Map<String, DadosOperadora> resolvidos) {
+        processados++;
+        DadosOperadora dados;
+        if (resolvidos != null) {
+            dados = resolvidos.get(regANS);
+        } else {
+            System.out.println("[" + processados + "/" + total + "] Reg ANS: " + regANS);
+            dados = buscarOperadora(regANS);
+        }
+        if (dados != null) sucessos++;
+        return dados;
+    }
+
+    // Converte uma linha de eventos em registro (null se não tiver colunas suficientes ou RegANS inválido)
+    RegistroSinistro lerRegistro(String linha) {
+        colunas.separar(linha);
+
+        if (colunas.camposPreenchidos() < 6) return null;
+
+        // Aspas já removidas pelo LinhaCSV
+        String regANS = colunas.textoSemEspacos(1);
+        String trimestre = colunas.textoSemEspacos(2);
+        String ano = colunas.textoSemEspacos(3);
+        String valorDespesas = colunas.textoSemEspacos(5);
+
+        // Valida se RegANS é numérico
+        if (!regANS.matches("\\d+")) return null;
+
+        // Detecta valores problemáticos (zero ou negativos); texto que não é número é ignorado
+        long centavos = Dinheiro.centavos(valorDespesas);
+        if (centavos != Dinheiro.INVALIDO && centavos <= 0) {
+            valoresProblematicos++;
+            System.out.println("  [AVISO] Valor " + (centavos == 0 ? "ZERO" : "NEGATIVO") + ": " + valorDespesas);
+        }
+
+        return new RegistroSinistro(regANS, trimestre, ano, valorDespesas);
+    }
+
+    // Grava um registro com os dados da operadora (N/A quando a API não respondeu)
+    void gravarConsolidado(RegistroSinistro reg, DadosOperadora dados) throws IOException {
+        String cnpj = dados != null ? dados.cnpj : "N/A";
+
+        // Detecta CNPJs duplicados (mesma operadora com registros diferentes)
+        if (dados != null && cpnjsDuplicados.contains(cnpj)) {
+            System.out.println("  [DUPLICADO] CNPJ: " + cnpj);
+        } else if (dados != null) {
+            cpnjsDuplicados.add(cnpj);
+        }
+
+        salvarCSV(
+            cnpj,
+            dados != null ? dados.razaoSocial : "N/A",
+            reg.trimestre,
+            reg.ano,
+            reg.valorDespesas
+        );
+    }
+
+    // Relatório final de processamento
+    void imprimirResumo() {
+        System.out.println("\nProcessados: " + processados);
+        System.out.println("Sucessos API: " + sucessos);
+        System.out.println("CNPJs unicos: " + cpnjsDuplicados.size() + "\n");
+    }
+
+    // Com consulta assíncrona ou cadastro, os RegANS são resolvidos todos de uma vez antes de gravar
+    boolean resolverAntes() {
+        return consulta != null || cadastro != null;
+    }
+
+    /**
+     * Resolve vários RegANS de uma vez: cadastro primeiro (join local), depois
+     * o cache, e o restante pela API (consulta assíncrona, se configurada,
+     * ou uma chamada por vez).
+     */
+    Map<String, DadosOperadora> resolverTodos(Set<String> registrosANS) {
+        Map<String, DadosOperadora> resolvidos = new HashMap<>();
+        List<String> faltando = new ArrayList<>();
+        int noCadastro = 0;
+        int noCache = 0;
+
+        for (String regANS : registrosANS) {
+            DadosOperadora doCadastro = cadastro != null ? cadastro.buscar(regANS) : null;
+            if (doCadastro != null) {
+                resolvidos.put(regANS, doCadastro);
+                noCadastro++;
+                continue;
+            }
+
+            CacheOperadoras.Entrada entrada = cache != null ? cache.buscar(regANS) : null;
+            if (entrada != null) {
+                resolvidos.put(regANS, entrada.dados);
+                noCache++;
+            } else {
+                faltando.add(regANS);
+            }
+        }
+
+        if (cadastro != null) {
+            System.out.println("Resolvidos pelo cadastro: " + noCadastro + "/" + registrosANS.size()
+                + " | cache: " + noCache + " | API: " + faltando.size() + "\n");
+        }
+
+        if (!faltando.isEmpty()) {
+            Map<String, DadosOperadora> consultados = consulta != null ? consulta.buscarTodas(faltando) : null;
+            int i = 0;
+            for (String regANS : faltando) {
+                DadosOperadora dados;
+                if (consultados != null) {
+                    dados = consultados.get(regANS);
+                } else {
+                    System.out.println("[" + (++i) + "/" + faltando.size() + "] Reg ANS fora do cadastro: " + regANS);
+                    dados = buscarNaAPI(regANS);
+                }
+                resolvidos.put(regANS, dados);
+                guardarNoCache(regANS, dados);
+            }
+        }
+
+        return resolvidos;
+    }
+
+    // Um RegANS: cadastro, depois cache, API se nenhum dos dois tiver
+    DadosOperadora buscarOperadora(String regANS) {
+        if (cadastro != null) {
+            DadosOperadora dados = cadastro.buscar(regANS);
+            if (dados != null) {
+                System.out.println("  Cadastro: " + dados.cnpj + " - " + dados.razaoSocial);
+                return dados;
+            }
+        }
+
+        if (cache != null) {
+            CacheOperadoras.Entrada entrada = cache.buscar(regANS);
+            if (entrada != null) {
+                System.out.println("  Cache: " + (entrada.dados != null
+                    ? entrada.dados.cnpj + " - " + entrada.dados.razaoSocial
+                    : "nao encontrada na API"));
+                return entrada.dados;
+            }
+        }
+
+        DadosOperadora dados = buscarNaAPI(regANS);
+        guardarNoCache(regANS, dados);
+        return dados;
+    }
+
+    // Guarda operadoras encontradas e 404s; erros temporários não entram no cache
+    private void guardarNoCache(String regANS, DadosOperadora dados) {
+        if (cache == null) return;
+        if (dados != null) {
+            cache.guardar(regANS, dados);
+        } else if (naoEncontradas.contains(regANS) || (consulta != null && consulta.naoEncontrada(regANS))) {
+            cache.guardarNaoEncontrada(regANS);
         }
     }
 
     // Consulta API da ANS para obter dados da operadora (CNPJ, Razão Social)
-    private DadosOperadora buscarNaAPI(String registroANS) {
+    DadosOperadora buscarNaAPI(String registroANS) {
+        // Com a consulta configurada, usa taxa limitada, novas tentativas e hedge
+        if (consulta != null) return consulta.buscarUma(registroANS);
+
         try {
-            String urlDaAPI = "https://www.ans.gov.br/operadoras-entity/v1/operadoras/" + registroANS;
+            String urlDaAPI = URL_API + registroANS;
             URL url = new URL(urlDaAPI);
 
             HttpURLConnection conexao = (HttpURLConnection) url.openConnection();
@@ -193,15 +582,12 @@ public class DespesaProcessor {
                 br.close();
                 conexao.disconnect();
 
-                String json = resposta.toString();
-                // Extrai campos CNPJ e razao_social do JSON
-                String cnpj = extrairJSON(json, "\"cnpj\":\"");
-                String razaoSocial = extrairJSON(json, "\"razao_social\":\"");
-
-                System.out.println("  OK: " + cnpj + " - " + razaoSocial);
-                return new DadosOperadora(cnpj, razaoSocial);
+                DadosOperadora dados = lerOperadora(resposta.toString());
+                System.out.println("  OK: " + dados.cnpj + " - " + dados.razaoSocial);
+                return dados;
             } else {
                 System.out.println("  Erro: " + status);
+                if (status == 404) naoEncontradas.add(registroANS);
                 return null;
             }
 
@@ -211,8 +597,15 @@ public class DespesaProcessor {
         }
     }
 
+    // Extrai campos CNPJ e razao_social da resposta JSON da API
+    static DadosOperadora lerOperadora(String json) {
+        String cnpj = extrairJSON(json, "\"cnpj\":\"");
+        String razaoSocial = extrairJSON(json, "\"razao_social\":\"");
+        return new DadosOperadora(cnpj, razaoSocial);
+    }
+
     // Extrai valor de um campo JSON simples (sem usar library JSON)
-    private String extrairJSON(String json, String chave) {
+    private static String extrairJSON(String json, String chave) {
         try {
             int inicio = json.indexOf(chave);
             if (inicio == -1) return "N/A";
@@ -225,32 +618,33 @@ public class DespesaProcessor {
         }
     }
 
-    // Grava registro consolidado no CSV final (append mode)
-    private void salvarCSV(String cnpj, String razaoSocial, String trimestre, String ano, String valorDespesas) {
-        try {
-            File arquivoSaida = new File("teste_1_api_integracao/output/consolidado_despesas.csv");
-            boolean jaExiste = arquivoSaida.exists();
-
-            FileWriter fw = new FileWriter(arquivoSaida, true);
-            BufferedWriter bw = new BufferedWriter(fw);
+    // Abre o consolidado da execução (arquivo temporário até o publicarSaida)
+    void abrirSaida() throws IOException {
+        saida = SaidaConsolidado.abrir(formatoSaida, particionar);
+    }
 
-            // Escreve header na primeira vez
-            if (!jaExiste) {
-                bw.write("CNPJ;RazaoSocial;Trimestre;Ano;ValorDespesas");
-                bw.newLine();
-            }
+    // Substitui o consolidado anterior pelo desta execução
+    void publicarSaida() throws IOException {
+        saida.publicar();
+        saida = null;
+    }
 
-            // Grava linha com dados consolidados
-            String linha = cnpj + ";" + razaoSocial + ";" + trimestre + ";" + ano + ";" + valorDespesas;
-            bw.write(linha);
-            bw.newLine();
+    // Execução interrompida: apaga o temporário e mantém o consolidado anterior
+    void descartarSaida() {
+        if (saida == null) return;
+        saida.close();
+        saida = null;
+    }
 
-            bw.close();
-            fw.close();
+    // Grava registro consolidado na saída aberta da execução
+    // (erro de escrita sobe: quem chamou descarta a saída em vez de publicar um consolidado incompleto)
+    private void salvarCSV(String cnpj, String razaoSocial, String trimestre, String ano, String valorDespesas) throws IOException {
+        saida.gravar(cnpj, razaoSocial, trimestre, ano, valorDespesas);
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    // Recebe cada linha filtrada de "Eventos/Sinistros"
+    interface DestinoLinha {
+        void aceitar(String linha) throws IOException;
     }
 
     // Classe interna para armazenar um registro de evento/sinistro
@@ -0,0 +1,350 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Modo de download concorrente dos ZIPs trimestrais.
+ * - Pool limitado de trabalhadores (um arquivo por trabalhador)
+ * - HttpClient compartilhado (conexões keep-alive reaproveitadas)
+ * - ZIPs grandes são divididos em segmentos baixados em paralelo via Range
+ * - Downloads interrompidos continuam de onde pararam (arquivos .part), só
+ *   se o arquivo no servidor ainda for a mesma versão (ETag/Last-Modified
+ *   guardado em .part.versao e enviado no If-Range)
+ * - Um limite único de conexões (--conexoes) vale para todos os arquivos e
+ *   segmentos juntos: sem ele, trabalhadores x segmentos requisições
+ *   poderiam estar abertas ao mesmo tempo no servidor da ANS
+ * - Reporta a vazão (MB/s) de cada arquivo
+ *
+ * O arquivo final só aparece na pasta destino depois de completo (rename),
+ * então um download interrompido nunca é confundido com um arquivo já baixado.
+ */
+public class DownloadConcorrente {
+
+    // Abaixo disso não compensa abrir várias conexões para o mesmo arquivo
+    private static final long TAMANHO_MINIMO_SEGMENTADO = 16L * 1024 * 1024;
+
+    // Máximo de requisições abertas ao mesmo tempo quando não informado
+    static final int CONEXOES_PADRAO = 8;
+
+    private final int trabalhadores;
+    private final int segmentos;
+    private final int maxConexoes;
+    // Compartilhado por todos os trabalhadores: cada GET/HEAD segura uma permissão até terminar
+    private final Semaphore conexoes;
+
+    public DownloadConcorrente(int trabalhadores, int segmentos) {
+        this(trabalhadores, segmentos, CONEXOES_PADRAO);
+    }
+
+    public DownloadConcorrente(int trabalhadores, int segmentos, int maxConexoes) {
+        this.trabalhadores = Math.max(1, trabalhadores);
+        this.segmentos = Math.max(1, segmentos);
+        this.maxConexoes = Math.max(1, maxConexoes);
+        this.conexoes = new Semaphore(this.maxConexoes);
+    }
+
+    // Baixa todas as URLs para a pasta destino e retorna quantos arquivos ficaram disponíveis
+    public int baixarTodos(List<String> urls, String pastaDestino) throws InterruptedException {
+        new File(pastaDestino).mkdirs();
+        System.out.println("Download concorrente: " + trabalhadores + " trabalhadores, até "
+            + segmentos + " segmentos por arquivo, no máximo " + maxConexoes + " conexões\n");
+
+        ExecutorService pool = Executors.newFixedThreadPool(trabalhadores);
+        long inicio = System.nanoTime();
+
+        List<Future<Long>> futuros = new ArrayList<>();
+        for (String url : urls) {
+            futuros.add(pool.submit(() -> baixar(url, pastaDestino)));
+        }
+        pool.shutdown();
+
+        long totalBytes = 0;
+        int concluidos = 0;
+        for (int i = 0; i < futuros.size(); i++) {
+            String url = urls.get(i);
+            try {
+                totalBytes += futuros.get(i).get();
+                concluidos++;
+            } catch (ExecutionException e) {
+                Throwable causa = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+                System.out.println("  Erro: " + url.substring(url.lastIndexOf('/') + 1) + " - " + causa.getMessage());
+            }
+        }
+
+        reportar("Total", totalBytes, inicio);
+        return concluidos;
+    }
+
+    // Baixa um arquivo (segmentado ou contínuo) e retorna os bytes transferidos nesta execução
+    private long baixar(String url, String pastaDestino) throws Exception {
+        String nome = url.substring(url.lastIndexOf('/') + 1);
+        Path destino = Paths.get(pastaDestino, nome);
+
+        if (Files.exists(destino)) {
+            System.out.println("  " + nome + ": já existe, pulando");
+            return 0;
+        }
+
+        long inicio = System.nanoTime();
+        InfoArquivo info = consultarInfo(url);
+        conferirVersao(destino, info.validador);
+
+        long transferidos;
+        if (info.aceitaRanges && segmentos > 1 && info.tamanho >= TAMANHO_MINIMO_SEGMENTADO) {
+            transferidos = baixarSegmentado(url, destino, info);
+        } else {
+            transferidos = baixarContinuo(url, destino, info);
+        }
+        Files.deleteIfExists(arquivoVersao(destino));
+
+        reportar(nome, transferidos, inicio);
+        return transferidos;
+    }
+
+    // HEAD para descobrir tamanho e suporte a Range (falha no HEAD = baixa sem segmentar)
+    private InfoArquivo consultarInfo(String url) throws InterruptedException {
+        conexoes.acquire();
+        try {
+            HttpRequest requisicao = HttpRequest.newBuilder(URI.create(url))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofSeconds(30))
+                .build();
+            HttpResponse<Void> resposta = HttpCompartilhado.CLIENTE.send(requisicao, HttpResponse.BodyHandlers.discarding());
+
+            if (resposta.statusCode() != 200) return new InfoArquivo(-1, false, "");
+
+            long tamanho = resposta.headers().firstValueAsLong("Content-Length").orElse(-1);
+            boolean ranges = resposta.headers().firstValue("Accept-Ranges").orElse("").equalsIgnoreCase("bytes");
+            // If-Range só aceita ETag forte; sem ele, vale o Last-Modified
+            String etag = resposta.headers().firstValue("ETag").orElse("");
+            String validador = !etag.isEmpty() && !etag.startsWith("W/")
+                ? etag
+                : resposta.headers().firstValue("Last-Modified").orElse("");
+            return new InfoArquivo(tamanho, ranges, validador);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            return new InfoArquivo(-1, false, "");
+        } finally {
+            conexoes.release();
+        }
+    }
+
+    // Partes baixadas antes só valem para a mesma versão do arquivo (sem validador, recomeça do zero)
+    private static void conferirVersao(Path destino, String validador) throws IOException {
+        Path versao = arquivoVersao(destino);
+        String anterior = Files.exists(versao) ? new String(Files.readAllBytes(versao), StandardCharsets.UTF_8) : "";
+        if (validador.isEmpty() || !validador.equals(anterior)) {
+            apagarParciais(destino);
+            if (!validador.isEmpty()) Files.write(versao, validador.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Path arquivoVersao(Path destino) {
+        return destino.resolveSibling(destino.getFileName() + ".part.versao");
+    }
+
+    // Apaga .part, .partN, .part.versao e .tmp de um download interrompido
+    static void apagarParciais(Path destino) throws IOException {
+        String nome = destino.getFileName().toString();
+        Path pasta = destino.toAbsolutePath().getParent();
+        if (!Files.isDirectory(pasta)) return;
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(pasta, nome + ".*")) {
+            for (Path arquivo : arquivos) {
+                String sufixo = arquivo.getFileName().toString().substring(nome.length());
+                if (sufixo.startsWith(".part") || sufixo.equals(".tmp")) Files.deleteIfExists(arquivo);
+            }
+        }
+    }
+
+    // Uma conexão só, continuando do .part existente quando o servidor aceita Range
+    private long baixarContinuo(String url, Path destino, InfoArquivo info) throws Exception {
+        Path parcial = destino.resolveSibling(destino.getFileName() + ".part");
+        long jaBaixado = Files.exists(parcial) ? Files.size(parcial) : 0;
+
+        // .part já completo (interrompido antes do rename)
+        if (info.tamanho > 0 && jaBaixado == info.tamanho) {
+            mover(parcial, destino);
+            return 0;
+        }
+
+        HttpRequest.Builder requisicao = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofMinutes(30));
+        if (jaBaixado > 0 && info.aceitaRanges) {
+            // Se o arquivo mudou no servidor desde o .part, If-Range faz vir 200 com o arquivo inteiro
+            requisicao.header("Range", "bytes=" + jaBaixado + "-").header("If-Range", info.validador);
+            System.out.println("  " + destino.getFileName() + ": retomando a partir de " + jaBaixado + " bytes");
+        }
+
+        // 206 = continuação do .part; 200 = servidor mandou o arquivo inteiro, recomeça do zero
+        HttpResponse<Path> resposta;
+        conexoes.acquire();
+        try {
+            resposta = HttpCompartilhado.CLIENTE.send(requisicao.build(), r -> {
+                if (r.statusCode() == 206) return BodySubscribers.ofFile(parcial, CREATE, WRITE, APPEND);
+                if (r.statusCode() == 200) return BodySubscribers.ofFile(parcial, CREATE, WRITE, TRUNCATE_EXISTING);
+                return BodySubscribers.replacing(parcial);
+            });
+        } finally {
+            conexoes.release();
+        }
+
+        long transferidos;
+        if (resposta.statusCode() == 206) {
+            transferidos = Files.size(parcial) - jaBaixado;
+        } else if (resposta.statusCode() == 200) {
+            transferidos = Files.size(parcial);
+        } else {
+            throw new IOException("HTTP " + resposta.statusCode());
+        }
+
+        mover(parcial, destino);
+        return transferidos;
+    }
+
+    // Divide o arquivo em faixas de bytes, baixa cada uma em paralelo e junta no final
+    private long baixarSegmentado(String url, Path destino, InfoArquivo info) throws Exception {
+        String nome = destino.getFileName().toString();
+        long tamanho = info.tamanho;
+        long tamanhoSegmento = (tamanho + segmentos - 1) / segmentos;
+
+        List<Path> partes = new ArrayList<>();
+        List<CompletableFuture<Long>> futuros = new ArrayList<>();
+
+        for (int i = 0; i < segmentos; i++) {
+            long inicio = i * tamanhoSegmento;
+            if (inicio >= tamanho) break;
+            long fim = Math.min(tamanho, inicio + tamanhoSegmento) - 1;
+            long esperado = fim - inicio + 1;
+
+            Path parte = destino.resolveSibling(nome + ".part" + i);
+            partes.add(parte);
+
+            long existente = Files.exists(parte) ? Files.size(parte) : 0;
+            if (existente > esperado) {
+                Files.delete(parte);
+                existente = 0;
+            }
+            if (existente == esperado) {
+                futuros.add(CompletableFuture.completedFuture(0L));
+                continue;
+            }
+
+            final long jaBaixado = existente;
+            final int segmento = i;
+            HttpRequest.Builder requisicao = HttpRequest.newBuilder(URI.create(url))
+                .header("Range", "bytes=" + (inicio + jaBaixado) + "-" + fim)
+                .timeout(Duration.ofMinutes(30));
+            // Arquivo mudou no servidor durante o download: 200 em vez de 206, o segmento falha
+            if (!info.validador.isEmpty()) requisicao.header("If-Range", info.validador);
+
+            // Espera uma conexão livre (de qualquer arquivo) antes de abrir o segmento
+            conexoes.acquire();
+            CompletableFuture<HttpResponse<Path>> envio;
+            try {
+                envio = HttpCompartilhado.CLIENTE.sendAsync(requisicao.build(), r -> r.statusCode() == 206
+                    ? BodySubscribers.ofFile(parte, CREATE, WRITE, APPEND)
+                    : BodySubscribers.replacing(parte));
+            } catch (RuntimeException e) {
+                conexoes.release();
+                throw e;
+            }
+            futuros.add(envio
+                .whenComplete((resposta, erro) -> conexoes.release())
+                .thenApply(resposta -> {
+                    if (resposta.statusCode() != 206) {
+                        throw new UncheckedIOException(new IOException(
+                            "HTTP " + resposta.statusCode() + " no segmento " + segmento));
+                    }
+                    return esperado - jaBaixado;
+                }));
+        }
+
+        long transferidos = 0;
+        for (CompletableFuture<Long> futuro : futuros) {
+            transferidos += futuro.join();
+        }
+
+        // Junta os segmentos em um temporário e só então publica o arquivo final
+        Path montado = destino.resolveSibling(nome + ".tmp");
+        try (FileChannel saida = FileChannel.open(montado, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            for (Path parte : partes) {
+                try (FileChannel entrada = FileChannel.open(parte, READ)) {
+                    long posicao = 0;
+                    long total = entrada.size();
+                    while (posicao < total) {
+                        posicao += entrada.transferTo(posicao, total - posicao, saida);
+                    }
+                }
+            }
+            if (saida.size() != tamanho) {
+                throw new IOException("tamanho final " + saida.size() + " difere do esperado " + tamanho);
+            }
+        }
+
+        mover(montado, destino);
+        for (Path parte : partes) {
+            Files.deleteIfExists(parte);
+        }
+        return transferidos;
+    }
+
+    // Rename atômico quando o sistema de arquivos suporta
+    private static void mover(Path origem, Path destino) throws IOException {
+        try {
+            Files.move(origem, destino, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(origem, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void reportar(String nome, long bytes, long inicioNanos) {
+        double segundos = (System.nanoTime() - inicioNanos) / 1_000_000_000.0;
+        double megabytes = bytes / (1024.0 * 1024.0);
+        double vazao = segundos > 0 ? megabytes / segundos : 0;
+        System.out.println(String.format("  %s: %.1f MB em %.1f s (%.1f MB/s)", nome, megabytes, segundos, vazao));
+    }
+
+    // Resultado do HEAD
+    static class InfoArquivo {
+        long tamanho;
+        boolean aceitaRanges;
+        // ETag forte ou Last-Modified ("" se o servidor não mandou nenhum)
+        String validador;
+
+        InfoArquivo(long tamanho, boolean aceitaRanges, String validador) {
+            this.tamanho = tamanho;
+            this.aceitaRanges = aceitaRanges;
+            this.validador = validador;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extrai vários ZIPs (e várias entradas de cada ZIP) em paralelo.
+ *
+ * Usa ZipFile (acesso aleatório) para que cada entrada seja descompactada
+ * por uma thread diferente. Cada ZIP é extraído em uma pasta oculta
+ * ".1T2025.parcial" que só é renomeada para "1T2025" quando todas as
+ * entradas terminam. Assim, uma execução interrompida deixa no máximo uma
+ * pasta .parcial (descartada e refeita na próxima vez), nunca uma pasta
+ * final incompleta que seria pulada como "já extraída".
+ */
+public class ExtratorParalelo {
+
+    private final int threads;
+
+    public ExtratorParalelo(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    // Extrai todos os .zip da pasta de origem e imprime o resumo de tempos por arquivo
+    public void extrairTodos(File pastaZips, File pastaExtracted) {
+        File[] zips = pastaZips.listFiles((d, n) -> n.endsWith(".zip"));
+        if (zips == null) return;
+        Arrays.sort(zips);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Resumo> resumos = new ArrayList<>();
+        List<CompletableFuture<Void>> arquivos = new ArrayList<>();
+
+        for (File zip : zips) {
+            File destino = new File(pastaExtracted, zip.getName().replace(".zip", ""));
+
+            // A pasta final só existe depois de uma extração completa
+            String[] conteudo = destino.list();
+            if (destino.isDirectory() && conteudo != null && conteudo.length > 0) {
+                System.out.println("Já extraído: " + zip.getName());
+                continue;
+            }
+
+            System.out.println("Extraindo: " + zip.getName());
+            Resumo resumo = new Resumo(zip.getName());
+            resumos.add(resumo);
+            arquivos.add(extrair(zip, destino.toPath(), pool, resumo));
+        }
+
+        CompletableFuture.allOf(arquivos.toArray(new CompletableFuture<?>[0])).join();
+        pool.shutdown();
+
+        if (!resumos.isEmpty()) imprimirResumo(resumos);
+    }
+
+    // Agenda uma tarefa por entrada do ZIP; a última a terminar publica a pasta final
+    private CompletableFuture<Void> extrair(File zip, Path destino, ExecutorService pool, Resumo resumo) {
+        Path parcial = destino.resolveSibling("." + destino.getFileName() + ".parcial");
+        ZipFile arquivoZip = null;
+        List<ZipEntry> arquivos = new ArrayList<>();
+
+        try {
+            // Sobra de uma execução interrompida: descarta e recomeça
+            apagar(parcial);
+            Files.createDirectories(parcial);
+            arquivoZip = new ZipFile(zip);
+
+            // Valida todas as entradas antes de agendar qualquer cópia
+            Enumeration<? extends ZipEntry> todas = arquivoZip.entries();
+            while (todas.hasMoreElements()) {
+                ZipEntry entry = todas.nextElement();
+                Path alvo = parcial.resolve(entry.getName()).normalize();
+
+                // Protege contra entradas com "../" saindo da pasta destino
+                if (!alvo.startsWith(parcial)) {
+                    throw new IOException("entrada fora da pasta destino: " + entry.getName());
+                }
+
+                if (entry.isDirectory()) {
+                    Files.createDirectories(alvo);
+                } else {
+                    arquivos.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            fechar(arquivoZip);
+            falhar(parcial, resumo, e);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        ZipFile aberto = arquivoZip;
+        List<CompletableFuture<Void>> entradas = new ArrayList<>();
+        for (ZipEntry entry : arquivos) {
+            Path alvo = parcial.resolve(entry.getName()).normalize();
+            entradas.add(CompletableFuture.runAsync(() -> copiar(aberto, entry, alvo, resumo), pool));
+        }
+
+        return CompletableFuture.allOf(entradas.toArray(new CompletableFuture<?>[0]))
+            .handle((ok, erro) -> {
+                fechar(aberto);
+                try {
+                    if (erro != null) throw erro;
+                    publicar(parcial, destino);
+                    resumo.terminar();
+                } catch (Throwable t) {
+                    falhar(parcial, resumo, t);
+                }
+                return null;
+            });
+    }
+
+    // Descompacta uma entrada (cada thread com seu próprio InputStream do ZipFile)
+    private static void copiar(ZipFile arquivoZip, ZipEntry entry, Path alvo, Resumo resumo) {
+        try {
+            Files.createDirectories(alvo.getParent());
+            try (InputStream in = arquivoZip.getInputStream(entry)) {
+                resumo.bytes.addAndGet(Files.copy(in, alvo, StandardCopyOption.REPLACE_EXISTING));
+            }
+            resumo.entradas.incrementAndGet();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Renomeia .parcial para o nome final (remove antes uma pasta final vazia, se houver)
+    private static void publicar(Path parcial, Path destino) throws IOException {
+        if (Files.isDirectory(destino)) {
+            Files.delete(destino);
+        }
+        try {
+            Files.move(parcial, destino, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(parcial, destino);
+        }
+    }
+
+    private static void fechar(ZipFile arquivoZip) {
+        if (arquivoZip == null) return;
+        try {
+            arquivoZip.close();
+        } catch (IOException e) {
+            // Nada a fazer, o conteúdo já foi lido ou descartado
+        }
+    }
+
+    private static void falhar(Path parcial, Resumo resumo, Throwable erro) {
+        Throwable causa = erro.getCause() != null ? erro.getCause() : erro;
+        resumo.erro = causa.getMessage();
+        System.out.println("Erro: " + resumo.nome + " - " + resumo.erro);
+        try {
+            apagar(parcial);
+        } catch (IOException e) {
+            System.out.println("  Não foi possível remover " + parcial);
+        }
+    }
+
+    // Remove a pasta e todo o conteúdo (não faz nada se não existir)
+    static void apagar(Path pasta) throws IOException {
+        if (!Files.exists(pasta)) return;
+        try (Stream<Path> caminhos = Files.walk(pasta)) {
+            for (Path p : (Iterable<Path>) caminhos.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private static void imprimirResumo(List<Resumo> resumos) {
+        System.out.println("\n=== Resumo da extração (" + resumos.size() + " arquivos) ===");
+        for (Resumo r : resumos) {
+            if (r.erro != null) {
+                System.out.println("  " + r.nome + ": ERRO - " + r.erro);
+                continue;
+            }
+            double segundos = r.duracaoNanos / 1_000_000_000.0;
+            double megabytes = r.bytes.get() / (1024.0 * 1024.0);
+            double vazao = segundos > 0 ? megabytes / segundos : 0;
+            System.out.println(String.format("  %s: %d arquivos, %.1f MB em %.1f s (%.1f MB/s)",
+                r.nome, r.entradas.get(), megabytes, segundos, vazao));
+        }
+    }
+
+    // Contadores de um ZIP (atualizados por várias threads)
+    static class Resumo {
+        String nome;
+        AtomicInteger entradas = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        long inicio = System.nanoTime();
+        long duracaoNanos;
+        volatile String erro;
+
+        Resumo(String nome) {
+            this.nome = nome;
+        }
+
+        void terminar() {
+            duracaoNanos = System.nanoTime() - inicio;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Filtro de "Eventos/Sinistros" direto sobre os bytes do CSV (--filtro-bytes).
+ *
+ * O filtro com BufferedReader decodifica cada linha em String, chama
+ * contains() e depois separa os campos (LinhaCSV) só para contar colunas.
+ * Aqui o arquivo é lido em blocos grandes de bytes e:
+ * - o padrão é procurado no bloco inteiro (Boyer-Moore-Horspool), pulando
+ *   as linhas que não casam sem nem procurar o fim delas
+ * - para cada ocorrência, acha o início/fim da linha e conta os campos
+ * - a linha é copiada para a saída como faixa de bytes, sem virar String
+ *
+ * Resultado equivalente ao filtro com BufferedReader: mesma regra de colunas
+ * do LinhaCSV.camposPreenchidos() (RFC 4180: ';' entre aspas não separa
+ * campo; campos vazios no fim não contam) e mesmo separador de linha do
+ * BufferedWriter.newLine(). A diferença é que os bytes saem exatamente como
+ * estavam no arquivo, sem passar pelo charset padrão da JVM.
+ * VerificacaoFiltros confere os três caminhos (texto, bytes e paralelo).
+ */
+public class FiltroBytes {
+
+    private static final byte[] PADRAO = "Eventos/Sinistros".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FIM_LINHA = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final int TAMANHO_BLOCO = 4 * 1024 * 1024;
+
+    // Tabela de saltos do Horspool: quanto avançar conforme o último byte da janela
+    private static final int[] SALTOS = new int[256];
+
+    static {
+        Arrays.fill(SALTOS, PADRAO.length);
+        for (int i = 0; i < PADRAO.length - 1; i++) {
+            SALTOS[PADRAO[i] & 0xFF] = PADRAO.length - 1 - i;
+        }
+    }
+
+    private byte[] bloco = new byte[TAMANHO_BLOCO];
+
+    /**
+     * Lê o canal até o fim (ou até maxBytes) e copia as linhas filtradas para a saída.
+     * pularHeader = descarta a primeira linha (início de arquivo CSV).
+     * Retorna quantas linhas foram copiadas.
+     */
+    public int filtrar(ReadableByteChannel canal, long maxBytes, boolean pularHeader, OutputStream saida) throws IOException {
+        int contador = 0;
+        int validos = 0;
+        long restante = maxBytes;
+        boolean fimArquivo = false;
+
+        while (!fimArquivo) {
+            // Completa o bloco a partir do que sobrou (linha incompleta) da rodada anterior
+            if (validos == bloco.length) bloco = Arrays.copyOf(bloco, bloco.length * 2);
+            int espaco = (int) Math.min(bloco.length - validos, restante);
+            int lidos = espaco > 0 ? canal.read(ByteBuffer.wrap(bloco, validos, espaco)) : -1;
+            if (lidos < 0) {
+                fimArquivo = true;
+            } else {
+                validos += lidos;
+                restante -= lidos;
+                if (restante == 0) fimArquivo = true;
+            }
+
+            // Só processa linhas completas; no fim do arquivo a última linha vale mesmo sem '\n'
+            int limite = fimArquivo ? validos : ultimaQuebra(bloco, validos) + 1;
+            if (limite <= 0) continue;
+
+            int inicio = 0;
+            if (pularHeader) {
+                int quebra = proximaQuebra(bloco, 0, limite);
+                if (quebra == limite && !fimArquivo) continue; // header ainda não terminou
+                inicio = Math.min(quebra + 1, limite);
+                pularHeader = false;
+            }
+
+            contador += filtrarBloco(bloco, inicio, limite, saida);
+
+            // Move o pedaço de linha que sobrou para o começo do bloco
+            System.arraycopy(bloco, limite, bloco, 0, validos - limite);
+            validos -= limite;
+        }
+
+        return contador;
+    }
+
+    // Processa as linhas completas em [inicio, fim)
+    private static int filtrarBloco(byte[] b, int inicio, int fim, OutputStream saida) throws IOException {
+        int contador = 0;
+        int pos = inicio;
+
+        while (true) {
+            int achado = procurar(b, pos, fim);
+            if (achado < 0) break;
+
+            int inicioLinha = achado;
+            while (inicioLinha > pos && b[inicioLinha - 1] != '\n') inicioLinha--;
+            int fimLinha = proximaQuebra(b, achado + PADRAO.length, fim);
+
+            int fimConteudo = fimLinha;
+            if (fimConteudo > inicioLinha && b[fimConteudo - 1] == '\r') fimConteudo--;
+
+            if (contarColunas(b, inicioLinha, fimConteudo) > 5) {
+                saida.write(b, inicioLinha, fimConteudo - inicioLinha);
+                saida.write(FIM_LINHA);
+                contador++;
+            }
+
+            pos = fimLinha + 1;
+            if (pos >= fim) break;
+        }
+
+        return contador;
+    }
+
+    // Boyer-Moore-Horspool: primeira ocorrência do padrão em [de, ate), ou -1
+    static int procurar(byte[] b, int de, int ate) {
+        int m = PADRAO.length;
+        int i = de;
+        while (i <= ate - m) {
+            byte ultimo = b[i + m - 1];
+            if (ultimo == PADRAO[m - 1]) {
+                int j = m - 2;
+                while (j >= 0 && b[i + j] == PADRAO[j]) j--;
+                if (j < 0) return i;
+            }
+            i += SALTOS[ultimo & 0xFF];
+        }
+        return -1;
+    }
+
+    // Mesma contagem do LinhaCSV.camposPreenchidos(): ';' entre aspas não separa
+    // campo e campos vazios (depois de tirar as aspas) no fim da linha não contam
+    static int contarColunas(byte[] b, int inicio, int fim) {
+        int campos = 0;
+        int preenchidos = 0;
+        int i = inicio;
+        while (true) {
+            int tamanho = 0;
+            if (i < fim && b[i] == '"') {
+                i++;
+                while (i < fim) {
+                    byte c = b[i++];
+                    if (c != '"') {
+                        tamanho++;
+                    } else if (i < fim && b[i] == '"') {
+                        tamanho++;
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+            }
+            // Sem aspas, ou o que vier entre a aspa de fechamento e o ';' (tolerante, como o LinhaCSV)
+            while (i < fim && b[i] != ';') {
+                tamanho++;
+                i++;
+            }
+            campos++;
+            if (tamanho > 0) preenchidos = campos;
+
+            if (i >= fim) break;
+            i++; // Pula o ';'
+        }
+        return preenchidos;
+    }
+
+    private static int proximaQuebra(byte[] b, int de, int ate) {
+        for (int i = de; i < ate; i++) {
+            if (b[i] == '\n') return i;
+        }
+        return ate;
+    }
+
+    private static int ultimaQuebra(byte[] b, int ate) {
+        for (int i = ate - 1; i >= 0; i--) {
+            if (b[i] == '\n') return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,201 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Filtro de "Eventos/Sinistros" em paralelo, por faixas de bytes (--paralelo).
+ *
+ * Cada CSV é dividido em faixas de ~TAMANHO_FAIXA bytes, sempre cortando
+ * logo depois de um '\n'. Cada faixa é uma tarefa de um pool fixo de
+ * threads, filtrada pelo FiltroBytes para um buffer em memória.
+ *
+ * Memória e arquivos abertos limitados: no máximo JANELA_POR_THREAD faixas
+ * por thread ficam em andamento ou esperando a vez; a próxima só é
+ * disparada quando a mais antiga é gravada. O canal de cada CSV é fechado
+ * assim que a última faixa dele é gravada, então só ficam abertos os
+ * arquivos com faixas na janela.
+ *
+ * Saída determinística: as faixas são gravadas na ordem do arquivo, e os
+ * arquivos na mesma ordem do modo sequencial (pasta, depois nome). Por isso
+ * o eventos_sinistros.csv sai byte a byte igual ao do --filtro-bytes sequencial.
+ */
+public class FiltroParalelo {
+
+    private static final long TAMANHO_FAIXA = 8L * 1024 * 1024;
+    private static final int JANELA_POR_THREAD = 2;
+
+    // Um FiltroBytes (e seu bloco de 4 MB) por thread do pool
+    private static final ThreadLocal<FiltroBytes> FILTROS = ThreadLocal.withInitial(FiltroBytes::new);
+
+    private final int threads;
+
+    public FiltroParalelo(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    // Filtra todos os CSVs para o arquivo de saída e retorna o total de linhas
+    public int filtrar(List<File> csvs, File arquivoSaida) throws IOException {
+        System.out.println("Filtro paralelo: " + threads + " threads, " + csvs.size() + " arquivos");
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Deque<Faixa> pendentes = new ArrayDeque<>();
+        int janela = JANELA_POR_THREAD * threads;
+        int contador = 0;
+        FileChannel canal = null;
+
+        try (OutputStream saida = new BufferedOutputStream(new FileOutputStream(arquivoSaida), 1 << 20)) {
+            for (File csv : csvs) {
+                System.out.println("Lendo: " + csv.getName());
+                canal = FileChannel.open(csv.toPath(), StandardOpenOption.READ);
+
+                long tamanho = canal.size();
+                if (tamanho == 0) {
+                    canal.close();
+                    continue;
+                }
+                for (long inicio = 0; inicio < tamanho; ) {
+                    long fim = tamanho - inicio <= TAMANHO_FAIXA ? tamanho : alinhar(canal, inicio + TAMANHO_FAIXA, tamanho);
+                    // Janela cheia: grava a faixa mais antiga (ordem do arquivo, não de término)
+                    if (pendentes.size() == janela) contador += gravar(pendentes.removeFirst(), saida);
+                    // A última faixa do arquivo leva o canal, que é fechado quando ela for gravada
+                    FileChannel dono = fim == tamanho ? canal : null;
+                    pendentes.addLast(new Faixa(pool.submit(new FiltrarFaixa(canal, inicio, fim)), dono));
+                    inicio = fim;
+                }
+                canal = null;
+            }
+            while (!pendentes.isEmpty()) {
+                contador += gravar(pendentes.removeFirst(), saida);
+            }
+        } finally {
+            pool.shutdownNow();
+            if (canal != null) canal.close();
+            for (Faixa faixa : pendentes) {
+                if (faixa.canal != null) faixa.canal.close();
+            }
+        }
+
+        return contador;
+    }
+
+    // Espera a faixa terminar, grava as linhas dela e fecha o canal se era a última do arquivo
+    private static int gravar(Faixa faixa, OutputStream saida) throws IOException {
+        Resultado resultado;
+        try {
+            resultado = faixa.tarefa.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Falha ao filtrar faixa", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Filtro interrompido", e);
+        } finally {
+            if (faixa.canal != null) faixa.canal.close();
+        }
+        saida.write(resultado.parte);
+        return resultado.linhas;
+    }
+
+    // Faixa em andamento e, se for a última do arquivo, o canal a fechar depois dela
+    private static class Faixa {
+        final Future<Resultado> tarefa;
+        final FileChannel canal;
+
+        Faixa(Future<Resultado> tarefa, FileChannel canal) {
+            this.tarefa = tarefa;
+            this.canal = canal;
+        }
+    }
+
+    // Filtra [inicio, fim) de um arquivo (fim logo depois de um '\n', ou o fim do arquivo)
+    static class FiltrarFaixa implements Callable<Resultado> {
+        private final FileChannel canal;
+        private final long inicio;
+        private final long fim;
+
+        FiltrarFaixa(FileChannel canal, long inicio, long fim) {
+            this.canal = canal;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        public Resultado call() throws IOException {
+            // Só a faixa que começa no byte 0 contém o header
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            int linhas = FILTROS.get().filtrar(new CanalPosicional(canal, inicio), fim - inicio, inicio == 0, buffer);
+            return new Resultado(buffer.toByteArray(), linhas);
+        }
+    }
+
+    // Primeira posição depois de um '\n' a partir de pos (ou fim, se não houver)
+    static long alinhar(FileChannel canal, long pos, long fim) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (pos < fim) {
+            buffer.clear();
+            int lidos = canal.read(buffer, pos);
+            if (lidos <= 0) break;
+            for (int i = 0; i < lidos; i++) {
+                if (buffer.get(i) == '\n') return Math.min(pos + i + 1, fim);
+            }
+            pos += lidos;
+        }
+        return fim;
+    }
+
+    // Leitura a partir de uma posição própria, sem mexer na posição compartilhada do FileChannel
+    static class CanalPosicional implements ReadableByteChannel {
+        private final FileChannel canal;
+        private long posicao;
+
+        CanalPosicional(FileChannel canal, long posicao) {
+            this.canal = canal;
+            this.posicao = posicao;
+        }
+
+        @Override
+        public int read(ByteBuffer destino) throws IOException {
+            int lidos = canal.read(destino, posicao);
+            if (lidos > 0) posicao += lidos;
+            return lidos;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return canal.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // O FileChannel é fechado por quem o abriu
+        }
+    }
+
+    // Linhas filtradas de uma faixa, em ordem
+    static class Resultado {
+        final byte[] parte;
+        final int linhas;
+
+        Resultado(byte[] parte, int linhas) {
+            this.parte = parte;
+            this.linhas = linhas;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latências (thread-safe, sem alocação por registro).
+ *
+ * Faixas logarítmicas de 1 ms a ~65 s com 4 faixas por potência de 2, então
+ * o erro de qualquer percentil é de no máximo ~19%. Suficiente para escolher
+ * o atraso do hedge e comparar execuções.
+ */
+class HistogramaLatencia {
+
+    private static final int FAIXAS_POR_OITAVA = 4;
+    private static final int OITAVAS = 16;
+    private static final int TOTAL_FAIXAS = FAIXAS_POR_OITAVA * OITAVAS + 1;
+
+    private final String nome;
+    private final AtomicLongArray contagens = new AtomicLongArray(TOTAL_FAIXAS);
+
+    HistogramaLatencia(String nome) {
+        this.nome = nome;
+    }
+
+    void registrar(long nanos) {
+        contagens.incrementAndGet(faixa(Math.max(1, nanos / 1_000_000)));
+    }
+
+    long total() {
+        long total = 0;
+        for (int i = 0; i < TOTAL_FAIXAS; i++) total += contagens.get(i);
+        return total;
+    }
+
+    // Limite superior (ms) da faixa onde cai o percentil p (0..1); 0 se vazio
+    long percentil(double p) {
+        long total = total();
+        if (total == 0) return 0;
+
+        long alvo = (long) Math.ceil(p * total);
+        long acumulado = 0;
+        for (int i = 0; i < TOTAL_FAIXAS; i++) {
+            acumulado += contagens.get(i);
+            if (acumulado >= Math.max(1, alvo)) return limite(i);
+        }
+        return limite(TOTAL_FAIXAS - 1);
+    }
+
+    // Resumo com percentis e a distribuição por faixa
+    void imprimir() {
+        long total = total();
+        System.out.println("Latência - " + nome + " (" + total + " amostras)");
+        if (total == 0) return;
+
+        System.out.println("  p50 <= " + percentil(0.50) + " ms | p90 <= " + percentil(0.90)
+            + " ms | p95 <= " + percentil(0.95) + " ms | p99 <= " + percentil(0.99) + " ms");
+
+        long maior = 0;
+        for (int i = 0; i < TOTAL_FAIXAS; i++) maior = Math.max(maior, contagens.get(i));
+
+        for (int i = 0; i < TOTAL_FAIXAS; i++) {
+            long n = contagens.get(i);
+            if (n == 0) continue;
+            int barra = (int) Math.max(1, n * 40 / maior);
+            System.out.println(String.format("  <= %6d ms %6d %s", limite(i), n, "#".repeat(barra)));
+        }
+    }
+
+    // Faixa i cobre até 2^(i/4) ms (a última acumula tudo acima)
+    private static int faixa(long ms) {
+        int i = (int) Math.ceil(Math.log(ms) / Math.log(2) * FAIXAS_POR_OITAVA);
+        return Math.min(Math.max(i, 0), TOTAL_FAIXAS - 1);
+    }
+
+    private static long limite(int faixa) {
+        return (long) Math.floor(Math.pow(2, (double) faixa / FAIXAS_POR_OITAVA));
+    }
+}
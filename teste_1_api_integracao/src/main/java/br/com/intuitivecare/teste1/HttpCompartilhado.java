@@ -0,0 +1,21 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Cliente HTTP único compartilhado pelo Teste 1.
+ * O HttpClient mantém um pool de conexões keep-alive por host, então usar
+ * sempre a mesma instância evita abrir uma conexão (e um handshake TLS) nova
+ * a cada arquivo baixado.
+ */
+class HttpCompartilhado {
+
+    static final HttpClient CLIENTE = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(10))
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .build();
+
+    private HttpCompartilhado() {
+    }
+}
@@ -0,0 +1,61 @@
+package main.java.br.com.intuitivecare.teste1;
+
+/**
+ * Token bucket simples para limitar requisições por segundo.
+ *
+ * O balde começa cheio (permite uma rajada de até "capacidade" requisições)
+ * e recebe "porSegundo" fichas por segundo. Cada requisição consome uma
+ * ficha; sem ficha, a thread dorme até a próxima ficha chegar.
+ *
+ * porSegundo <= 0 (ex.: --req-por-segundo=0) significa sem limite.
+ */
+class LimitadorTaxa {
+
+    private final double porSegundo;
+    private final boolean semLimite;
+    private final double capacidade;
+    private double fichas;
+    private long ultimaRecarga;
+
+    LimitadorTaxa(double porSegundo, double capacidade) {
+        this.porSegundo = porSegundo;
+        // Sem esse caso, a espera seria (1 - fichas) / 0 = infinito
+        this.semLimite = !(porSegundo > 0);
+        this.capacidade = Math.max(1, capacidade);
+        this.fichas = this.capacidade;
+        this.ultimaRecarga = System.nanoTime();
+    }
+
+    // Bloqueia até haver uma ficha disponível e a consome
+    void adquirir() throws InterruptedException {
+        if (semLimite) return;
+        while (true) {
+            long espera;
+            synchronized (this) {
+                recarregar();
+                if (fichas >= 1) {
+                    fichas -= 1;
+                    return;
+                }
+                espera = (long) Math.ceil((1 - fichas) / porSegundo * 1000);
+            }
+            // Dorme fora do lock para as outras threads poderem recarregar/consumir
+            Thread.sleep(Math.max(1, espera));
+        }
+    }
+
+    // Consome uma ficha só se houver uma disponível agora (não bloqueia)
+    synchronized boolean tentarAdquirir() {
+        if (semLimite) return true;
+        recarregar();
+        if (fichas < 1) return false;
+        fichas -= 1;
+        return true;
+    }
+
+    private void recarregar() {
+        long agora = System.nanoTime();
+        fichas = Math.min(capacidade, fichas + (agora - ultimaRecarga) / 1_000_000_000.0 * porSegundo);
+        ultimaRecarga = agora;
+    }
+}
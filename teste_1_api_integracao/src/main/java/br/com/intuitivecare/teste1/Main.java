@@ -1,5 +1,7 @@
 package main.java.br.com.intuitivecare.teste1;
 
+import main.java.br.com.intuitivecare.comum.Opcoes;
+
 /**
  * Orquestrador principal do processamento de dados ANS.
  * Executa o pipeline completo: download, extração, filtragem e consolidação.
@@ -12,13 +14,19 @@ public class Main {
         System.out.println("  INICIANDO PROCESSAMENTO ANS");
         System.out.println("=================================\n");
 
-        // PASSO 1: Baixa dados de demonstrações contábeis da ANS
-        System.out.println("PASSO 1: Baixando arquivos dos últimos 3 trimestres...\n");
-        AnsDownloader.main(null);
+        if (Opcoes.tem(args, "--pipeline")) {
+            // Download, filtro e enriquecimento rodando em paralelo, trimestre a trimestre
+            System.out.println("PIPELINE: Baixando, filtrando e consultando API em paralelo...\n");
+            PipelineTeste1.main(args);
+        } else {
+            // PASSO 1: Baixa dados de demonstrações contábeis da ANS
+            System.out.println("PASSO 1: Baixando arquivos dos últimos 3 trimestres...\n");
+            AnsDownloader.main(args);
 
-        // PASSO 2: Filtra eventos/sinistros e consulta API para dados consolidados
-        System.out.println("\n\nPASSO 2: Extraindo eventos de sinistros e consultando API...\n");
-        DespesaProcessor.main(null);
+            // PASSO 2: Filtra eventos/sinistros e consulta API para dados consolidados
+            System.out.println("\n\nPASSO 2: Extraindo eventos de sinistros e consultando API...\n");
+            DespesaProcessor.main(args);
+        }
 
         System.out.println("\n=================================");
         System.out.println("  PROCESSAMENTO CONCLUIDO!");
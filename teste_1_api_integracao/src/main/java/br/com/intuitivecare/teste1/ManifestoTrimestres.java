@@ -0,0 +1,330 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+
+/**
+ * Manifesto persistido da descoberta de trimestres (--manifesto).
+ *
+ * Guarda, para cada listagem de ano e cada ZIP trimestral: URL, ETag,
+ * Last-Modified, tamanho e SHA-256. Numa nova execução:
+ * - as listagens dos anos são consultadas em paralelo com GET condicional
+ *   (304 = reaproveita os trimestres já conhecidos daquele ano)
+ * - cada ZIP selecionado recebe um HEAD condicional; se mudou no servidor
+ *   (ou o arquivo local não bate com o tamanho registrado), é baixado de novo
+ * - entradas que saíram da listagem (ZIP que não aparece mais na listagem
+ *   nova do ano, ou ano fora da janela consultada) são removidas; assim o
+ *   manifesto não cresce sem limite nem guarda ETag/Last-Modified velhos.
+ *   Ano que respondeu 304 ou não respondeu mantém os ZIPs já conhecidos
+ *
+ * Formato (CSV com ;): Tipo;URL;ETag;LastModified;Tamanho;SHA256
+ * Tipo = ANO (listagem HTML do ano) ou ZIP (arquivo trimestral)
+ */
+public class ManifestoTrimestres {
+
+    private static final String CABECALHO = "Tipo;URL;ETag;LastModified;Tamanho;SHA256";
+
+    private final Path arquivo;
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    // Cabeçalhos vistos no HEAD, confirmados só depois que o download terminar
+    private final Map<String, Entrada> pendentes = new ConcurrentHashMap<>();
+    // Anos com listagem nova (200) nesta execução e os ZIPs que apareceram nelas
+    private final Set<String> anosListados = ConcurrentHashMap.newKeySet();
+    private final Set<String> zipsListados = ConcurrentHashMap.newKeySet();
+
+    private ManifestoTrimestres(Path arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    // Lê o manifesto do disco (arquivo ausente = manifesto vazio)
+    public static ManifestoTrimestres carregar(String caminho) throws IOException {
+        ManifestoTrimestres manifesto = new ManifestoTrimestres(Paths.get(caminho));
+        if (!Files.exists(manifesto.arquivo)) return manifesto;
+
+        try (BufferedReader leitor = Files.newBufferedReader(manifesto.arquivo, StandardCharsets.UTF_8)) {
+            leitor.readLine(); // Pula header
+            String linha;
+            while ((linha = leitor.readLine()) != null) {
+                String[] campos = linha.split(";", -1);
+                if (campos.length < 6) continue;
+
+                Entrada e = new Entrada(campos[0], campos[1]);
+                e.etag = campos[2];
+                e.lastModified = campos[3];
+                e.tamanho = campos[4].isEmpty() ? -1 : Long.parseLong(campos[4]);
+                e.sha256 = campos[5];
+                manifesto.entradas.put(e.url, e);
+            }
+        }
+
+        System.out.println("Manifesto carregado: " + manifesto.entradas.size() + " entradas");
+        return manifesto;
+    }
+
+    // Grava em arquivo temporário e renomeia (um crash não corrompe o manifesto anterior)
+    public void salvar() throws IOException {
+        Files.createDirectories(arquivo.toAbsolutePath().getParent());
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+
+        try (BufferedWriter escritor = Files.newBufferedWriter(temporario, StandardCharsets.UTF_8)) {
+            escritor.write(CABECALHO);
+            escritor.newLine();
+            for (Entrada e : new TreeMap<>(entradas).values()) {
+                escritor.write(e.tipo + ";" + e.url + ";" + e.etag + ";" + e.lastModified + ";"
+                    + (e.tamanho >= 0 ? e.tamanho : "") + ";" + e.sha256);
+                escritor.newLine();
+            }
+        }
+
+        try {
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Consulta as listagens de todos os anos em paralelo e devolve as URLs de ZIPs conhecidas
+    public List<String> descobrir(List<String> urlsAnos) {
+        long inicio = System.nanoTime();
+        List<CompletableFuture<Void>> consultas = new ArrayList<>();
+
+        for (String urlAno : urlsAnos) {
+            Entrada anterior = entradas.get(urlAno);
+            HttpRequest requisicao = condicional(HttpRequest.newBuilder(URI.create(urlAno)).GET(), anterior);
+
+            consultas.add(HttpCompartilhado.CLIENTE
+                .sendAsync(requisicao, HttpResponse.BodyHandlers.ofString())
+                .handle((resposta, erro) -> {
+                    registrarListagem(urlAno, resposta, erro);
+                    return null;
+                }));
+        }
+
+        CompletableFuture.allOf(consultas.toArray(new CompletableFuture<?>[0])).join();
+        podar(urlsAnos);
+
+        List<String> zips = new ArrayList<>();
+        for (Entrada e : entradas.values()) {
+            if (e.tipo.equals("ZIP")) zips.add(e.url);
+        }
+
+        System.out.println(String.format("Descoberta: %d trimestres em %d ms",
+            zips.size(), (System.nanoTime() - inicio) / 1_000_000));
+        return zips;
+    }
+
+    // Remove anos fora de urlsAnos e ZIPs que sumiram da listagem nova do seu ano
+    private void podar(List<String> urlsAnos) {
+        int removidas = 0;
+        for (Entrada e : new ArrayList<>(entradas.values())) {
+            String urlAno = e.tipo.equals("ANO") ? e.url : e.url.substring(0, e.url.lastIndexOf('/') + 1);
+            boolean foraDaJanela = !urlsAnos.contains(urlAno);
+            boolean sumiuDaListagem = e.tipo.equals("ZIP") && anosListados.contains(urlAno) && !zipsListados.contains(e.url);
+            if (foraDaJanela || sumiuDaListagem) {
+                entradas.remove(e.url);
+                removidas++;
+            }
+        }
+        if (removidas > 0) System.out.println("  Manifesto: " + removidas + " entradas fora da listagem removidas");
+    }
+
+    private void registrarListagem(String urlAno, HttpResponse<String> resposta, Throwable erro) {
+        String ano = urlAno.substring(0, urlAno.length() - 1);
+        ano = ano.substring(ano.lastIndexOf('/') + 1);
+
+        if (erro != null || (resposta.statusCode() != 200 && resposta.statusCode() != 304)) {
+            // Sem resposta: mantém o que já era conhecido daquele ano
+            System.out.println("  " + ano + ": não disponível");
+            return;
+        }
+
+        if (resposta.statusCode() == 304) {
+            System.out.println("  " + ano + ": sem alterações");
+            return;
+        }
+
+        Entrada listagem = new Entrada("ANO", urlAno);
+        listagem.etag = resposta.headers().firstValue("ETag").orElse("");
+        listagem.lastModified = resposta.headers().firstValue("Last-Modified").orElse("");
+        entradas.put(urlAno, listagem);
+
+        Matcher m = AnsDownloader.PADRAO_ZIP.matcher(resposta.body());
+        int encontrados = 0;
+        while (m.find()) {
+            String url = urlAno + m.group(1);
+            entradas.putIfAbsent(url, new Entrada("ZIP", url));
+            zipsListados.add(url);
+            encontrados++;
+        }
+        anosListados.add(urlAno);
+        System.out.println("  " + ano + ": " + encontrados + " trimestres na listagem");
+    }
+
+    /**
+     * HEAD condicional em paralelo para cada ZIP selecionado.
+     * Retorna os que precisam ser baixados (novos, alterados no servidor
+     * ou com arquivo local ausente/de tamanho diferente do registrado).
+     */
+    public List<String> verificar(List<String> urls, String pastaRaw) {
+        List<CompletableFuture<Boolean>> consultas = new ArrayList<>();
+
+        for (String url : urls) {
+            Entrada anterior = entradas.get(url);
+            HttpRequest requisicao = condicional(HttpRequest.newBuilder(URI.create(url))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody()), anterior);
+
+            consultas.add(HttpCompartilhado.CLIENTE
+                .sendAsync(requisicao, HttpResponse.BodyHandlers.discarding())
+                .handle((resposta, erro) -> precisaBaixar(url, anterior, pastaRaw, resposta, erro)));
+        }
+
+        List<String> paraBaixar = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            if (consultas.get(i).join()) paraBaixar.add(urls.get(i));
+        }
+        return paraBaixar;
+    }
+
+    private boolean precisaBaixar(String url, Entrada anterior, String pastaRaw,
+                                  HttpResponse<Void> resposta, Throwable erro) {
+        String nome = url.substring(url.lastIndexOf('/') + 1);
+        File local = new File(pastaRaw, nome);
+        boolean localConfere = local.exists() && anterior != null && !anterior.sha256.isEmpty()
+            && local.length() == anterior.tamanho;
+
+        // Servidor fora do ar: confia no que já existe localmente
+        if (erro != null || (resposta.statusCode() != 200 && resposta.statusCode() != 304)) {
+            return !local.exists();
+        }
+
+        if (resposta.statusCode() == 304) {
+            if (!localConfere) System.out.println("  " + nome + ": arquivo local ausente ou divergente");
+            return !localConfere;
+        }
+
+        Entrada atual = new Entrada("ZIP", url);
+        atual.etag = resposta.headers().firstValue("ETag").orElse("");
+        atual.lastModified = resposta.headers().firstValue("Last-Modified").orElse("");
+        atual.tamanho = resposta.headers().firstValueAsLong("Content-Length").orElse(-1);
+        pendentes.put(url, atual);
+
+        // Servidor ignorou o condicional: compara os cabeçalhos manualmente
+        if (localConfere && anterior.mesmaVersao(atual)) return false;
+
+        // Arquivo baixado antes do manifesto existir: adota se o tamanho bate
+        if (local.exists() && (anterior == null || anterior.sha256.isEmpty()) && local.length() == atual.tamanho) {
+            System.out.println("  " + nome + ": adotando arquivo local existente");
+            registrarDownload(url, pastaRaw);
+            return false;
+        }
+
+        if (local.exists()) System.out.println("  [ALTERADO] " + nome + " mudou no servidor");
+        return true;
+    }
+
+    // Calcula tamanho e SHA-256 do arquivo baixado e grava junto com ETag/Last-Modified
+    public void registrarDownload(String url, String pastaRaw) {
+        String nome = url.substring(url.lastIndexOf('/') + 1);
+        File local = new File(pastaRaw, nome);
+        if (!local.exists()) return;
+
+        Entrada e = pendentes.remove(url);
+        if (e == null) e = new Entrada("ZIP", url);
+
+        try {
+            e.tamanho = local.length();
+            e.sha256 = sha256(local);
+            entradas.put(url, e);
+        } catch (Exception ex) {
+            System.out.println("  Erro ao calcular hash de " + nome + ": " + ex.getMessage());
+        }
+    }
+
+    // Esquece a versão registrada de um ZIP (ex.: republicado no servidor, será baixado de novo)
+    public void remover(String url) {
+        entradas.remove(url);
+    }
+
+    // Confere o SHA-256 do arquivo local contra o registrado (verificação completa de integridade)
+    public boolean integro(String url, String pastaRaw) {
+        Entrada e = entradas.get(url);
+        File local = new File(pastaRaw, url.substring(url.lastIndexOf('/') + 1));
+        if (e == null || e.sha256.isEmpty() || !local.exists()) return false;
+
+        try {
+            return e.sha256.equals(sha256(local));
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    private static HttpRequest condicional(HttpRequest.Builder requisicao, Entrada anterior) {
+        requisicao.timeout(Duration.ofSeconds(30));
+        if (anterior != null) {
+            if (!anterior.etag.isEmpty()) requisicao.header("If-None-Match", anterior.etag);
+            if (!anterior.lastModified.isEmpty()) requisicao.header("If-Modified-Since", anterior.lastModified);
+        }
+        return requisicao.build();
+    }
+
+    static String sha256(File arquivo) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = new FileInputStream(arquivo)) {
+            byte[] buffer = new byte[1 << 16];
+            int lidos;
+            while ((lidos = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, lidos);
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    // Uma linha do manifesto
+    static class Entrada {
+        String tipo;
+        String url;
+        String etag = "";
+        String lastModified = "";
+        long tamanho = -1;
+        String sha256 = "";
+
+        Entrada(String tipo, String url) {
+            this.tipo = tipo;
+            this.url = url;
+        }
+
+        // Mesma versão no servidor: ETag igual, ou (sem ETag) Last-Modified e tamanho iguais
+        boolean mesmaVersao(Entrada outra) {
+            if (!etag.isEmpty() && !outra.etag.isEmpty()) return etag.equals(outra.etag);
+            return !lastModified.isEmpty() && lastModified.equals(outra.lastModified) && tamanho == outra.tamanho;
+        }
+    }
+}
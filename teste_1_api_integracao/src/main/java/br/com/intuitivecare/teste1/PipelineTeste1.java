@@ -0,0 +1,248 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Execução em pipeline do Teste 1 (--pipeline).
+ *
+ * As três etapas rodam ao mesmo tempo, ligadas por filas limitadas:
+ *
+ *   download --[ZIPs]--> filtro --[lotes de registros]--> enriquecimento
+ *
+ * Enquanto o trimestre N é filtrado e enriquecido, o N+1 ainda está sendo
+ * baixado. As filas têm capacidade pequena (backpressure): se uma etapa
+ * ficar para trás, a anterior bloqueia no put() em vez de acumular dados
+ * em memória. O tempo total fica próximo do da etapa mais lenta.
+ *
+ * O filtro lê os CSVs direto de dentro dos ZIPs (mesmo filtro do modo
+ * --streaming) e continua gerando eventos_sinistros.csv. O enriquecimento
+ * resolve os RegANS novos de cada lote de uma vez (resolverTodos), então
+ * --cadastro e --consulta-async valem também no pipeline.
+ *
+ * Se alguma etapa falhar (trimestre que não baixou, erro no filtro), as
+ * outras terminam sem ficar presas nas filas e o consolidado da execução é
+ * descartado: o da última execução completa continua publicado.
+ */
+public class PipelineTeste1 {
+
+    private static final int CAPACIDADE_ZIPS = 1;
+    private static final int CAPACIDADE_LOTES = 4;
+    private static final int TAMANHO_LOTE = 10_000;
+
+    // Marcadores de fim de fila
+    private static final File FIM_ZIPS = new File("");
+    private static final List<DespesaProcessor.RegistroSinistro> FIM_LOTES = new ArrayList<>();
+
+    public static void main(String[] args) {
+        try {
+            new PipelineTeste1().executar(AnsDownloader.configurar(args), DespesaProcessor.configurar(args), 3);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void executar(AnsDownloader downloader, DespesaProcessor processor, int quantidade) throws Exception {
+        long inicio = System.nanoTime();
+
+        List<String> selecionados = downloader.selecionarTrimestres(quantidade);
+        if (selecionados.isEmpty()) return;
+        List<String> paraBaixar = downloader.prepararDownloads(selecionados);
+
+        new File("teste_1_api_integracao/output").mkdirs();
+
+        BlockingQueue<File> zips = new ArrayBlockingQueue<>(CAPACIDADE_ZIPS);
+        BlockingQueue<List<DespesaProcessor.RegistroSinistro>> lotes = new ArrayBlockingQueue<>(CAPACIDADE_LOTES);
+
+        // Falhas das etapas: com alguma, o consolidado desta execução é descartado
+        List<String> falhas = Collections.synchronizedList(new ArrayList<>());
+
+        // ETAPA 1: baixa um trimestre por vez e entrega o ZIP para o filtro
+        // (erro em um trimestre não impede os outros; só os baixados vão para o manifesto)
+        Thread download = new Thread(() -> {
+            List<String> baixados = new ArrayList<>();
+            try {
+                for (String url : selecionados) {
+                    String nome = url.substring(url.lastIndexOf('/') + 1);
+                    File zip;
+                    try {
+                        zip = paraBaixar.contains(url)
+                            ? downloader.baixarTrimestre(url)
+                            : new File("teste_1_api_integracao/data/raw", nome);
+                    } catch (InterruptedException | InterruptedIOException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        System.out.println("[ERRO] download " + nome + ": " + e.getMessage());
+                        falhas.add("download " + nome);
+                        continue;
+                    }
+                    if (!zip.exists()) {
+                        System.out.println("[ERRO] download " + nome + ": arquivo nao encontrado");
+                        falhas.add("download " + nome);
+                        continue;
+                    }
+                    if (paraBaixar.contains(url)) baixados.add(url);
+                    zips.put(zip);
+                }
+            } catch (InterruptedException | InterruptedIOException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    downloader.finalizarDownloads(baixados);
+                } catch (IOException e) {
+                    System.out.println("[ERRO] manifesto: " + e.getMessage());
+                    falhas.add("manifesto");
+                }
+                entregarFim(zips, FIM_ZIPS);
+            }
+        }, "pipeline-download");
+
+        // ETAPA 2: filtra Eventos/Sinistros de cada ZIP em lotes de registros
+        Thread filtro = new Thread(() -> {
+            try (BufferedWriter eventos = new BufferedWriter(
+                    new FileWriter("teste_1_api_integracao/output/eventos_sinistros.csv"))) {
+                File zip;
+                while ((zip = zips.take()) != FIM_ZIPS) {
+                    filtrar(zip, eventos, processor, lotes);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                System.out.println("[ERRO] filtro: " + e.getMessage());
+                falhas.add("filtro");
+                // Sem o filtro consumindo a fila, o download ficaria bloqueado no put()
+                download.interrupt();
+            } finally {
+                entregarFim(lotes, FIM_LOTES);
+            }
+        }, "pipeline-filtro");
+
+        download.start();
+        filtro.start();
+
+        // ETAPA 3 (thread atual): busca a operadora uma vez por RegANS (cadastro, cache ou API) e grava o consolidado
+        Map<String, DespesaProcessor.DadosOperadora> operadoras = new HashMap<>();
+        processor.abrirSaida();
+        try {
+            List<DespesaProcessor.RegistroSinistro> lote;
+            while ((lote = lotes.take()) != FIM_LOTES) {
+                resolver(lote, operadoras, processor);
+                for (DespesaProcessor.RegistroSinistro reg : lote) {
+                    processor.gravarConsolidado(reg, operadoras.get(reg.regANS));
+                }
+            }
+        } catch (InterruptedException | IOException | RuntimeException e) {
+            // Sem consumidor, as outras etapas ficariam bloqueadas nas filas
+            download.interrupt();
+            filtro.interrupt();
+            processor.descartarSaida();
+            throw e;
+        } finally {
+            if (processor.cache != null) processor.cache.fechar();
+        }
+
+        download.join();
+        filtro.join();
+        if (!falhas.isEmpty()) {
+            // Consolidado incompleto: mantém o da última execução
+            processor.descartarSaida();
+            throw new IOException("Pipeline com falhas, consolidado anterior mantido: " + falhas);
+        }
+        processor.publicarSaida();
+
+        System.out.println("Valores problematicos (zero/negativo): " + processor.valoresProblematicos);
+        processor.imprimirResumo();
+        System.out.println(String.format("Pipeline concluído em %.1f s",
+            (System.nanoTime() - inicio) / 1_000_000_000.0));
+    }
+
+    /**
+     * Busca as operadoras dos RegANS do lote que ainda não foram vistos. Com
+     * consulta assíncrona ou cadastro, o lote inteiro vai de uma vez para o
+     * resolverTodos (join no cadastro, consultas concorrentes à API); senão,
+     * um RegANS por vez, como no pegarRegANS.
+     */
+    private static void resolver(List<DespesaProcessor.RegistroSinistro> lote,
+                                 Map<String, DespesaProcessor.DadosOperadora> operadoras, DespesaProcessor processor) {
+        Set<String> novos = new LinkedHashSet<>();
+        for (DespesaProcessor.RegistroSinistro reg : lote) {
+            if (!operadoras.containsKey(reg.regANS)) novos.add(reg.regANS);
+        }
+        if (novos.isEmpty()) return;
+
+        if (processor.resolverAntes()) {
+            Map<String, DespesaProcessor.DadosOperadora> resolvidos = processor.resolverTodos(novos);
+            for (String regANS : novos) {
+                DespesaProcessor.DadosOperadora dados = resolvidos.get(regANS);
+                operadoras.put(regANS, dados);
+                processor.processados++;
+                if (dados != null) processor.sucessos++;
+            }
+            return;
+        }
+
+        for (String regANS : novos) {
+            processor.processados++;
+            System.out.println("[" + processor.processados + "] Reg ANS: " + regANS);
+            DespesaProcessor.DadosOperadora dados = processor.buscarOperadora(regANS);
+            operadoras.put(regANS, dados);
+            if (dados != null) processor.sucessos++;
+        }
+    }
+
+    // Filtra um ZIP gravando eventos_sinistros.csv e publicando lotes para o enriquecimento
+    private static void filtrar(File zip, BufferedWriter eventos, DespesaProcessor processor,
+                                BlockingQueue<List<DespesaProcessor.RegistroSinistro>> lotes) throws IOException {
+        List<List<DespesaProcessor.RegistroSinistro>> atual = new ArrayList<>();
+        atual.add(new ArrayList<>(TAMANHO_LOTE));
+
+        DespesaProcessor.filtrarZip(zip, linha -> {
+            eventos.write(linha);
+            eventos.newLine();
+
+            DespesaProcessor.RegistroSinistro registro = processor.lerRegistro(linha);
+            if (registro == null) return;
+
+            List<DespesaProcessor.RegistroSinistro> lote = atual.get(0);
+            lote.add(registro);
+            if (lote.size() >= TAMANHO_LOTE) {
+                publicar(lotes, lote);
+                atual.set(0, new ArrayList<>(TAMANHO_LOTE));
+            }
+        });
+
+        if (!atual.get(0).isEmpty()) publicar(lotes, atual.get(0));
+        eventos.flush();
+    }
+
+    private static void publicar(BlockingQueue<List<DespesaProcessor.RegistroSinistro>> lotes,
+                                 List<DespesaProcessor.RegistroSinistro> lote) throws InterruptedIOException {
+        try {
+            lotes.put(lote);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("pipeline interrompido");
+        }
+    }
+
+    // Entrega o marcador de fim mesmo após erro/interrupção, para a próxima etapa terminar
+    private static <T> void entregarFim(BlockingQueue<T> fila, T fim) {
+        try {
+            fila.put(fim);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
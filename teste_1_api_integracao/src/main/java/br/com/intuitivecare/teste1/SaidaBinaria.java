@@ -0,0 +1,57 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Consolidado em formato binário (DataOutputStream), sem separadores para escapar.
+ *
+ * Layout:
+ *   "CONS" (4 bytes), versão (int)
+ *   por registro: byte 1, depois CNPJ, RazaoSocial, Trimestre, Ano, ValorDespesas (writeUTF)
+ *   fim: byte 0, total de registros (int)
+ */
+class SaidaBinaria extends SaidaConsolidado {
+
+    static final int VERSAO = 1;
+
+    private DataOutputStream out;
+
+    SaidaBinaria(Path destino) {
+        super(destino);
+    }
+
+    @Override
+    void iniciar(OutputStream saida) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(saida, TAMANHO_BUFFER));
+        out.writeBytes("CONS");
+        out.writeInt(VERSAO);
+    }
+
+    @Override
+    void escrever(String cnpj, String razaoSocial, String trimestre, String ano, String valorDespesas) throws IOException {
+        out.writeByte(1);
+        out.writeUTF(cnpj);
+        out.writeUTF(razaoSocial);
+        out.writeUTF(trimestre);
+        out.writeUTF(ano);
+        out.writeUTF(valorDespesas);
+    }
+
+    @Override
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    void fechar() throws IOException {
+        if (out == null) return;
+        out.writeByte(0);
+        out.writeInt(registros);
+        out.close();
+        out = null;
+    }
+}
@@ -0,0 +1,54 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import main.java.br.com.intuitivecare.comum.EscritorCSV;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Consolidado em CSV (mesmo layout do salvarCSV original), opcionalmente em gzip.
+ * Gravado em UTF-8 pelo EscritorCSV: razão social com ';' ou aspas sai entre aspas.
+ */
+class SaidaCSV extends SaidaConsolidado {
+
+    private static final String CABECALHO = "CNPJ;RazaoSocial;Trimestre;Ano;ValorDespesas";
+
+    private final boolean gzip;
+    private EscritorCSV writer;
+
+    SaidaCSV(Path destino, boolean gzip) {
+        super(destino);
+        this.gzip = gzip;
+    }
+
+    @Override
+    void iniciar(OutputStream saida) throws IOException {
+        OutputStream base = gzip ? new GZIPOutputStream(saida, 1 << 16) : saida;
+        // UTF-8 explícito: é o charset com que o Teste 2 lê o consolidado
+        writer = new EscritorCSV(new OutputStreamWriter(
+            new BufferedOutputStream(base, TAMANHO_BUFFER), StandardCharsets.UTF_8), ';');
+        writer.bruto(CABECALHO).fimLinha();
+    }
+
+    @Override
+    void escrever(String cnpj, String razaoSocial, String trimestre, String ano, String valorDespesas) throws IOException {
+        writer.campo(cnpj).campo(razaoSocial).campo(trimestre).campo(ano).campo(valorDespesas).fimLinha();
+    }
+
+    @Override
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    void fechar() throws IOException {
+        if (writer == null) return;
+        writer.close();
+        writer = null;
+    }
+}
@@ -0,0 +1,76 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import main.java.br.com.intuitivecare.comum.ArquivoColunar;
+import main.java.br.com.intuitivecare.comum.Coluna;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consolidado no formato colunar do comum.ArquivoColunar (.col), lido pelo
+ * Teste 2 com --colunar.
+ *
+ * As colunas são montadas em memória (arrays primitivos, texto repetido
+ * vira código de dicionário) e gravadas de uma vez no fechar(), porque cada
+ * coluna precisa ser contígua no arquivo. O flush periódico não tem o que
+ * gravar: o .tmp só aparece completo.
+ *
+ * No publicar() também é exportado o consolidado_despesas.csv, igual ao
+ * do formato csv, para quem ainda lê o CSV.
+ */
+class SaidaColunar extends SaidaConsolidado {
+
+    private final List<Coluna> colunas = Arrays.asList(
+        Coluna.cnpj("CNPJ"),
+        Coluna.texto("RazaoSocial"),
+        Coluna.texto("Trimestre"),
+        Coluna.texto("Ano"),
+        Coluna.centavos("ValorDespesas"));
+
+    private OutputStream out;
+
+    SaidaColunar(Path destino) {
+        super(destino);
+    }
+
+    @Override
+    void iniciar(OutputStream saida) {
+        out = saida;
+    }
+
+    @Override
+    void escrever(String cnpj, String razaoSocial, String trimestre, String ano, String valorDespesas) {
+        colunas.get(0).adicionar(cnpj);
+        colunas.get(1).adicionar(razaoSocial);
+        colunas.get(2).adicionar(trimestre);
+        colunas.get(3).adicionar(ano);
+        colunas.get(4).adicionar(valorDespesas);
+    }
+
+    @Override
+    void flush() {
+        // Colunas só vão para o arquivo no fechar()
+    }
+
+    @Override
+    void fechar() throws IOException {
+        if (out == null) return;
+        try (OutputStream arquivo = new BufferedOutputStream(out, TAMANHO_BUFFER)) {
+            ArquivoColunar.gravar(arquivo, colunas);
+        } finally {
+            out = null;
+        }
+    }
+
+    @Override
+    void publicar() throws IOException {
+        super.publicar();
+        Path csv = destino().resolveSibling("consolidado_despesas.csv");
+        ArquivoColunar.exportarCSV(colunas, csv.toString());
+        System.out.println("CSV de compatibilidade exportado: " + csv);
+    }
+}
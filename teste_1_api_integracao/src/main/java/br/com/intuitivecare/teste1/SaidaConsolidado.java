@@ -0,0 +1,165 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Destino dos registros consolidados (CNPJ, Razão Social, trimestre, ano, valor).
+ *
+ * Um único arquivo aberto por execução, com buffer grande e flush periódico.
+ * Tudo é gravado num arquivo temporário ao lado do final; só no publicar()
+ * ele substitui o arquivo final (rename atômico). Assim uma nova execução
+ * não acrescenta linhas duplicadas ao resultado anterior, e uma execução
+ * interrompida nunca deixa um consolidado pela metade.
+ *
+ * Formatos (--formato-saida): csv (padrão), gzip (CSV compactado), binario
+ * e colunar (comum.ArquivoColunar, com o CSV exportado ao lado).
+ * Com --particionar, um arquivo por Ano/Trimestre (SaidaParticionada).
+ *
+ * O Teste 2 lê o consolidado_despesas.csv (ou o .col, com --colunar). Os
+ * formatos que não geram esses arquivos apagam os de uma execução anterior
+ * antes de publicar: o Teste 2 falha dizendo que falta o arquivo, em vez de
+ * ler um consolidado velho sem avisar.
+ */
+abstract class SaidaConsolidado implements AutoCloseable {
+
+    static final String PASTA = "teste_1_api_integracao/output";
+    static final int TAMANHO_BUFFER = 1 << 20;
+    private static final long INTERVALO_FLUSH_NS = 2_000_000_000L;
+
+    private final Path destino;
+    private final Path temporario;
+    private long ultimoFlush = System.nanoTime();
+    private boolean publicado = false;
+    private String formato = "csv";
+    // Arquivos que o Teste 2 lê e este formato não atualiza (apagados no publicar)
+    private List<Path> obsoletos = Collections.emptyList();
+    int registros = 0;
+
+    SaidaConsolidado(Path destino) {
+        this.destino = destino;
+        this.temporario = destino.resolveSibling("." + destino.getFileName() + ".tmp");
+    }
+
+    // Abre a saída no formato pedido (csv, gzip, binario ou colunar), particionada ou não
+    static SaidaConsolidado abrir(String formato, boolean particionar) throws IOException {
+        if (!particionar) return abrir(formato, Paths.get(PASTA));
+        verificarFormato(formato);
+        if (!formato.equals("csv") && !formato.equals("colunar")) {
+            throw new IOException("--particionar só funciona com --formato-saida=csv ou colunar (os lidos pelo Teste 2)");
+        }
+        Path pasta = Paths.get(SaidaParticionada.PASTA_PARTICOES);
+        Files.createDirectories(pasta);
+        SaidaConsolidado saida = new SaidaParticionada(pasta, formato);
+        saida.iniciar(Files.newOutputStream(saida.temporario));
+        return saida;
+    }
+
+    // Um consolidado_despesas.* na pasta (também usado para cada partição)
+    static SaidaConsolidado abrir(String formato, Path pasta) throws IOException {
+        verificarFormato(formato);
+        Files.createDirectories(pasta);
+        SaidaConsolidado saida;
+        switch (formato) {
+            case "gzip":
+                saida = new SaidaCSV(pasta.resolve("consolidado_despesas.csv.gz"), true);
+                saida.obsoletos = Arrays.asList(pasta.resolve("consolidado_despesas.csv"), pasta.resolve("consolidado_despesas.col"));
+                break;
+            case "binario":
+                saida = new SaidaBinaria(pasta.resolve("consolidado_despesas.bin"));
+                saida.obsoletos = Arrays.asList(pasta.resolve("consolidado_despesas.csv"), pasta.resolve("consolidado_despesas.col"));
+                break;
+            case "colunar":
+                saida = new SaidaColunar(pasta.resolve("consolidado_despesas.col"));
+                break;
+            default:
+                saida = new SaidaCSV(pasta.resolve("consolidado_despesas.csv"), false);
+                saida.obsoletos = Collections.singletonList(pasta.resolve("consolidado_despesas.col"));
+                break;
+        }
+        saida.formato = formato;
+        saida.iniciar(Files.newOutputStream(saida.temporario));
+        return saida;
+    }
+
+    private static void verificarFormato(String formato) throws IOException {
+        switch (formato) {
+            case "csv":
+            case "gzip":
+            case "binario":
+            case "colunar":
+                return;
+            default:
+                throw new IOException("Formato de saída desconhecido: " + formato + " (use csv, gzip, binario ou colunar)");
+        }
+    }
+
+    // Grava um registro consolidado
+    void gravar(String cnpj, String razaoSocial, String trimestre, String ano, String valorDespesas) throws IOException {
+        escrever(cnpj, razaoSocial, trimestre, ano, valorDespesas);
+        registros++;
+
+        // Flush periódico: o .tmp acompanha o progresso sem um flush por linha
+        long agora = System.nanoTime();
+        if (agora - ultimoFlush >= INTERVALO_FLUSH_NS) {
+            flush();
+            ultimoFlush = agora;
+        }
+    }
+
+    // Fecha o temporário e substitui o arquivo final
+    void publicar() throws IOException {
+        fechar();
+        for (Path obsoleto : obsoletos) {
+            if (Files.deleteIfExists(obsoleto)) {
+                System.out.println("[AVISO] " + obsoleto + " de uma execucao anterior foi apagado: --formato-saida="
+                    + formato + " nao o atualiza (o Teste 2 le o .csv, ou o .col com --colunar)");
+            }
+        }
+        try {
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+        publicado = true;
+        System.out.println("Consolidado publicado: " + destino + " (" + registros + " registros)");
+    }
+
+    Path destino() {
+        return destino;
+    }
+
+    // Sem publicar(), descarta o temporário e mantém o arquivo final anterior
+    @Override
+    public void close() {
+        if (publicado) return;
+        try {
+            fechar();
+        } catch (IOException e) {
+            // O temporário será apagado de qualquer forma
+        }
+        try {
+            Files.deleteIfExists(temporario);
+        } catch (IOException e) {
+            System.out.println("[ERRO] ao apagar " + temporario + ": " + e.getMessage());
+        }
+    }
+
+    // Cada formato embrulha o stream do temporário e grava seu cabeçalho
+    abstract void iniciar(OutputStream saida) throws IOException;
+
+    abstract void escrever(String cnpj, String razaoSocial, String trimestre, String ano, String valorDespesas) throws IOException;
+
+    abstract void flush() throws IOException;
+
+    // Grava o rodapé (se houver) e fecha; chamado mais de uma vez não faz nada
+    abstract void fechar() throws IOException;
+}
@@ -0,0 +1,105 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import main.java.br.com.intuitivecare.comum.IndiceParticoes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consolidado particionado por Ano/Trimestre (--particionar).
+ *
+ * Cada trimestre vai para a sua pasta, dentro da pasta desta execução, no
+ * formato pedido (csv ou colunar, os que o Teste 2 lê):
+ *   output/particoes/consolidado_despesas-<execução>/ano=2024/trimestre=1T/consolidado_despesas.csv
+ * e o índice output/particoes/indice_consolidado_despesas.csv lista as
+ * partições (comum.IndiceParticoes). O Teste 2 com --ano/--trimestre lê só
+ * as partições do filtro.
+ *
+ * Cada partição é uma SaidaConsolidado comum (temporário + rename). No
+ * publicar(), as partições são publicadas primeiro e o índice por último;
+ * como a pasta da execução é nova, até o índice ser trocado quem lê continua
+ * vendo o índice anterior e os arquivos dele, intactos. As pastas das
+ * execuções anteriores são apagadas depois da troca.
+ */
+class SaidaParticionada extends SaidaConsolidado {
+
+    static final String PASTA_PARTICOES = PASTA + "/particoes";
+    static final String CONJUNTO = "consolidado_despesas";
+
+    private final Path pasta;
+    private final String formato;
+    private final IndiceParticoes indice;
+    // Chave Ano/Trimestre -> saída aberta da partição
+    private final Map<String, SaidaConsolidado> abertas = new TreeMap<>();
+    private final Map<String, String[]> valores = new TreeMap<>();
+    private OutputStream out;
+    private boolean publicando = false;
+    private boolean indicePublicado = false;
+
+    SaidaParticionada(Path pasta, String formato) {
+        super(IndiceParticoes.novo(pasta.toString(), CONJUNTO).arquivoIndice());
+        this.pasta = pasta;
+        this.formato = formato;
+        this.indice = IndiceParticoes.novo(pasta.toString(), CONJUNTO);
+    }
+
+    @Override
+    void iniciar(OutputStream saida) {
+        out = saida;
+    }
+
+    @Override
+    void escrever(String cnpj, String razaoSocial, String trimestre, String ano, String valorDespesas) throws IOException {
+        String chave = IndiceParticoes.chave(ano, trimestre);
+        SaidaConsolidado particao = abertas.get(chave);
+        if (particao == null) {
+            particao = SaidaConsolidado.abrir(formato, pasta.resolve(indice.novoDiretorio(ano, trimestre)));
+            abertas.put(chave, particao);
+            valores.put(chave, new String[] {ano, trimestre});
+        }
+        particao.gravar(cnpj, razaoSocial, trimestre, ano, valorDespesas);
+    }
+
+    @Override
+    void flush() throws IOException {
+        for (SaidaConsolidado particao : abertas.values()) particao.flush();
+    }
+
+    @Override
+    void publicar() throws IOException {
+        for (Map.Entry<String, SaidaConsolidado> e : abertas.entrySet()) {
+            SaidaConsolidado particao = e.getValue();
+            particao.publicar();
+            String[] anoTrimestre = valores.get(e.getKey());
+            String arquivo = pasta.relativize(particao.destino()).toString().replace('\\', '/');
+            indice.registrar(anoTrimestre[0], anoTrimestre[1], arquivo, particao.registros);
+        }
+        publicando = true;
+        super.publicar();
+        indicePublicado = true;
+        indice.limpar();
+    }
+
+    // Grava o índice no temporário (só no publicar, depois das partições)
+    @Override
+    void fechar() throws IOException {
+        if (out == null) return;
+        try {
+            if (publicando) indice.gravar(out);
+        } finally {
+            out.close();
+            out = null;
+        }
+    }
+
+    // Sem publicar(), descarta as partições desta execução (o índice anterior continua valendo)
+    @Override
+    public void close() {
+        for (SaidaConsolidado particao : abertas.values()) particao.close();
+        super.close();
+        if (!indicePublicado) indice.descartarExecucao();
+    }
+}
@@ -0,0 +1,143 @@
+package main.java.br.com.intuitivecare.teste1;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Confere que os três filtros de "Eventos/Sinistros" escolhem as mesmas linhas:
+ * o padrão (BufferedReader + LinhaCSV), o --filtro-bytes (FiltroBytes) e o
+ * --paralelo (FiltroParalelo).
+ *
+ * 1. Casos fixos com ';' dentro de aspas, aspas duplicadas, campos vazios no
+ *    fim e CRLF: a saída de cada caminho tem de ser exatamente as linhas
+ *    esperadas.
+ * 2. CSV sintético maior que uma faixa do FiltroParalelo, misturando esses
+ *    casos com linhas normais: as três saídas têm de ser idênticas.
+ *
+ * Termina com código 1 se algum caminho divergir.
+ *
+ * Uso: java ... VerificacaoFiltros [linhas=300000]
+ */
+public class VerificacaoFiltros {
+
+    private static final String HEADER =
+        "\"DATA\";\"REG_ANS\";\"CD_CONTA_CONTABIL\";\"DESCRICAO\";\"VL_SALDO_INICIAL\";\"VL_SALDO_FINAL\"";
+
+    // Linha e se ela deve sair no filtro (mais de 5 campos preenchidos, regra RFC 4180)
+    private static final Object[][] CASOS = {
+        {"\"2025-01-01\";\"1\";\"41\";\"Eventos/Sinistros; com ponto e virgula\";\"1,00\";\"2,00\"", true},
+        {"\"2025-01-01\";\"2\";\"Eventos/Sinistros; a; b; c\";\"\";\"\"", false},
+        {"\"a\";\"b\";\"c\";\"Eventos/Sinistros\";\"1\";\"\"", false},
+        {"\"\";\"\";\"\";\"Eventos/Sinistros\";\"\";\"x\"", true},
+        {"a;b;c;Eventos/Sinistros;1;2;;", true},
+        {"a;b;c;Eventos/Sinistros;1;;", false},
+        {"\"a \"\"x;y\"\" b\";\"2\";\"3\";\"Eventos/Sinistros\";\"5\";\"6\"", true},
+        {"\"a \"\"x;y\"\" b\";\"2\";\"3\";\"Eventos/Sinistros\";\"5;6\"", false},
+        {"\"2025-01-01\";\"3\";\"41\";\"Eventos/Sinistros\";\"1,00\";\"2,00\"\r", true},
+        {"\"2025-01-01\";\"4\";\"41\";\"Outras despesas; Eventos/Sinistros\";\"1,00\"", false},
+        {"\"2025-01-01\";\"5\";\"41\";\"Receitas\";\"1,00\";\"2,00\"", false},
+    };
+
+    public static void main(String[] args) throws Exception {
+        int linhas = args != null && args.length > 0 ? Integer.parseInt(args[0]) : 300_000;
+        boolean ok = conferirCasos() & conferirSintetico(linhas);
+        System.out.println(ok ? "Filtros equivalentes: SIM" : "Filtros equivalentes: NAO");
+        if (!ok) System.exit(1);
+    }
+
+    private static boolean conferirCasos() throws IOException {
+        List<String> entrada = new ArrayList<>();
+        StringBuilder esperado = new StringBuilder();
+        for (Object[] caso : CASOS) {
+            String linha = (String) caso[0];
+            entrada.add(linha);
+            if ((Boolean) caso[1]) esperado.append(linha.replace("\r", "")).append(System.lineSeparator());
+        }
+        File arquivo = gravar(entrada);
+        byte[] bytesEsperados = esperado.toString().getBytes();
+
+        boolean ok = true;
+        for (String caminho : Arrays.asList("texto", "bytes", "paralelo")) {
+            byte[] saida = filtrar(caminho, arquivo);
+            boolean igual = Arrays.equals(bytesEsperados, saida);
+            System.out.println("Casos fixos (" + caminho + "): " + (igual ? "OK" : "DIVERGENTE"));
+            ok &= igual;
+        }
+        return ok;
+    }
+
+    // Maior que TAMANHO_FAIXA do FiltroParalelo, para o arquivo ser dividido em várias faixas
+    private static boolean conferirSintetico(int linhas) throws IOException {
+        Random random = new Random(42);
+        List<String> entrada = new ArrayList<>(linhas);
+        for (int i = 0; i < linhas; i++) {
+            if (random.nextInt(10) == 0) {
+                entrada.add((String) CASOS[random.nextInt(CASOS.length)][0]);
+            } else {
+                entrada.add("\"2025-01-01\";\"" + (300000 + random.nextInt(1000)) + "\";\"" + (41 + random.nextInt(5000))
+                    + "\";\"" + (random.nextBoolean() ? "Eventos/Sinistros Conhecidos ou Avisados" : "Despesas Administrativas")
+                    + "\";\"" + random.nextInt(10_000_000) + "," + random.nextInt(100) + "\";\""
+                    + random.nextInt(10_000_000) + "," + random.nextInt(100) + "\"");
+            }
+        }
+        Collections.shuffle(entrada, random);
+        File arquivo = gravar(entrada);
+
+        byte[] texto = filtrar("texto", arquivo);
+        byte[] bytes = filtrar("bytes", arquivo);
+        byte[] paralelo = filtrar("paralelo", arquivo);
+        boolean ok = Arrays.equals(texto, bytes) && Arrays.equals(texto, paralelo);
+        System.out.println(String.format("CSV sintetico (%d linhas, %.1f MB): %s", linhas,
+            arquivo.length() / (1024.0 * 1024.0), ok ? "OK" : "DIVERGENTE"));
+        return ok;
+    }
+
+    private static byte[] filtrar(String caminho, File entrada) throws IOException {
+        File saida = File.createTempFile("verificacao_saida_" + caminho, ".csv");
+        saida.deleteOnExit();
+
+        if (caminho.equals("texto")) {
+            try (BufferedReader br = new BufferedReader(new FileReader(entrada));
+                 BufferedWriter writer = new BufferedWriter(new FileWriter(saida))) {
+                DespesaProcessor.filtrarEventos(br, writer);
+            }
+        } else if (caminho.equals("bytes")) {
+            try (FileChannel canal = FileChannel.open(entrada.toPath(), StandardOpenOption.READ);
+                 OutputStream out = new BufferedOutputStream(new FileOutputStream(saida), 1 << 20)) {
+                new FiltroBytes().filtrar(canal, Long.MAX_VALUE, true, out);
+            }
+        } else {
+            new FiltroParalelo(4).filtrar(Collections.singletonList(entrada), saida);
+        }
+        return Files.readAllBytes(saida.toPath());
+    }
+
+    private static File gravar(List<String> linhas) throws IOException {
+        File arquivo = File.createTempFile("verificacao_eventos", ".csv");
+        arquivo.deleteOnExit();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(arquivo), 1 << 20)) {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (String linha : linhas) {
+                writer.write(linha);
+                writer.write('\n');
+            }
+        }
+        return arquivo;
+    }
+}
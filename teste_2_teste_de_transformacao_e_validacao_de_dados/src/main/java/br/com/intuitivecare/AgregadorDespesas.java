@@ -1,7 +1,18 @@
 package main.java.br.com.intuitivecare;
 
+import main.java.br.com.intuitivecare.comum.ArquivoColunar;
+import main.java.br.com.intuitivecare.comum.Coluna;
+import main.java.br.com.intuitivecare.comum.Dinheiro;
+import main.java.br.com.intuitivecare.comum.EscritorCSV;
+import main.java.br.com.intuitivecare.comum.IndiceParticoes;
+import main.java.br.com.intuitivecare.comum.LeitorCSV;
+import main.java.br.com.intuitivecare.comum.LinhaCSV;
+import main.java.br.com.intuitivecare.comum.Opcoes;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Agrega dados de despesas por Razão Social e UF
@@ -15,60 +26,195 @@ import java.util.*;
  * Justificativa: Volume pequeno (737 operadoras únicas estimadas)
  * TreeMap já mantém ordenação e economiza passo separado de sort
  * 
+ * Estatísticas em uma passada (Welford): média e variância são atualizadas
+ * a cada despesa, sem guardar a lista de valores. Memória constante por
+ * grupo, qualquer que seja o número de linhas.
+ * 
+ * Agregação em paralelo: o arquivo é lido em blocos de linhas; cada bloco
+ * é agregado por uma thread num mapa parcial próprio, e os parciais são
+ * juntados na ordem dos blocos (fórmula de Chan para média/variância).
+ * --threads=N define o pool (padrão: núcleos da máquina)
+ * 
+ * Quantis e distintos por esboços (memória limitada por grupo, juntáveis
+ * como o resto): mediana/p90/p99 das despesas com QuantisKLL e CNPJs
+ * distintos com HyperLogLog. Juntando os esboços dos grupos de cada UF sai
+ * o resumo por UF, sem reler o arquivo.
+ * 
+ * Modo incremental (--incremental): os parciais de cada trimestre
+ * (Ano/Trimestre) ficam gravados no EstadoAgregado; só os trimestres que
+ * ainda não estão lá são agregados, e a saída sai da junção dos parciais.
+ * --reprocessar=2024/1T (lista separada por vírgula) refaz um trimestre.
+ * 
+ * Com --colunar, lê o consolidado_despesas_enriquecido.col (comum.ArquivoColunar)
+ * carregando só as colunas usadas, sem separar texto linha a linha.
+ * 
+ * Com --ano e/ou --trimestre (ou --particionado), lê só as partições
+ * Ano/Trimestre do filtro (índice em output/particoes); no incremental, as
+ * partições de trimestres já agregados são puladas sem abrir o arquivo.
+ * 
  * Saída: despesas_agregadas.csv ordenado por valor total (maior para menor)
+ * e despesas_por_uf.csv (resumo por UF, mesma ordenação)
  */
 public class AgregadorDespesas {
     
+    private static final int LINHAS_POR_BLOCO = 16_384;
+    
     /**
      * Classe interna para armazenar estatísticas por operadora/UF
      */
     static class EstatisticasOperadora implements Comparable<EstatisticasOperadora> {
         String razaoSocial;
         String uf;
-        double totalDespesas = 0;
+        long totalCentavos = 0; // Soma exata (centavos), sem erro de arredondamento
         int contagem = 0;
-        List<Double> despesas = new ArrayList<>(); // Para cálculo de desvio padrão
+        // Welford: média corrente e soma dos quadrados dos desvios (em reais)
+        double mediaCorrente = 0;
+        double m2 = 0;
         Set<String> trimestresUnicos = new HashSet<>(); // Para média por trimestre
+        QuantisKLL quantis = new QuantisKLL(); // Mediana, p90, p99 (em reais)
+        HyperLogLog cnpjs = new HyperLogLog(); // CNPJs distintos do grupo
         
         EstatisticasOperadora(String razaoSocial, String uf) {
             this.razaoSocial = razaoSocial;
             this.uf = uf;
         }
         
-        void adicionarDespesa(double valor, String trimestre) {
-            totalDespesas += valor;
-            despesas.add(valor);
+        void adicionarDespesa(long centavos, String trimestre, String cnpj) {
+            totalCentavos = Math.addExact(totalCentavos, centavos);
             contagem++;
+            
+            double valor = centavos / 100.0;
+            double delta = valor - mediaCorrente;
+            mediaCorrente += delta / contagem;
+            m2 += delta * (valor - mediaCorrente);
+            
             trimestresUnicos.add(trimestre);
+            quantis.adicionar(valor);
+            cnpjs.adicionar(cnpj);
+        }
+        
+        /**
+         * Junta as estatísticas de outro parcial do mesmo grupo (Chan et al.)
+         */
+        void juntar(EstatisticasOperadora outro) {
+            if (outro.contagem == 0) return;
+            
+            long n = (long) contagem + outro.contagem;
+            double delta = outro.mediaCorrente - mediaCorrente;
+            mediaCorrente += delta * outro.contagem / n;
+            m2 += outro.m2 + delta * delta * ((double) contagem * outro.contagem / n);
+            
+            totalCentavos = Math.addExact(totalCentavos, outro.totalCentavos);
+            contagem = Math.toIntExact(n);
+            trimestresUnicos.addAll(outro.trimestresUnicos);
+            quantis.juntar(outro.quantis);
+            cnpjs.juntar(outro.cnpjs);
+        }
+        
+        Dinheiro getTotal() {
+            return Dinheiro.deCentavos(totalCentavos);
         }
         
         double getMedia() {
-            return totalDespesas / contagem;
+            return totalCentavos / 100.0 / contagem;
         }
         
         double getMediaPorTrimestre() {
             if (trimestresUnicos.isEmpty()) return 0;
-            return totalDespesas / trimestresUnicos.size();
+            return totalCentavos / 100.0 / trimestresUnicos.size();
         }
         
+        // Desvio padrão populacional (divide por n), como antes
         double getDesviaoPadrao() {
-            if (despesas.size() < 2) return 0;
-            
-            double media = getMedia();
-            double soma = 0;
-            for (double valor : despesas) {
-                soma += Math.pow(valor - media, 2);
-            }
-            return Math.sqrt(soma / despesas.size());
+            if (contagem < 2) return 0;
+            return Math.sqrt(Math.max(0, m2) / contagem);
         }
         
         // Comparator para ordenar por valor total (maior para menor)
         @Override
         public int compareTo(EstatisticasOperadora outro) {
-            return Double.compare(outro.totalDespesas, this.totalDespesas);
+            return Long.compare(outro.totalCentavos, this.totalCentavos);
         }
     }
     
+    /**
+     * Resumo por UF, montado juntando as estatísticas dos grupos da UF
+     */
+    static class EstatisticasUF implements Comparable<EstatisticasUF> {
+        String uf;
+        long totalCentavos = 0;
+        int contagem = 0;
+        int grupos = 0;
+        Set<String> trimestresUnicos = new HashSet<>();
+        QuantisKLL quantis = new QuantisKLL();
+        HyperLogLog cnpjs = new HyperLogLog();
+        
+        EstatisticasUF(String uf) {
+            this.uf = uf;
+        }
+        
+        void adicionarGrupo(EstatisticasOperadora grupo) {
+            totalCentavos = Math.addExact(totalCentavos, grupo.totalCentavos);
+            contagem += grupo.contagem;
+            grupos++;
+            trimestresUnicos.addAll(grupo.trimestresUnicos);
+            quantis.juntar(grupo.quantis);
+            cnpjs.juntar(grupo.cnpjs);
+        }
+        
+        @Override
+        public int compareTo(EstatisticasUF outro) {
+            return Long.compare(outro.totalCentavos, this.totalCentavos);
+        }
+    }
+    
+    /**
+     * Resultado de um bloco (ou de todos, depois de juntados): mapa parcial e contadores
+     */
+    static class Parcial {
+        final Map<String, EstatisticasOperadora> agregacoes;
+        // Só no modo incremental: trimestre (Ano/Trimestre) -> grupos
+        final Map<String, Map<String, EstatisticasOperadora>> porTrimestre;
+        int linhasProcessadas = 0;
+        int linhasIgnoradas = 0;
+        int linhasJaAgregadas = 0;
+        
+        Parcial() {
+            this(new HashMap<>(), new HashMap<>());
+        }
+        
+        Parcial(Map<String, EstatisticasOperadora> agregacoes,
+                Map<String, Map<String, EstatisticasOperadora>> porTrimestre) {
+            this.agregacoes = agregacoes;
+            this.porTrimestre = porTrimestre;
+        }
+        
+        // Junta outro parcial neste (na ordem dos blocos)
+        void juntar(Parcial outro) {
+            juntarGrupos(agregacoes, outro.agregacoes);
+            for (Map.Entry<String, Map<String, EstatisticasOperadora>> e : outro.porTrimestre.entrySet()) {
+                juntarGrupos(porTrimestre.computeIfAbsent(e.getKey(), k -> new TreeMap<>()), e.getValue());
+            }
+            linhasProcessadas += outro.linhasProcessadas;
+            linhasIgnoradas += outro.linhasIgnoradas;
+            linhasJaAgregadas += outro.linhasJaAgregadas;
+        }
+    }
+    
+    /**
+     * Soma uma despesa no grupo RazaoSocial/UF (cria o grupo na primeira vez)
+     */
+    static void agregar(Map<String, EstatisticasOperadora> agregacoes, String cnpj, String razaoSocial,
+                        String uf, String trimestre, long valor) {
+        // Chave única por operadora/UF
+        String chave = razaoSocial + ";" + uf;
+        
+        EstatisticasOperadora stats = agregacoes.computeIfAbsent(chave,
+            k -> new EstatisticasOperadora(razaoSocial, uf));
+        
+        stats.adicionarDespesa(valor, trimestre, cnpj);
+    }
+    
     /**
      * Lê arquivo consolidado/enriquecido e agrega por RazaoSocial/UF
      */
@@ -77,108 +223,361 @@ public class AgregadorDespesas {
         String caminhoSaida = "teste_2_teste_de_transformacao_e_validacao_de_dados/output/despesas_agregadas.csv";
         new java.io.File(caminhoSaida).getParentFile().mkdirs();
         
-        // Mapa para agrupar estatísticas (chave: "RazaoSocial;UF")
-        Map<String, EstatisticasOperadora> agregacoes = new TreeMap<>();
+        int threads = Math.max(1, Opcoes.inteiro(args, "--threads", Runtime.getRuntime().availableProcessors()));
+        boolean incremental = Opcoes.tem(args, "--incremental");
+        boolean colunar = Opcoes.tem(args, "--colunar");
+        Set<String> reprocessar = Opcoes.lista(args, "--reprocessar");
         
-        int linhasProcessadas = 0;
-        int linhasIgnoradas = 0;
+        // Colunar: enriquecido.col gerado pelo EnriquecedorDados --colunar
+        if (colunar && caminhoEntrada.endsWith(".csv")) {
+            caminhoEntrada = caminhoEntrada.substring(0, caminhoEntrada.length() - ".csv".length()) + ".col";
+        }
         
-        try (BufferedReader leitor = new BufferedReader(new FileReader(caminhoEntrada))) {
-            String linha;
-            String[] cabecalho = null;
-            
-            while ((linha = leitor.readLine()) != null) {
-                String[] campos = linha.split(";");
-                
-                if (cabecalho == null) {
-                    cabecalho = campos;
-                    System.out.println("Cabeçalho: " + String.join(", ", campos));
-                    System.out.println("Total de colunas: " + campos.length);
-                    continue;
+        // Mapas finais (chave: "RazaoSocial;UF"); no incremental, também por trimestre
+        Parcial resultado = new Parcial(new TreeMap<>(), new TreeMap<>());
+        
+        if (!incremental) {
+            if (!ler(args, caminhoEntrada, colunar, threads, null, resultado)) return;
+            escreverAgregado(resultado.agregacoes, caminhoSaida, resultado.linhasProcessadas, resultado.linhasIgnoradas);
+            return;
+        }
+        
+        EstadoAgregado estado = EstadoAgregado.carregar(EstadoAgregado.CAMINHO);
+        Set<String> jaAgregados = new HashSet<>(estado.trimestres());
+        jaAgregados.removeAll(reprocessar);
+        System.out.println("Estado incremental: " + estado.trimestres().size() + " trimestres ja agregados "
+            + new TreeSet<>(estado.trimestres()));
+        
+        if (IndiceParticoes.particionado(args) || new File(caminhoEntrada).exists()) {
+            if (!ler(args, caminhoEntrada, colunar, threads, jaAgregados, resultado)) return;
+        } else {
+            System.out.println("Sem arquivo enriquecido; regenerando a saida so a partir do estado");
+        }
+        
+        for (Map.Entry<String, Map<String, EstatisticasOperadora>> e : resultado.porTrimestre.entrySet()) {
+            estado.substituir(e.getKey(), e.getValue());
+        }
+        System.out.println("Trimestres agregados nesta execucao: " + resultado.porTrimestre.keySet()
+            + " | linhas de trimestres ja agregados (puladas): " + resultado.linhasJaAgregadas);
+        
+        if (!resultado.porTrimestre.isEmpty()) {
+            try {
+                estado.gravar(EstadoAgregado.CAMINHO);
+                System.out.println("Estado gravado: " + EstadoAgregado.CAMINHO);
+            } catch (IOException e) {
+                System.out.println("[ERRO] ao gravar estado da agregacao: " + e.getMessage());
+            }
+        }
+        
+        escreverAgregado(estado.consolidar(), caminhoSaida, resultado.linhasProcessadas, resultado.linhasIgnoradas);
+    }
+    
+    // Agrega o enriquecido em "resultado", do .csv ou do .col (ou das partições do filtro)
+    private static boolean ler(String[] args, String caminhoEntrada, boolean colunar, int threads,
+                               Set<String> jaAgregados, Parcial resultado) {
+        if (IndiceParticoes.particionado(args)) return lerParticoes(args, colunar, threads, jaAgregados, resultado);
+        if (colunar) return lerColunar(caminhoEntrada, threads, jaAgregados, resultado);
+        return lerEmBlocos(caminhoEntrada, threads, jaAgregados, resultado);
+    }
+    
+    /**
+     * Modo particionado (--ano, --trimestre ou --particionado): agrega só as
+     * partições do enriquecido que passam no filtro, em ordem de Ano/Trimestre.
+     * No incremental, uma partição de trimestre já agregado nem é aberta: as
+     * linhas dela contam como puladas pelo número de registros do índice.
+     */
+    private static boolean lerParticoes(String[] args, boolean colunar, int threads, Set<String> jaAgregados,
+                                        Parcial resultado) {
+        IndiceParticoes indice;
+        try {
+            indice = IndiceParticoes.carregar(ValidadorDados.PARTICOES, "consolidado_despesas_enriquecido");
+        } catch (IOException e) {
+            System.out.println("[ERRO] ao ler indice de particoes: " + e.getMessage());
+            return false;
+        }
+        if (!indice.existe()) {
+            System.out.println("[ERRO] Indice de particoes nao encontrado: " + indice.arquivoIndice()
+                + " (rode o EnriquecedorDados com --particionado)");
+            return false;
+        }
+        List<IndiceParticoes.Particao> selecionadas = indice.selecionar(args);
+        System.out.println("Particoes selecionadas: " + IndiceParticoes.chaves(selecionadas)
+            + " (de " + indice.particoes().size() + ")");
+        
+        // Só as partições que serão lidas (as já agregadas no incremental nem são abertas)
+        List<IndiceParticoes.Particao> paraLer = new ArrayList<>();
+        for (IndiceParticoes.Particao particao : selecionadas) {
+            if (jaAgregados != null && jaAgregados.contains(EstadoAgregado.chaveTrimestre(particao.ano, particao.trimestre))) {
+                resultado.linhasJaAgregadas += particao.registros;
+            } else {
+                paraLer.add(particao);
+            }
+        }
+        
+        // Falta de arquivo em qualquer partição: não agrega nada (resultado parcial seria gravado como completo)
+        List<String> entradas = indice.caminhos(paraLer, colunar ? ".col" : ".csv");
+        if (entradas == null) return false;
+        
+        for (String caminhoEntrada : entradas) {
+            boolean lido = colunar
+                ? lerColunar(caminhoEntrada, threads, jaAgregados, resultado)
+                : lerEmBlocos(caminhoEntrada, threads, jaAgregados, resultado);
+            if (!lido) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Lê o arquivo em blocos de linhas, agrega cada bloco no pool e junta os
+     * parciais em "resultado" na ordem de leitura (resultado não depende das threads).
+     * jaAgregados != null: modo incremental (agrega por trimestre, pulando esses)
+     */
+    private static boolean lerEmBlocos(String caminhoEntrada, int threads, Set<String> jaAgregados, Parcial resultado) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Deque<Future<Parcial>> pendentes = new ArrayDeque<>();
+        
+        // Registros inteiros (RFC 4180); cada thread separa os campos do seu bloco
+        try (LeitorCSV leitor = LeitorCSV.abrir(caminhoEntrada, StandardCharsets.UTF_8)) {
+            LinhaCSV campos = new LinhaCSV();
+            String cabecalho = leitor.proximoRegistro();
+            if (cabecalho != null) {
+                campos.separar(cabecalho);
+                StringBuilder colunas = new StringBuilder();
+                for (int i = 0; i < campos.campos(); i++) {
+                    if (i > 0) colunas.append(", ");
+                    colunas.append(campos.campo(i));
                 }
-                
+                System.out.println("Cabeçalho: " + colunas);
+                System.out.println("Total de colunas: " + campos.campos());
+            }
+            System.out.println("Agregando com " + threads + " threads");
+            
+            List<String> bloco = new ArrayList<>(LINHAS_POR_BLOCO);
+            int lidas = 0;
+            String linha;
+            while ((linha = leitor.proximoRegistro()) != null) {
                 // Debug: mostra primeiras 3 linhas
-                if (linhasProcessadas < 3 || linhasIgnoradas < 3) {
-                    System.out.println("Linha " + (linhasProcessadas + linhasIgnoradas + 1) + ": " + 
-                        (campos.length >= 2 ? campos[1] : "???") + " | Colunas: " + campos.length);
+                if (lidas < 3) {
+                    campos.separar(linha);
+                    System.out.println("Linha " + (lidas + 1) + ": " + 
+                        (campos.campos() >= 2 ? campos.texto(1) : "???") + " | Colunas: " + campos.campos());
                 }
+                lidas++;
                 
-                // Esperado: CNPJ;RazaoSocial;Trimestre;Ano;ValorDespesas;RegistroANS;Modalidade;UF
-                if (campos.length < 8) {
-                    linhasIgnoradas++;
-                    continue;
-                }
-                
-                try {
-                    String razaoSocial = campos[1].trim();
-                    String trimestre = campos[2].trim();
-                    // O valor está na coluna 4 (ValorDespesas)
-                    // O valor pode ser negativo (variações de provisões são válidas)
-                    String valorStr = campos[4].replace(",", ".").trim();
-                    double valor = Double.parseDouble(valorStr);
+                bloco.add(linha);
+                if (bloco.size() == LINHAS_POR_BLOCO) {
+                    List<String> linhas = bloco;
+                    pendentes.add(pool.submit(() -> agregarBloco(linhas, jaAgregados)));
+                    bloco = new ArrayList<>(LINHAS_POR_BLOCO);
                     
-                    // Tenta pegar UF (coluna 7), se vazio ou [SEM_MATCH], usa "DESCONHECIDO"
-                    String ufTemp = "";
-                    if (campos.length > 7) {
-                        ufTemp = campos[7].trim();
-                    }
-                    if (ufTemp.isEmpty() || ufTemp.contains("[SEM_MATCH]")) {
-                        ufTemp = "DESCONHECIDO";
+                    // Limita os blocos em memória
+                    while (pendentes.size() > 2 * threads) {
+                        resultado.juntar(pendentes.poll().get());
                     }
-                    final String uf = ufTemp;
-                    
-                    // Ignora apenas registros completamente inválidos
-                    // Aceita valores negativos (são variações contábeis válidas)
-                    if (razaoSocial.isEmpty()) {
-                        linhasIgnoradas++;
-                        continue;
-                    }
-                    
-                    // Chave única por operadora/UF
-                    String chave = razaoSocial + ";" + uf;
-                    
-                    EstatisticasOperadora stats = agregacoes.computeIfAbsent(chave,
-                        k -> new EstatisticasOperadora(razaoSocial, uf));
-                    
-                    stats.adicionarDespesa(valor, trimestre);
-                    linhasProcessadas++;
-                    
-                } catch (Exception e) {
-                    linhasIgnoradas++;
-                    System.out.println("[ERRO na linha] " + e.getMessage());
                 }
             }
+            if (!bloco.isEmpty()) {
+                List<String> linhas = bloco;
+                pendentes.add(pool.submit(() -> agregarBloco(linhas, jaAgregados)));
+            }
+            while (!pendentes.isEmpty()) {
+                resultado.juntar(pendentes.poll().get());
+            }
+            return true;
             
-        } catch (IOException e) {
+        } catch (IOException | ExecutionException e) {
             System.out.println("[ERRO] ao ler arquivo: " + e.getMessage());
-            return;
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * Agrega um bloco de linhas do arquivo enriquecido num mapa parcial
+     */
+    static Parcial agregarBloco(List<String> linhas, Set<String> jaAgregados) {
+        Parcial parcial = new Parcial();
+        LinhaCSV campos = new LinhaCSV();
+        
+        for (String linha : linhas) {
+            campos.separar(linha);
+            
+            // Esperado: CNPJ;RazaoSocial;Trimestre;Ano;ValorDespesas;RegistroANS;Modalidade;UF
+            // Sem match no cadastro ou sem UF: colunas vazias no fim não contam
+            if (campos.camposPreenchidos() < 8) {
+                parcial.linhasIgnoradas++;
+                continue;
+            }
+            
+            // O valor está na coluna 4 (ValorDespesas); UF na coluna 7
+            agregarLinha(parcial, jaAgregados, campos.textoSemEspacos(0), campos.textoSemEspacos(1),
+                campos.textoSemEspacos(2), campos.texto(3), campos.centavos(4), campos.campo(4),
+                campos.textoSemEspacos(7));
+        }
+        
+        return parcial;
+    }
+    
+    /**
+     * Agrega uma linha já separada (CSV ou colunar) no parcial
+     * razaoSocial, trimestre e uf sem espaços nas pontas; textoValor só para a mensagem de erro
+     */
+    static void agregarLinha(Parcial parcial, Set<String> jaAgregados, String cnpj, String razaoSocial,
+                             String trimestre, String ano, long valor, CharSequence textoValor, String uf) {
+        try {
+            // O valor pode ser negativo (variações de provisões são válidas)
+            if (valor == Dinheiro.INVALIDO) {
+                throw new NumberFormatException("valor invalido: " + textoValor);
+            }
+            
+            // Se UF vazio ou [SEM_MATCH], usa "DESCONHECIDO"
+            if (uf.isEmpty() || uf.contains("[SEM_MATCH]")) {
+                uf = "DESCONHECIDO";
+            }
+            
+            // Ignora apenas registros completamente inválidos
+            // Aceita valores negativos (são variações contábeis válidas)
+            if (razaoSocial.isEmpty()) {
+                parcial.linhasIgnoradas++;
+                return;
+            }
+            
+            // Incremental: agrupa por trimestre e pula os que já estão no estado
+            Map<String, EstatisticasOperadora> destino = parcial.agregacoes;
+            if (jaAgregados != null) {
+                String chaveTrimestre = EstadoAgregado.chaveTrimestre(ano, trimestre);
+                if (jaAgregados.contains(chaveTrimestre)) {
+                    parcial.linhasJaAgregadas++;
+                    return;
+                }
+                destino = parcial.porTrimestre.computeIfAbsent(chaveTrimestre, k -> new HashMap<>());
+            }
+            
+            agregar(destino, cnpj, razaoSocial, uf, trimestre, valor);
+            parcial.linhasProcessadas++;
+            
+        } catch (Exception e) {
+            parcial.linhasIgnoradas++;
+            System.out.println("[ERRO na linha] " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Modo --colunar: carrega só as 6 colunas usadas do enriquecido.col e
+     * agrega em blocos de LINHAS_POR_BLOCO linhas no pool, juntando na ordem
+     * (mesmos blocos do lerEmBlocos, então o resultado é o mesmo do CSV).
+     * Textos de dicionário (razão social, trimestre, ano, UF) são preparados
+     * uma vez por entrada, não por linha.
+     */
+    private static boolean lerColunar(String caminhoEntrada, int threads, Set<String> jaAgregados, Parcial resultado) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        
+        try (ArquivoColunar arquivo = ArquivoColunar.abrir(caminhoEntrada)) {
+            Coluna cnpjs = arquivo.ler("CNPJ");
+            Coluna razoes = arquivo.ler("RazaoSocial");
+            Coluna trimestres = arquivo.ler("Trimestre");
+            Coluna anos = arquivo.ler("Ano");
+            Coluna valores = arquivo.ler("ValorDespesas");
+            Coluna ufs = arquivo.ler("UF");
+            System.out.println("Colunas lidas: CNPJ, RazaoSocial, Trimestre, Ano, ValorDespesas, UF ("
+                + arquivo.linhas() + " linhas)");
+            System.out.println("Agregando com " + threads + " threads");
+            
+            String[] razaoSemEspacos = semEspacos(razoes);
+            String[] trimestreSemEspacos = semEspacos(trimestres);
+            String[] ufSemEspacos = semEspacos(ufs);
+            
+            List<Future<Parcial>> pendentes = new ArrayList<>();
+            for (int inicio = 0; inicio < arquivo.linhas(); inicio += LINHAS_POR_BLOCO) {
+                int primeira = inicio;
+                int fim = Math.min(arquivo.linhas(), inicio + LINHAS_POR_BLOCO);
+                pendentes.add(pool.submit(() -> {
+                    Parcial parcial = new Parcial();
+                    for (int i = primeira; i < fim; i++) {
+                        // UF vazia = colunas vazias no fim da linha no CSV (menos de 8 campos)
+                        if (ufs.entrada(ufs.codigo(i)).isEmpty()) {
+                            parcial.linhasIgnoradas++;
+                            continue;
+                        }
+                        long valor = valores.valor(i);
+                        agregarLinha(parcial, jaAgregados, cnpjs.texto(i).trim(), razaoSemEspacos[razoes.codigo(i)],
+                            trimestreSemEspacos[trimestres.codigo(i)], anos.entrada(anos.codigo(i)), valor,
+                            valor == Dinheiro.INVALIDO ? valores.texto(i) : "", ufSemEspacos[ufs.codigo(i)]);
+                    }
+                    return parcial;
+                }));
+            }
+            for (Future<Parcial> parcial : pendentes) {
+                resultado.juntar(parcial.get());
+            }
+            return true;
+            
+        } catch (IOException | ExecutionException e) {
+            System.out.println("[ERRO] ao ler arquivo: " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    // Texto de cada entrada do dicionário sem espaços nas pontas
+    private static String[] semEspacos(Coluna coluna) {
+        String[] textos = new String[coluna.tamanhoDicionario()];
+        for (int i = 0; i < textos.length; i++) textos[i] = coluna.entrada(i).trim();
+        return textos;
+    }
+    
+    // Junta os grupos de um parcial nos grupos de destino
+    private static void juntarGrupos(Map<String, EstatisticasOperadora> destino,
+                                     Map<String, EstatisticasOperadora> origem) {
+        for (Map.Entry<String, EstatisticasOperadora> e : origem.entrySet()) {
+            EstatisticasOperadora atual = destino.get(e.getKey());
+            if (atual == null) {
+                destino.put(e.getKey(), e.getValue());
+            } else {
+                atual.juntar(e.getValue());
+            }
         }
+    }
+    
+    /**
+     * Ordena as estatísticas por total e grava despesas_agregadas.csv
+     * (usado também pelo PipelineFundido)
+     */
+    static void escreverAgregado(Map<String, EstatisticasOperadora> agregacoes, String caminhoSaida,
+                                 int linhasProcessadas, int linhasIgnoradas) {
+        new java.io.File(caminhoSaida).getParentFile().mkdirs();
         
         // Ordena por valor total (maior para menor)
         List<EstatisticasOperadora> ordenadas = new ArrayList<>(agregacoes.values());
         Collections.sort(ordenadas); // Usa compareTo implementado
         
-        // Escreve resultado agregado
-        try (BufferedWriter escritor = new BufferedWriter(new FileWriter(caminhoSaida))) {
+        // Escreve resultado agregado (números direto no buffer, sem String.format por linha)
+        try (EscritorCSV escritor = EscritorCSV.abrir(caminhoSaida, StandardCharsets.UTF_8)) {
             // Escreve cabeçalho
-            String cabecalhoSaida = "RazaoSocial;UF;TotalDespesas;Media;MediaPorTrimestre;DesviaoPadrao;Contagem;TrimestresUnicos";
-            escritor.write(cabecalhoSaida);
-            escritor.newLine();
+            String cabecalhoSaida = "RazaoSocial;UF;TotalDespesas;Media;MediaPorTrimestre;DesviaoPadrao;Contagem;TrimestresUnicos;Mediana;P90;P99";
+            escritor.bruto(cabecalhoSaida).fimLinha();
             
             // Escreve dados agregados (já ordenados)
             for (EstatisticasOperadora stats : ordenadas) {
-                String linha = String.format("%s;%s;%.2f;%.2f;%.2f;%.2f;%d;%d",
-                    stats.razaoSocial,
-                    stats.uf,
-                    stats.totalDespesas,
-                    stats.getMedia(),
-                    stats.getMediaPorTrimestre(),
-                    stats.getDesviaoPadrao(),
-                    stats.contagem,
-                    stats.trimestresUnicos.size()
-                );
-                escritor.write(linha);
-                escritor.newLine();
+                double[] q = stats.quantis.quantis(0.5, 0.9, 0.99);
+                escritor.campo(stats.razaoSocial)
+                    .campo(stats.uf)
+                    .centavos(stats.totalCentavos)
+                    .decimal(stats.getMedia())
+                    .decimal(stats.getMediaPorTrimestre())
+                    .decimal(stats.getDesviaoPadrao())
+                    .campo(stats.contagem)
+                    .campo(stats.trimestresUnicos.size())
+                    .decimal(q[0]).decimal(q[1]).decimal(q[2])
+                    .fimLinha();
             }
             
             System.out.println("\n=== AGREGACAO CONCLUIDA ===");
@@ -192,12 +591,49 @@ public class AgregadorDespesas {
             for (int i = 0; i < Math.min(5, ordenadas.size()); i++) {
                 EstatisticasOperadora stats = ordenadas.get(i);
                 System.out.printf("[%d] %s (%s): R$ %.2f%n",
-                    i + 1, stats.razaoSocial, stats.uf, stats.totalDespesas);
+                    i + 1, stats.razaoSocial, stats.uf, stats.getTotal().emBigDecimal());
             }
             
         } catch (IOException e) {
             System.out.println("[ERRO] ao escrever agregação: " + e.getMessage());
             e.printStackTrace();
         }
+        
+        escreverPorUF(agregacoes, new File(new File(caminhoSaida).getParentFile(), "despesas_por_uf.csv").getPath());
+    }
+    
+    /**
+     * Junta os grupos de cada UF e grava despesas_por_uf.csv
+     * (OperadorasDistintas = CNPJs distintos, estimado pelo HyperLogLog)
+     */
+    static void escreverPorUF(Map<String, EstatisticasOperadora> agregacoes, String caminhoSaida) {
+        Map<String, EstatisticasUF> porUF = new TreeMap<>();
+        for (EstatisticasOperadora grupo : agregacoes.values()) {
+            porUF.computeIfAbsent(grupo.uf, EstatisticasUF::new).adicionarGrupo(grupo);
+        }
+        
+        List<EstatisticasUF> ordenadas = new ArrayList<>(porUF.values());
+        Collections.sort(ordenadas);
+        
+        try (EscritorCSV escritor = EscritorCSV.abrir(caminhoSaida, StandardCharsets.UTF_8)) {
+            escritor.bruto("UF;TotalDespesas;Contagem;RazoesSociais;OperadorasDistintas;TrimestresUnicos;Mediana;P90;P99").fimLinha();
+            
+            for (EstatisticasUF stats : ordenadas) {
+                double[] q = stats.quantis.quantis(0.5, 0.9, 0.99);
+                escritor.campo(stats.uf)
+                    .centavos(stats.totalCentavos)
+                    .campo(stats.contagem)
+                    .campo(stats.grupos)
+                    .campo(stats.cnpjs.estimar())
+                    .campo(stats.trimestresUnicos.size())
+                    .decimal(q[0]).decimal(q[1]).decimal(q[2])
+                    .fimLinha();
+            }
+            
+            System.out.println("Resumo por UF: " + caminhoSaida + " (" + ordenadas.size() + " UFs)");
+            
+        } catch (IOException e) {
+            System.out.println("[ERRO] ao escrever resumo por UF: " + e.getMessage());
+        }
     }
 }
@@ -0,0 +1,198 @@
+package main.java.br.com.intuitivecare;
+
+import main.java.br.com.intuitivecare.comum.CNPJ;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmark da validação de CNPJ: implementação original (replaceAll +
+ * regex + Integer.parseInt por dígito) contra o comum.CNPJ, um por vez e
+ * em lote (coluna de Strings e buffer de bytes).
+ *
+ * Gera uma coluna de CNPJs sintéticos (válidos, formatados, com DV errado,
+ * repetidos, vazios), roda cada versão alternadamente (aquecimento +
+ * medições), confere que todas dão o mesmo resultado e mostra os bytes
+ * alocados por CNPJ (quando a JVM informa).
+ *
+ * Uso: java ... BenchmarkCNPJ [cnpjs=1000000] [rodadas=5]
+ */
+public class BenchmarkCNPJ {
+
+    private static final int AQUECIMENTO = 3;
+
+    public static void main(String[] args) {
+        int quantidade = args != null && args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rodadas = args != null && args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        String[] coluna = gerarCNPJs(quantidade);
+
+        // Mesma coluna em um único buffer de bytes, com início/fim de cada CNPJ
+        byte[] dados = String.join("", coluna).getBytes(StandardCharsets.US_ASCII);
+        int[] inicios = new int[quantidade];
+        int[] fins = new int[quantidade];
+        int pos = 0;
+        for (int i = 0; i < quantidade; i++) {
+            inicios[i] = pos;
+            pos += coluna[i].length();
+            fins[i] = pos;
+        }
+
+        boolean[] resultadoOriginal = new boolean[quantidade];
+        boolean[] resultadoUm = new boolean[quantidade];
+        boolean[] resultadoLote = new boolean[quantidade];
+        boolean[] resultadoBytes = new boolean[quantidade];
+
+        long[][] tempos = new long[4][rodadas];
+        long[] alocados = new long[4];
+
+        for (int r = -AQUECIMENTO; r < rodadas; r++) {
+            long[] antes = {bytesAlocados(), 0};
+            long inicio = System.nanoTime();
+            for (int i = 0; i < quantidade; i++) resultadoOriginal[i] = validarOriginal(coluna[i]);
+            medir(tempos, alocados, 0, r, inicio, antes);
+
+            inicio = System.nanoTime();
+            for (int i = 0; i < quantidade; i++) resultadoUm[i] = CNPJ.valido(coluna[i]);
+            medir(tempos, alocados, 1, r, inicio, antes);
+
+            inicio = System.nanoTime();
+            CNPJ.validar(coluna, quantidade, resultadoLote);
+            medir(tempos, alocados, 2, r, inicio, antes);
+
+            inicio = System.nanoTime();
+            CNPJ.validar(dados, inicios, fins, quantidade, resultadoBytes);
+            medir(tempos, alocados, 3, r, inicio, antes);
+        }
+
+        int validos = 0;
+        for (boolean v : resultadoOriginal) if (v) validos++;
+        boolean iguais = Arrays.equals(resultadoOriginal, resultadoUm)
+            && Arrays.equals(resultadoOriginal, resultadoLote)
+            && Arrays.equals(resultadoOriginal, resultadoBytes);
+
+        System.out.println("CNPJs: " + quantidade + " (" + validos + " validos)");
+        System.out.println("Resultados idênticos: " + (iguais ? "SIM" : "NAO"));
+        String[] nomes = {"replaceAll + regex", "CNPJ.valido", "CNPJ.validar (lote)", "CNPJ.validar (bytes)"};
+        for (int i = 0; i < nomes.length; i++) {
+            imprimir(nomes[i], tempos[i], quantidade, alocados[i] < 0 ? -1 : alocados[i] / ((long) rodadas * quantidade));
+        }
+        System.out.println(String.format("Ganho (mediana, um por vez): %.1fx", (double) mediana(tempos[0]) / mediana(tempos[1])));
+        System.out.println(String.format("Ganho (mediana, lote de bytes): %.1fx", (double) mediana(tempos[0]) / mediana(tempos[3])));
+    }
+
+    /**
+     * Implementação original do ValidadorDados (replaceAll, matches e
+     * parseInt por dígito), com as somas sobre os 12/13 primeiros dígitos
+     * para dar o mesmo resultado do CNPJ.valido.
+     */
+    static boolean validarOriginal(String cnpj) {
+        cnpj = cnpj.replaceAll("[^0-9]", "");
+        if (cnpj.length() != 14) return false;
+        if (cnpj.matches("(\\d)\\1{13}")) return false;
+
+        try {
+            int soma = 0;
+            int multiplicador = 5;
+            for (int i = 0; i < 12; i++) {
+                soma += (Integer.parseInt(String.valueOf(cnpj.charAt(i))) * multiplicador);
+                multiplicador = (multiplicador == 2) ? 9 : multiplicador - 1;
+            }
+            int dv1 = 11 - (soma % 11);
+            dv1 = (dv1 >= 10) ? 0 : dv1;
+
+            soma = 0;
+            multiplicador = 6;
+            for (int i = 0; i < 13; i++) {
+                soma += (Integer.parseInt(String.valueOf(cnpj.charAt(i))) * multiplicador);
+                multiplicador = (multiplicador == 2) ? 9 : multiplicador - 1;
+            }
+            int dv2 = 11 - (soma % 11);
+            dv2 = (dv2 >= 10) ? 0 : dv2;
+
+            return (dv1 == Integer.parseInt(String.valueOf(cnpj.charAt(12)))) &&
+                   (dv2 == Integer.parseInt(String.valueOf(cnpj.charAt(13))));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // Registra tempo e alocação da versão "indice" e prepara a medição seguinte
+    private static void medir(long[][] tempos, long[] alocados, int indice, int rodada, long inicio, long[] antes) {
+        long fim = System.nanoTime();
+        long bytes = bytesAlocados();
+        if (rodada >= 0) {
+            tempos[indice][rodada] = fim - inicio;
+            alocados[indice] = (bytes < 0 || alocados[indice] < 0) ? -1 : alocados[indice] + (bytes - antes[0]);
+        }
+        antes[0] = bytesAlocados();
+    }
+
+    // Bytes alocados pela thread atual (-1 se a JVM não informar)
+    private static long bytesAlocados() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    // Mistura de CNPJs válidos (com e sem máscara), DV errado, repetidos e vazios
+    private static String[] gerarCNPJs(int quantidade) {
+        Random random = new Random(42);
+        String[] coluna = new String[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            int tipo = random.nextInt(10);
+            if (tipo == 0) {
+                coluna[i] = String.valueOf(random.nextInt(10)).repeat(14);
+            } else if (tipo == 1) {
+                coluna[i] = random.nextBoolean() ? "" : "N/A";
+            } else {
+                String cnpj = gerarValido(random);
+                if (tipo == 2) {
+                    // Último dígito trocado
+                    cnpj = cnpj.substring(0, 13) + (char) ('0' + ((cnpj.charAt(13) - '0' + 1) % 10));
+                }
+                if (tipo >= 7) {
+                    cnpj = cnpj.substring(0, 2) + "." + cnpj.substring(2, 5) + "." + cnpj.substring(5, 8)
+                        + "/" + cnpj.substring(8, 12) + "-" + cnpj.substring(12);
+                }
+                coluna[i] = cnpj;
+            }
+        }
+        return coluna;
+    }
+
+    private static String gerarValido(Random random) {
+        int[] d = new int[14];
+        for (int i = 0; i < 8; i++) d[i] = random.nextInt(10);
+        d[11] = 1;
+        int[] pesos = {6, 5, 4, 3, 2, 9, 8, 7, 6, 5, 4, 3, 2};
+        int soma = 0;
+        for (int i = 0; i < 12; i++) soma += d[i] * pesos[i + 1];
+        d[12] = soma % 11 < 2 ? 0 : 11 - soma % 11;
+        soma = 0;
+        for (int i = 0; i < 13; i++) soma += d[i] * pesos[i];
+        d[13] = soma % 11 < 2 ? 0 : 11 - soma % 11;
+
+        StringBuilder sb = new StringBuilder(14);
+        for (int digito : d) sb.append(digito);
+        return sb.toString();
+    }
+
+    private static void imprimir(String nome, long[] tempos, int quantidade, long bytesPorCNPJ) {
+        long med = mediana(tempos);
+        System.out.println(String.format("  %-22s mediana %6d ms | %6.1f ns/CNPJ | %s",
+            nome, med / 1_000_000, (double) med / quantidade,
+            bytesPorCNPJ < 0 ? "alocação n/d" : bytesPorCNPJ + " bytes/CNPJ"));
+    }
+
+    private static long mediana(long[] tempos) {
+        long[] ordenados = tempos.clone();
+        Arrays.sort(ordenados);
+        return ordenados[ordenados.length / 2];
+    }
+}
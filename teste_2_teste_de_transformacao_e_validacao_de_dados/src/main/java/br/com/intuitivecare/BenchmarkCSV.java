@@ -0,0 +1,221 @@
+package main.java.br.com.intuitivecare;
+
+import main.java.br.com.intuitivecare.comum.Dinheiro;
+import main.java.br.com.intuitivecare.comum.EscritorCSV;
+import main.java.br.com.intuitivecare.comum.LeitorCSV;
+import main.java.br.com.intuitivecare.comum.LinhaCSV;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmark do CSV compartilhado (comum.LeitorCSV/LinhaCSV/EscritorCSV)
+ * contra o que os passos usavam antes:
+ * - leitura: readLine + split(";") + trim/replace das aspas, contra
+ *   LeitorCSV.proximo com as vistas da LinhaCSV
+ * - escrita: String.format("%.2f") por número, contra EscritorCSV.decimal
+ *
+ * Gera linhas no formato do arquivo enriquecido (parte com aspas, como nos
+ * arquivos da ANS, sem ';' dentro delas para o split dar o mesmo resultado),
+ * roda cada versão alternadamente (aquecimento + medições), confere que as
+ * duas dão o mesmo resultado e mostra os bytes alocados por linha.
+ *
+ * Uso: java ... BenchmarkCSV [linhas=500000] [rodadas=5]
+ */
+public class BenchmarkCSV {
+
+    private static final int AQUECIMENTO = 3;
+
+    public static void main(String[] args) throws IOException {
+        int quantidade = args != null && args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int rodadas = args != null && args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        String texto = gerarArquivo(quantidade);
+        double[] valores = gerarValores(quantidade);
+
+        long[][] tempos = new long[4][rodadas];
+        long[] alocados = new long[4];
+        long[] somas = new long[2];
+        String[] saidas = new String[2];
+
+        for (int r = -AQUECIMENTO; r < rodadas; r++) {
+            long[] antes = {bytesAlocados()};
+            long inicio = System.nanoTime();
+            somas[0] = lerComSplit(texto);
+            medir(tempos, alocados, 0, r, inicio, antes);
+
+            inicio = System.nanoTime();
+            somas[1] = lerComLinhaCSV(texto);
+            medir(tempos, alocados, 1, r, inicio, antes);
+
+            inicio = System.nanoTime();
+            saidas[0] = formatarComFormat(valores);
+            medir(tempos, alocados, 2, r, inicio, antes);
+
+            inicio = System.nanoTime();
+            saidas[1] = formatarComEscritor(valores);
+            medir(tempos, alocados, 3, r, inicio, antes);
+        }
+
+        double megabytes = texto.length() / (1024.0 * 1024.0);
+        System.out.println(String.format("Linhas: %d (%.1f MB de texto)", quantidade, megabytes));
+        System.out.println("Leitura com resultado identico: " + (somas[0] == somas[1] ? "SIM" : "NAO"));
+        System.out.println("Escrita com resultado identico: " + (saidas[0].equals(saidas[1]) ? "SIM" : "NAO"));
+
+        String[] nomes = {"split + replace", "LeitorCSV + LinhaCSV", "String.format", "EscritorCSV"};
+        for (int i = 0; i < nomes.length; i++) {
+            imprimir(nomes[i], tempos[i], quantidade, i < 2 ? megabytes : -1,
+                alocados[i] < 0 ? -1 : alocados[i] / ((long) rodadas * quantidade));
+        }
+        System.out.println(String.format("Ganho leitura (mediana): %.1fx", (double) mediana(tempos[0]) / mediana(tempos[1])));
+        System.out.println(String.format("Ganho escrita (mediana): %.1fx", (double) mediana(tempos[2]) / mediana(tempos[3])));
+    }
+
+    /**
+     * Como os passos liam antes: readLine, split e trim/replace por campo.
+     * Devolve um total de conferência (tamanho dos campos + centavos).
+     */
+    static long lerComSplit(String texto) throws IOException {
+        long soma = 0;
+        try (BufferedReader leitor = new BufferedReader(new StringReader(texto), 1 << 16)) {
+            leitor.readLine(); // Pula header
+            String linha;
+            while ((linha = leitor.readLine()) != null) {
+                String[] campos = linha.split(";");
+                if (campos.length < 8) continue;
+                for (int i = 0; i < campos.length; i++) {
+                    soma += campos[i].trim().replace("\"", "").length();
+                }
+                soma += Dinheiro.centavos(campos[4].trim().replace("\"", ""));
+            }
+        }
+        return soma;
+    }
+
+    // Mesmo total pelo LeitorCSV, sem criar Strings por campo
+    static long lerComLinhaCSV(String texto) throws IOException {
+        long soma = 0;
+        try (LeitorCSV leitor = new LeitorCSV(new StringReader(texto), ';')) {
+            LinhaCSV campos = new LinhaCSV();
+            leitor.proximo(campos); // Pula header
+            while (leitor.proximo(campos)) {
+                if (campos.camposPreenchidos() < 8) continue;
+                for (int i = 0; i < campos.camposPreenchidos(); i++) {
+                    soma += tamanhoSemEspacos(campos.campo(i));
+                }
+                soma += campos.centavos(4);
+            }
+        }
+        return soma;
+    }
+
+    // Três números por linha, como as colunas de média/desvio do despesas_agregadas.csv
+    static String formatarComFormat(double[] valores) throws IOException {
+        StringWriter texto = new StringWriter(valores.length * 32);
+        try (BufferedWriter escritor = new BufferedWriter(texto, 1 << 16)) {
+            for (double valor : valores) {
+                escritor.write(String.format("%.2f;%.2f;%.2f", valor, valor / 3, Math.sqrt(Math.abs(valor))));
+                escritor.write(System.lineSeparator());
+            }
+        }
+        return texto.toString();
+    }
+
+    static String formatarComEscritor(double[] valores) throws IOException {
+        StringWriter texto = new StringWriter(valores.length * 32);
+        try (EscritorCSV escritor = new EscritorCSV(texto, ';')) {
+            for (double valor : valores) {
+                escritor.decimal(valor).decimal(valor / 3).decimal(Math.sqrt(Math.abs(valor))).fimLinha();
+            }
+        }
+        return texto.toString();
+    }
+
+    private static int tamanhoSemEspacos(CharSequence campo) {
+        int inicio = 0;
+        int fim = campo.length();
+        while (inicio < fim && campo.charAt(inicio) <= ' ') inicio++;
+        while (fim > inicio && campo.charAt(fim - 1) <= ' ') fim--;
+        return fim - inicio;
+    }
+
+    // Registra tempo e alocação da versão "indice" e prepara a medição seguinte
+    private static void medir(long[][] tempos, long[] alocados, int indice, int rodada, long inicio, long[] antes) {
+        long fim = System.nanoTime();
+        long bytes = bytesAlocados();
+        if (rodada >= 0) {
+            tempos[indice][rodada] = fim - inicio;
+            alocados[indice] = (bytes < 0 || alocados[indice] < 0) ? -1 : alocados[indice] + (bytes - antes[0]);
+        }
+        antes[0] = bytesAlocados();
+    }
+
+    // Bytes alocados pela thread atual (-1 se a JVM não informar)
+    private static long bytesAlocados() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    // Linhas do arquivo enriquecido; metade com os campos entre aspas, algumas sem match
+    private static String gerarArquivo(int quantidade) {
+        Random random = new Random(42);
+        StringBuilder texto = new StringBuilder(quantidade * 96);
+        texto.append("CNPJ;RazaoSocial;Trimestre;Ano;ValorDespesas;RegistroANS;Modalidade;UF\n");
+        String[] ufs = {"SP", "RJ", "MG", "RS", "BA", "PR"};
+        for (int i = 0; i < quantidade; i++) {
+            boolean aspas = random.nextBoolean();
+            String a = aspas ? "\"" : "";
+            int operadora = random.nextInt(2000);
+            texto.append(a).append(10_000_000_000_000L + operadora * 7919L).append(a).append(';')
+                .append(a).append("OPERADORA DE SAUDE ").append(operadora).append(" LTDA").append(a).append(';')
+                .append(a).append(1 + random.nextInt(4)).append('T').append(a).append(';')
+                .append(a).append(2023 + random.nextInt(2)).append(a).append(';')
+                .append(a).append(random.nextInt(10_000_000)).append(',').append(random.nextInt(90) + 10).append(a);
+            if (random.nextInt(20) == 0) {
+                texto.append(";[SEM_MATCH];;");
+            } else {
+                texto.append(';').append(300_000 + operadora).append(";Cooperativa Medica;")
+                    .append(ufs[random.nextInt(ufs.length)]);
+            }
+            texto.append('\n');
+        }
+        return texto.toString();
+    }
+
+    // Médias e desvios típicos, com alguns valores negativos e empates em meio centavo
+    private static double[] gerarValores(int quantidade) {
+        Random random = new Random(7);
+        double[] valores = new double[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            int tipo = random.nextInt(10);
+            if (tipo == 0) {
+                valores[i] = random.nextInt(1_000_000) / 1000.0 + 0.005;
+            } else if (tipo == 1) {
+                valores[i] = -random.nextDouble() * 100_000;
+            } else {
+                valores[i] = random.nextDouble() * 50_000_000;
+            }
+        }
+        return valores;
+    }
+
+    private static void imprimir(String nome, long[] tempos, int quantidade, double megabytes, long bytesPorLinha) {
+        long med = mediana(tempos);
+        String vazao = megabytes < 0 ? "" : String.format(" | %7.1f MB/s", megabytes / (med / 1_000_000_000.0));
+        System.out.println(String.format("  %-22s mediana %6d ms | %6.1f ns/linha%s | %s",
+            nome, med / 1_000_000, (double) med / quantidade, vazao,
+            bytesPorLinha < 0 ? "alocação n/d" : bytesPorLinha + " bytes/linha"));
+    }
+
+    private static long mediana(long[] tempos) {
+        long[] ordenados = tempos.clone();
+        Arrays.sort(ordenados);
+        return ordenados[ordenados.length / 2];
+    }
+}
@@ -1,11 +1,20 @@
 package main.java.br.com.intuitivecare;
 
+import main.java.br.com.intuitivecare.comum.ArquivoColunar;
+import main.java.br.com.intuitivecare.comum.Coluna;
+import main.java.br.com.intuitivecare.comum.EscritorCSV;
+import main.java.br.com.intuitivecare.comum.IndiceParticoes;
+import main.java.br.com.intuitivecare.comum.LeitorCSV;
+import main.java.br.com.intuitivecare.comum.LinhaCSV;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * Enriquece dados consolidados com informações cadastrais das operadoras
- * - Faz join entre consolidado_despesas.csv e operadoras.csv usando CNPJ
+ * - Faz join entre consolidado_despesas_validado.csv e operadoras.csv usando CNPJ
  * - Adiciona colunas: RegistroANS, Modalidade, UF
  * - Trata mismatches (CNPJs não encontrados, duplicados)
  * 
@@ -16,9 +25,19 @@ import java.util.*;
  * Tratamento de mismatches:
  * - CNPJ não encontrado no cadastro: marca como [SEM_MATCH]
  * - CNPJ duplicado no cadastro: usa primeiro registro encontrado, marca [DUPLICADO_CADASTRO]
+ * 
+ * Com --colunar, lê e grava no formato colunar (comum.ArquivoColunar): as
+ * colunas do consolidado passam adiante sem reescrever texto, e o cadastro é
+ * consultado uma vez por CNPJ distinto
+ * 
+ * Com --ano e/ou --trimestre (ou --particionado), enriquece só as partições
+ * Ano/Trimestre do filtro
  */
 public class EnriquecedorDados {
     
+    static final String CAMINHO_OPERADORAS = "teste_2_teste_de_transformacao_e_validacao_de_dados/data/raw/operadoras.csv";
+    static final String CAMINHO_INDICE = "teste_2_teste_de_transformacao_e_validacao_de_dados/data/indice_cnpj.bin";
+    
     /**
      * Classe interna para armazenar dados das operadoras
      */
@@ -34,27 +53,32 @@ public class EnriquecedorDados {
         }
     }
     
+    // Marca, no cache por CNPJ do modo colunar, o CNPJ que não está no cadastro
+    private static final Operadora SEM_CADASTRO = new Operadora(null, null, null);
+    
+    // Recebe cada operadora lida do operadoras.csv (campos já sem aspas)
+    interface LeitorOperadora {
+        void aceitar(String cnpj, String registroANS, String modalidade, String uf);
+    }
+    
     /**
-     * Carrega operadoras.csv em memória (HashMap para lookup rápido)
+     * Lê operadoras.csv linha a linha, entregando cada operadora ao leitor
      * Detecta automaticamente as colunas necessárias (CNPJ, UF, RegistroANS, Modalidade)
+     * O cadastro da ANS vem em UTF-8 ou ISO-8859-1 (LeitorCSV.detectarCharset)
      */
-    private static Map<String, Operadora> carregarOperadoras(String caminhoOperadoras) {
-        Map<String, Operadora> operadoras = new HashMap<>();
-        Set<String> cpnjsDuplicados = new HashSet<>();
-        
-        try (BufferedReader leitor = new BufferedReader(new FileReader(caminhoOperadoras))) {
-            String linha;
+    static void lerOperadoras(String caminhoOperadoras, LeitorOperadora destino) throws IOException {
+        try (LeitorCSV leitor = LeitorCSV.abrir(caminhoOperadoras, LeitorCSV.detectarCharset(caminhoOperadoras))) {
+            LinhaCSV campos = new LinhaCSV();
             int cnpjIdx = -1, ufIdx = -1, registroIdx = -1, modalidadeIdx = -1;
             int linhaNum = 0;
             
-            while ((linha = leitor.readLine()) != null) {
+            while (leitor.proximo(campos)) {
                 linhaNum++;
-                String[] campos = linha.split(";");
                 
                 if (linhaNum == 1) {
                     // Cabeçalho: busca índices das colunas necessárias
-                    for (int i = 0; i < campos.length; i++) {
-                        String coluna = campos[i].trim().toUpperCase();
+                    for (int i = 0; i < campos.campos(); i++) {
+                        String coluna = campos.textoSemEspacos(i).toUpperCase();
                         if (coluna.contains("CNPJ")) cnpjIdx = i;
                         if (coluna.contains("UF") || coluna.contains("SIGLA")) ufIdx = i;
                         if (coluna.contains("REGISTRO") || coluna.contains("REG")) registroIdx = i;
@@ -66,21 +90,35 @@ public class EnriquecedorDados {
                     continue;
                 }
                 
-                if (cnpjIdx < 0 || campos.length <= cnpjIdx) continue;
+                if (cnpjIdx < 0 || campos.camposPreenchidos() <= cnpjIdx) continue;
                 
-                // Remove aspas do CNPJ e outros campos
-                String cnpj = campos[cnpjIdx].trim().replaceAll("\"", "");
-                String uf = (ufIdx >= 0 && ufIdx < campos.length) ? campos[ufIdx].trim().replaceAll("\"", "") : "";
-                String registroANS = (registroIdx >= 0 && registroIdx < campos.length) ? campos[registroIdx].trim().replaceAll("\"", "") : "";
-                String modalidade = (modalidadeIdx >= 0 && modalidadeIdx < campos.length) ? campos[modalidadeIdx].trim().replaceAll("\"", "") : "";
+                // Aspas já removidas pelo LinhaCSV
+                String cnpj = campos.textoSemEspacos(cnpjIdx);
+                String uf = (ufIdx >= 0 && ufIdx < campos.campos()) ? campos.textoSemEspacos(ufIdx) : "";
+                String registroANS = (registroIdx >= 0 && registroIdx < campos.campos()) ? campos.textoSemEspacos(registroIdx) : "";
+                String modalidade = (modalidadeIdx >= 0 && modalidadeIdx < campos.campos()) ? campos.textoSemEspacos(modalidadeIdx) : "";
                 
+                destino.aceitar(cnpj, registroANS, modalidade, uf);
+            }
+        }
+    }
+    
+    /**
+     * Carrega operadoras.csv em memória (HashMap para lookup rápido)
+     */
+    static Map<String, Operadora> carregarOperadoras(String caminhoOperadoras) {
+        Map<String, Operadora> operadoras = new HashMap<>();
+        Set<String> cpnjsDuplicados = new HashSet<>();
+        
+        try {
+            lerOperadoras(caminhoOperadoras, (cnpj, registroANS, modalidade, uf) -> {
                 if (operadoras.containsKey(cnpj)) {
                     cpnjsDuplicados.add(cnpj);
                     System.out.println("[AVISO] CNPJ duplicado no cadastro: " + cnpj);
                 } else {
                     operadoras.put(cnpj, new Operadora(registroANS, modalidade, uf));
                 }
-            }
+            });
             
             System.out.println("Operadoras carregadas: " + operadoras.size());
             System.out.println("CNPJs duplicados encontrados: " + cpnjsDuplicados.size());
@@ -92,81 +130,265 @@ public class EnriquecedorDados {
         return operadoras;
     }
     
+    /**
+     * Cadastro para o join por CNPJ: índice compacto persistido (--indice-cnpj)
+     * ou HashMap montado a partir do CSV (padrão)
+     */
+    static Function<String, Operadora> carregarCadastro(String[] args) {
+        if (args != null && Arrays.asList(args).contains("--indice-cnpj")) {
+            IndiceCNPJ indice = IndiceCNPJ.abrir(CAMINHO_OPERADORAS, CAMINHO_INDICE);
+            if (indice != null) return indice::buscar;
+        }
+        return carregarOperadoras(CAMINHO_OPERADORAS)::get;
+    }
+    
+    /**
+     * Escreve a linha do consolidado + RegistroANS;Modalidade;UF (ou [SEM_MATCH] sem operadora)
+     */
+    static void escreverEnriquecido(EscritorCSV escritor, LinhaCSV linha, Operadora operadora) throws IOException {
+        escritor.bruto(linha);
+        if (operadora == null) {
+            escritor.campo("[SEM_MATCH]").campo("").campo("");
+        } else {
+            escritor.campo(operadora.registroANS).campo(operadora.modalidade).campo(operadora.uf);
+        }
+        escritor.fimLinha();
+    }
+    
     /**
      * Faz join e enriquece dados com informações cadastrais
+     * Entrada: saída do ValidadorDados (ou o consolidado do Teste 1, se a validação não rodou)
      */
     public static void main(String[] args) {
-        String caminhoConsolidado = "teste_1_api_integracao/output/consolidado_despesas.csv";
-        String caminhoOperadoras = "teste_2_teste_de_transformacao_e_validacao_de_dados/data/raw/operadoras.csv";
-        String caminhoSaida = "teste_2_teste_de_transformacao_e_validacao_de_dados/output/consolidado_despesas_enriquecido.csv";
-        new java.io.File(caminhoSaida).getParentFile().mkdirs();
+        boolean colunar = args != null && Arrays.asList(args).contains("--colunar");
+        boolean intermediarios = args != null && Arrays.asList(args).contains("--intermediarios");
+        String extensao = colunar ? ".col" : ".csv";
         
-        // Carrega operadoras em memória
-        Map<String, Operadora> operadoras = carregarOperadoras(caminhoOperadoras);
+        // Total, com match e sem match (somados entre as partições, se houver)
+        int[] contagem = new int[3];
         
-        int totalRegistros = 0;
-        int comMatch = 0;
-        int semMatch = 0;
+        try {
+            String caminhoSaida;
+            if (IndiceParticoes.particionado(args)) {
+                caminhoSaida = enriquecerParticoes(args, colunar, intermediarios, contagem);
+                if (caminhoSaida == null) return;
+            } else {
+                String caminhoConsolidado = "teste_2_teste_de_transformacao_e_validacao_de_dados/output/consolidado_despesas_validado" + extensao;
+                if (!new java.io.File(caminhoConsolidado).exists()) {
+                    System.out.println("[AVISO] Arquivo validado nao encontrado, usando consolidado do Teste 1");
+                    caminhoConsolidado = "teste_1_api_integracao/output/consolidado_despesas" + extensao;
+                    if (!ValidadorDados.consolidadoExiste(caminhoConsolidado)) return;
+                }
+                caminhoSaida = "teste_2_teste_de_transformacao_e_validacao_de_dados/output/consolidado_despesas_enriquecido" + extensao;
+                
+                // Carrega operadoras em memória (ou abre o índice persistido)
+                Function<String, Operadora> operadoras = carregarCadastro(args);
+                
+                if (colunar) {
+                    enriquecerColunar(caminhoConsolidado, caminhoSaida, operadoras, new HashMap<>(), intermediarios, contagem);
+                } else {
+                    enriquecerCSV(caminhoConsolidado, caminhoSaida, operadoras, contagem);
+                }
+            }
+            
+            if (contagem[2] > 10) {
+                System.out.println("... e mais " + (contagem[2] - 10) + " registros sem match");
+            }
+            
+            System.out.println("\n=== ENRIQUECIMENTO CONCLUIDO ===");
+            System.out.println("Total de registros: " + contagem[0]);
+            System.out.println("Com match no cadastro: " + contagem[1]);
+            System.out.println("Sem match: " + contagem[2]);
+            System.out.println("Arquivo gerado: " + caminhoSaida);
+            
+        } catch (IOException e) {
+            System.out.println("[ERRO] ao enriquecer dados: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Enriquece um consolidado em CSV, gravando em caminhoSaida
+     * Retorna quantos registros foram gravados
+     */
+    private static int enriquecerCSV(String caminhoConsolidado, String caminhoSaida,
+                                     Function<String, Operadora> operadoras, int[] contagem) throws IOException {
+        new java.io.File(caminhoSaida).getParentFile().mkdirs();
+        int gravados = 0;
         
         try (
-            BufferedReader leitor = new BufferedReader(new FileReader(caminhoConsolidado));
-            BufferedWriter escritor = new BufferedWriter(new FileWriter(caminhoSaida))
+            LeitorCSV leitor = LeitorCSV.abrir(caminhoConsolidado, StandardCharsets.UTF_8);
+            EscritorCSV escritor = EscritorCSV.abrir(caminhoSaida, StandardCharsets.UTF_8)
         ) {
-            String linha;
-            String cabecalhoOriginal = null;
+            LinhaCSV campos = new LinhaCSV();
             
             // Lê e escreve cabeçalho (adiciona novas colunas)
-            if ((cabecalhoOriginal = leitor.readLine()) != null) {
-                String novoCabecalho = cabecalhoOriginal + ";RegistroANS;Modalidade;UF";
-                escritor.write(novoCabecalho);
-                escritor.newLine();
+            if (leitor.proximo(campos)) {
+                escritor.bruto(campos).bruto(";RegistroANS;Modalidade;UF").fimLinha();
             }
             
             // Processa cada linha do consolidado
-            while ((linha = leitor.readLine()) != null) {
-                totalRegistros++;
+            while (leitor.proximo(campos)) {
+                contagem[0]++;
                 
-                String[] campos = linha.split(";");
-                if (campos.length < 5) continue;
+                if (campos.camposPreenchidos() < 5) continue;
                 
-                String cnpj = campos[0].trim();
+                String cnpj = campos.textoSemEspacos(0);
                 
                 // Busca CNPJ nas operadoras carregadas
-                Operadora operadora = operadoras.get(cnpj);
+                Operadora operadora = operadoras.apply(cnpj);
+                
+                // Escreve linha original + dados enriquecidos (ou [SEM_MATCH])
+                escreverEnriquecido(escritor, campos, operadora);
+                gravados++;
                 
                 if (operadora != null) {
-                    comMatch++;
-                    // Escreve linha original + dados enriquecidos
-                    escritor.write(linha + ";" + 
-                                 operadora.registroANS + ";" + 
-                                 operadora.modalidade + ";" + 
-                                 operadora.uf);
-                    escritor.newLine();
+                    contagem[1]++;
                 } else {
-                    semMatch++;
+                    contagem[2]++;
                     // CNPJ não encontrado no cadastro
-                    escritor.write(linha + ";[SEM_MATCH];;");
-                    escritor.newLine();
                     
-                    if (semMatch <= 10) { // Log apenas dos primeiros 10
+                    if (contagem[2] <= 10) { // Log apenas dos primeiros 10
                         System.out.println("[SEM_MATCH] CNPJ nao encontrado: " + cnpj);
                     }
                 }
             }
+        }
+        return gravados;
+    }
+    
+    /**
+     * Modo --colunar: mesmo join e mesmos logs do CSV, sobre as colunas
+     * Entrada: consolidado_despesas_validado.col (ou o .col do Teste 1)
+     * Saída: consolidado_despesas_enriquecido.col com RegistroANS, Modalidade e
+     * UF como colunas de dicionário; o CSV só com --intermediarios
+     * porCNPJ guarda as consultas ao cadastro (compartilhado entre partições)
+     */
+    private static int enriquecerColunar(String caminhoConsolidado, String caminhoSaida,
+                                         Function<String, Operadora> operadoras, Map<Long, Operadora> porCNPJ,
+                                         boolean intermediarios, int[] contagem) throws IOException {
+        new java.io.File(caminhoSaida).getParentFile().mkdirs();
+        
+        try (ArquivoColunar arquivo = ArquivoColunar.abrir(caminhoConsolidado)) {
+            List<Coluna> colunas = new ArrayList<>();
+            for (String nome : arquivo.colunas()) colunas.add(arquivo.ler(nome));
+            Coluna cnpjs = colunas.get(arquivo.colunas().indexOf("CNPJ"));
+            Coluna valores = colunas.get(arquivo.colunas().indexOf("ValorDespesas"));
             
-            if (semMatch > 10) {
-                System.out.println("... e mais " + (semMatch - 10) + " registros sem match");
-            }
+            Coluna registros = Coluna.texto("RegistroANS");
+            Coluna modalidades = Coluna.texto("Modalidade");
+            Coluna ufs = Coluna.texto("UF");
             
-            System.out.println("\n=== ENRIQUECIMENTO CONCLUIDO ===");
-            System.out.println("Total de registros: " + totalRegistros);
-            System.out.println("Com match no cadastro: " + comMatch);
-            System.out.println("Sem match: " + semMatch);
-            System.out.println("Arquivo gerado: " + caminhoSaida);
+            // Uma consulta ao cadastro por CNPJ distinto (o mesmo CNPJ se repete por trimestre)
+            int[] mantidas = new int[arquivo.linhas()];
+            int quantidade = 0;
             
+            for (int i = 0; i < arquivo.linhas(); i++) {
+                contagem[0]++;
+                
+                // Só no .col do Teste 1 (o validado já vem sem elas)
+                if (ValidadorDados.linhaIncompleta(valores, i)) continue;
+                mantidas[quantidade++] = i;
+                
+                String cnpj = null;
+                Operadora operadora;
+                if (cnpjs.temExcecao(i)) {
+                    // Texto fora do padrão de 14 dígitos: consulta como está
+                    cnpj = cnpjs.texto(i).trim();
+                    operadora = operadoras.apply(cnpj);
+                } else {
+                    operadora = porCNPJ.get(cnpjs.valor(i));
+                    if (operadora == null) {
+                        operadora = operadoras.apply(Coluna.formatarCNPJ(cnpjs.valor(i)));
+                        porCNPJ.put(cnpjs.valor(i), operadora == null ? SEM_CADASTRO : operadora);
+                    }
+                    if (operadora == SEM_CADASTRO) operadora = null;
+                }
+                
+                if (operadora != null) {
+                    registros.adicionar(operadora.registroANS);
+                    modalidades.adicionar(operadora.modalidade);
+                    ufs.adicionar(operadora.uf);
+                    contagem[1]++;
+                } else {
+                    registros.adicionar("[SEM_MATCH]");
+                    modalidades.adicionar("");
+                    ufs.adicionar("");
+                    contagem[2]++;
+                    
+                    if (contagem[2] <= 10) { // Log apenas dos primeiros 10
+                        if (cnpj == null) cnpj = cnpjs.texto(i);
+                        System.out.println("[SEM_MATCH] CNPJ nao encontrado: " + cnpj);
+                    }
+                }
+            }
+            
+            if (quantidade < arquivo.linhas()) {
+                for (int c = 0; c < colunas.size(); c++) colunas.set(c, colunas.get(c).selecionar(mantidas, quantidade));
+            }
+            colunas.add(registros);
+            colunas.add(modalidades);
+            colunas.add(ufs);
+            ArquivoColunar.gravar(caminhoSaida, colunas);
+            if (intermediarios) {
+                String csv = ArquivoColunar.caminhoCSV(caminhoSaida);
+                ArquivoColunar.exportarCSV(colunas, csv);
+                System.out.println("CSV exportado: " + csv);
+            }
+            return quantidade;
+        }
+    }
+    
+    /**
+     * Modo particionado (--ano, --trimestre ou --particionado): enriquece só
+     * as partições do validado (ou do Teste 1, se a validação não rodou) que
+     * passam no filtro, atualizando o índice do enriquecido. O cadastro só é
+     * carregado se houver partição para ler. Retorna o caminho do índice, ou
+     * null se não houver partições de entrada ou faltar o arquivo de alguma
+     * selecionada (nesse caso nada é gravado)
+     */
+    private static String enriquecerParticoes(String[] args, boolean colunar, boolean intermediarios,
+                                              int[] contagem) throws IOException {
+        IndiceParticoes origem = IndiceParticoes.carregar(ValidadorDados.PARTICOES, "consolidado_despesas_validado");
+        if (!origem.existe()) {
+            System.out.println("[AVISO] Particoes validadas nao encontradas, usando particoes do Teste 1");
+            origem = IndiceParticoes.carregar(ValidadorDados.PARTICOES_TESTE1, "consolidado_despesas");
+        }
+        if (!origem.existe()) {
+            System.out.println("[ERRO] Indice de particoes nao encontrado: " + origem.arquivoIndice()
+                + " (rode o Teste 1 com --particionar)");
+            return null;
+        }
+        List<IndiceParticoes.Particao> selecionadas = origem.selecionar(args);
+        System.out.println("Particoes selecionadas: " + IndiceParticoes.chaves(selecionadas)
+            + " (de " + origem.particoes().size() + ")");
+        
+        String extensao = colunar ? ".col" : ".csv";
+        List<String> entradas = origem.caminhos(selecionadas, extensao);
+        if (entradas == null) return null;
+        
+        Function<String, Operadora> operadoras = selecionadas.isEmpty() ? null : carregarCadastro(args);
+        Map<Long, Operadora> porCNPJ = new HashMap<>();
+        
+        // Partições novas vão para a pasta desta execução; o índice anterior só é trocado no fim
+        IndiceParticoes destino = IndiceParticoes.carregar(ValidadorDados.PARTICOES, "consolidado_despesas_enriquecido");
+        try {
+            for (int i = 0; i < selecionadas.size(); i++) {
+                IndiceParticoes.Particao particao = selecionadas.get(i);
+                String arquivo = destino.novoArquivo(particao.ano, particao.trimestre, "consolidado_despesas_enriquecido" + extensao);
+                String caminhoSaida = destino.caminho(arquivo);
+                
+                int gravados = colunar
+                    ? enriquecerColunar(entradas.get(i), caminhoSaida, operadoras, porCNPJ, intermediarios, contagem)
+                    : enriquecerCSV(entradas.get(i), caminhoSaida, operadoras, contagem);
+                destino.registrar(particao.ano, particao.trimestre, arquivo, gravados);
+            }
+            destino.gravar();
         } catch (IOException e) {
-            System.out.println("[ERRO] ao enriquecer dados: " + e.getMessage());
-            e.printStackTrace();
+            destino.descartarExecucao();
+            throw e;
         }
+        destino.limpar();
+        return destino.arquivoIndice().toString();
     }
 }
@@ -0,0 +1,155 @@
+package main.java.br.com.intuitivecare;
+
+import main.java.br.com.intuitivecare.AgregadorDespesas.EstatisticasOperadora;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Estado persistido da agregação, por trimestre (--incremental)
+ *
+ * Guarda, para cada trimestre (Ano/Trimestre) já agregado, as estatísticas
+ * parciais de cada grupo RazaoSocial/UF: soma, contagem, Welford (média e
+ * m2), trimestres, esboços KLL e HyperLogLog. Como tudo isso se junta
+ * (mesmo juntar dos blocos paralelos), um trimestre novo é agregado sozinho
+ * e só acrescentado aqui; o despesas_agregadas.csv sai da junção dos
+ * parciais, em tempo proporcional ao número de grupos e não de linhas.
+ *
+ * Formato (DataOutputStream): "AGRE", versão, quantidade de trimestres;
+ * por trimestre a chave e os grupos (razão social, UF, estatísticas).
+ * Gravado em arquivo temporário e trocado de uma vez.
+ */
+public class EstadoAgregado {
+
+    static final String CAMINHO = "teste_2_teste_de_transformacao_e_validacao_de_dados/data/agregado_estado.bin";
+
+    private static final int MAGICO = 0x41475245; // "AGRE"
+    private static final int VERSAO = 1;
+
+    // Chave do trimestre ("2024/1T") -> grupos ("RazaoSocial;UF" -> estatísticas)
+    private final Map<String, Map<String, EstatisticasOperadora>> trimestres = new TreeMap<>();
+
+    /**
+     * Chave do trimestre usada no estado: Ano/Trimestre
+     */
+    static String chaveTrimestre(String ano, String trimestre) {
+        return ano.trim() + "/" + trimestre.trim();
+    }
+
+    /**
+     * Carrega o estado gravado; vazio se não existir ou estiver corrompido
+     */
+    static EstadoAgregado carregar(String caminho) {
+        EstadoAgregado estado = new EstadoAgregado();
+        File arquivo = new File(caminho);
+        if (!arquivo.exists()) return estado;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(arquivo), 1 << 16))) {
+            if (in.readInt() != MAGICO || in.readInt() != VERSAO) {
+                System.out.println("[AVISO] estado da agregacao de outra versao, recomecando do zero");
+                return estado;
+            }
+            int quantidadeTrimestres = in.readInt();
+            for (int t = 0; t < quantidadeTrimestres; t++) {
+                String chave = in.readUTF();
+                int quantidadeGrupos = in.readInt();
+                Map<String, EstatisticasOperadora> grupos = new TreeMap<>();
+                for (int g = 0; g < quantidadeGrupos; g++) {
+                    EstatisticasOperadora stats = lerGrupo(in);
+                    grupos.put(stats.razaoSocial + ";" + stats.uf, stats);
+                }
+                estado.trimestres.put(chave, grupos);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[AVISO] estado da agregacao ilegivel (" + e.getMessage() + "), recomecando do zero");
+            return new EstadoAgregado();
+        }
+        return estado;
+    }
+
+    /**
+     * Grava o estado (arquivo temporário + troca, nunca fica pela metade)
+     */
+    void gravar(String caminho) throws IOException {
+        Path arquivo = Paths.get(caminho);
+        Files.createDirectories(arquivo.toAbsolutePath().getParent());
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporario), 1 << 16))) {
+            out.writeInt(MAGICO);
+            out.writeInt(VERSAO);
+            out.writeInt(trimestres.size());
+            for (Map.Entry<String, Map<String, EstatisticasOperadora>> t : trimestres.entrySet()) {
+                out.writeUTF(t.getKey());
+                out.writeInt(t.getValue().size());
+                for (EstatisticasOperadora stats : t.getValue().values()) gravarGrupo(out, stats);
+            }
+        }
+
+        try {
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    Set<String> trimestres() {
+        return Collections.unmodifiableSet(trimestres.keySet());
+    }
+
+    /**
+     * Grupos de um trimestre (vazio se o trimestre não estiver no estado)
+     */
+    Map<String, EstatisticasOperadora> grupos(String chaveTrimestre) {
+        return trimestres.getOrDefault(chaveTrimestre, Collections.emptyMap());
+    }
+
+    /**
+     * Guarda (ou troca) os grupos de um trimestre
+     */
+    void substituir(String chaveTrimestre, Map<String, EstatisticasOperadora> grupos) {
+        trimestres.put(chaveTrimestre, new TreeMap<>(grupos));
+    }
+
+    /**
+     * Junta os trimestres em uma estatística por grupo (não altera o estado)
+     */
+    Map<String, EstatisticasOperadora> consolidar() {
+        Map<String, EstatisticasOperadora> agregacoes = new TreeMap<>();
+        for (Map<String, EstatisticasOperadora> grupos : trimestres.values()) {
+            for (Map.Entry<String, EstatisticasOperadora> e : grupos.entrySet()) {
+                EstatisticasOperadora parcial = e.getValue();
+                agregacoes.computeIfAbsent(e.getKey(),
+                    k -> new EstatisticasOperadora(parcial.razaoSocial, parcial.uf)).juntar(parcial);
+            }
+        }
+        return agregacoes;
+    }
+
+    private static void gravarGrupo(DataOutputStream out, EstatisticasOperadora stats) throws IOException {
+        out.writeUTF(stats.razaoSocial);
+        out.writeUTF(stats.uf);
+        out.writeLong(stats.totalCentavos);
+        out.writeInt(stats.contagem);
+        out.writeDouble(stats.mediaCorrente);
+        out.writeDouble(stats.m2);
+        out.writeInt(stats.trimestresUnicos.size());
+        for (String trimestre : new TreeSet<>(stats.trimestresUnicos)) out.writeUTF(trimestre);
+        stats.quantis.gravar(out);
+        stats.cnpjs.gravar(out);
+    }
+
+    private static EstatisticasOperadora lerGrupo(DataInputStream in) throws IOException {
+        EstatisticasOperadora stats = new EstatisticasOperadora(in.readUTF(), in.readUTF());
+        stats.totalCentavos = in.readLong();
+        stats.contagem = in.readInt();
+        stats.mediaCorrente = in.readDouble();
+        stats.m2 = in.readDouble();
+        int quantidadeTrimestres = in.readInt();
+        for (int i = 0; i < quantidadeTrimestres; i++) stats.trimestresUnicos.add(in.readUTF());
+        stats.quantis = QuantisKLL.ler(in);
+        stats.cnpjs = HyperLogLog.ler(in);
+        return stats;
+    }
+}
@@ -0,0 +1,78 @@
+package main.java.br.com.intuitivecare;
+
+import java.io.*;
+
+/**
+ * HyperLogLog para contagem aproximada de valores distintos (ex.: CNPJs por UF)
+ *
+ * 1024 registradores de 1 byte (1 KB por esboço, erro típico ~3%),
+ * qualquer que seja o número de valores. Para poucos valores usa a
+ * contagem linear, que é praticamente exata.
+ *
+ * Esboços podem ser juntados (máximo registrador a registrador), então a
+ * contagem de uma UF sai da junção dos esboços das operadoras dela.
+ */
+public class HyperLogLog {
+
+    private static final int P = 10;
+    private static final int M = 1 << P;
+    private static final double ALFA = 0.7213 / (1 + 1.079 / M);
+
+    private final byte[] registradores = new byte[M];
+
+    public void adicionar(String valor) {
+        long hash = hash64(valor);
+        int indice = (int) (hash >>> (64 - P));
+        // Posição do primeiro bit 1 nos bits restantes (limitada pelo bit sentinela)
+        long resto = (hash << P) | (1L << (P - 1));
+        byte posicao = (byte) (Long.numberOfLeadingZeros(resto) + 1);
+        if (posicao > registradores[indice]) registradores[indice] = posicao;
+    }
+
+    public void juntar(HyperLogLog outro) {
+        for (int i = 0; i < M; i++) {
+            if (outro.registradores[i] > registradores[i]) registradores[i] = outro.registradores[i];
+        }
+    }
+
+    public void gravar(DataOutputStream saida) throws IOException {
+        saida.write(registradores);
+    }
+
+    public static HyperLogLog ler(DataInputStream entrada) throws IOException {
+        HyperLogLog esboco = new HyperLogLog();
+        entrada.readFully(esboco.registradores);
+        return esboco;
+    }
+
+    public long estimar() {
+        double soma = 0;
+        int zeros = 0;
+        for (byte r : registradores) {
+            soma += Math.scalb(1.0, -r);
+            if (r == 0) zeros++;
+        }
+
+        double estimativa = ALFA * M * M / soma;
+        // Poucos valores: contagem linear
+        if (estimativa <= 2.5 * M && zeros > 0) {
+            estimativa = M * Math.log((double) M / zeros);
+        }
+        return Math.round(estimativa);
+    }
+
+    // FNV-1a 64 bits + finalizador do MurmurHash3 (espalha bem os bits); usado também pelo RevisaoTrimestres
+    static long hash64(String valor) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < valor.length(); i++) {
+            h ^= valor.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
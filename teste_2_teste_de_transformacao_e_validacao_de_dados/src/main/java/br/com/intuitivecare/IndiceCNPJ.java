@@ -0,0 +1,438 @@
+package main.java.br.com.intuitivecare;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Índice compacto CNPJ -> operadora para o join do EnriquecedorDados (--indice-cnpj)
+ *
+ * Em vez de HashMap<String, Operadora> (String de 14 chars + entrada +
+ * Operadora + 3 Strings por operadora, ~300 bytes), cada operadora ocupa
+ * uma posição de arrays paralelos numa tabela de endereçamento aberto:
+ * - CNPJ como long (14 dígitos cabem em 47 bits); 0 = posição vazia
+ * - RegistroANS como int (+ quantidade de dígitos, para manter zeros à esquerda)
+ * - Modalidade e UF como códigos de dicionário (short)
+ * São ~17 bytes por posição, com a tabela no máximo meio cheia.
+ *
+ * O índice é gravado em data/indice_cnpj.bin e, nas execuções seguintes,
+ * mapeado em memória (mmap): nada de ler/quebrar o CSV de novo, as buscas
+ * leem direto do arquivo mapeado (fora do heap). O arquivo guarda o tamanho
+ * e a data do operadoras.csv de origem; se o CSV mudar, o índice é refeito.
+ *
+ * Mesmo comportamento do HashMap: CNPJ duplicado fica com o primeiro
+ * registro. CNPJs que não são exatamente 14 dígitos (raros) ficam num
+ * Map pequeno à parte, para o join continuar idêntico.
+ *
+ * Formato (big-endian): "ICNP", versão, tamanho e data do CSV, capacidade,
+ * quantidade; depois chaves (long), registros (int), modalidades (short),
+ * UFs (short), dígitos do registro (byte), um por posição; no fim os
+ * dicionários, os registros não numéricos e as operadoras fora do padrão
+ * de 14 dígitos (textos com int tamanho + UTF-8).
+ */
+public class IndiceCNPJ {
+
+    private static final int MAGICO = 0x49434E50; // "ICNP"
+    private static final int VERSAO = 1;
+    private static final int TAMANHO_CABECALHO = 32;
+    private static final long VAZIO = 0;
+    // Registro que não é número: texto guardado à parte
+    private static final byte REGISTRO_TEXTO = -1;
+
+    private final int capacidade; // potência de 2
+    private final LongBuffer chaves;
+    private final IntBuffer registros;
+    private final ShortBuffer modalidades;
+    private final ShortBuffer ufs;
+    private final ByteBuffer digitosRegistro;
+    private final List<String> dicionarioModalidades;
+    private final List<String> dicionarioUfs;
+    private final Map<Integer, String> registrosTexto;
+    // CNPJs que não são 14 dígitos
+    private final Map<String, EnriquecedorDados.Operadora> foraDoPadrao;
+    private final int tamanho;
+
+    private IndiceCNPJ(int capacidade, LongBuffer chaves, IntBuffer registros, ShortBuffer modalidades,
+                       ShortBuffer ufs, ByteBuffer digitosRegistro, List<String> dicionarioModalidades,
+                       List<String> dicionarioUfs, Map<Integer, String> registrosTexto,
+                       Map<String, EnriquecedorDados.Operadora> foraDoPadrao, int tamanho) {
+        this.capacidade = capacidade;
+        this.chaves = chaves;
+        this.registros = registros;
+        this.modalidades = modalidades;
+        this.ufs = ufs;
+        this.digitosRegistro = digitosRegistro;
+        this.dicionarioModalidades = dicionarioModalidades;
+        this.dicionarioUfs = dicionarioUfs;
+        this.registrosTexto = registrosTexto;
+        this.foraDoPadrao = foraDoPadrao;
+        this.tamanho = tamanho;
+    }
+
+    /**
+     * Mapeia o índice gravado, se ainda corresponder ao CSV; senão monta a
+     * partir do CSV e grava para as próximas execuções. Null em caso de erro
+     * (o chamador volta para o HashMap).
+     */
+    static IndiceCNPJ abrir(String caminhoCSV, String caminhoIndice) {
+        long inicio = System.nanoTime();
+        Path csv = Paths.get(caminhoCSV);
+        Path arquivo = Paths.get(caminhoIndice);
+
+        try {
+            long tamanhoCSV = Files.size(csv);
+            long modificadoCSV = Files.getLastModifiedTime(csv).toMillis();
+
+            if (Files.exists(arquivo)) {
+                IndiceCNPJ indice;
+                try {
+                    indice = mapear(arquivo, tamanhoCSV, modificadoCSV);
+                } catch (RuntimeException e) {
+                    // Arquivo truncado ou corrompido: refaz
+                    indice = null;
+                }
+                if (indice != null) {
+                    System.out.println(String.format("Indice CNPJ mapeado: %d operadoras em %.2f ms (%d KB fora do heap)",
+                        indice.tamanho(), (System.nanoTime() - inicio) / 1_000_000.0, Files.size(arquivo) / 1024));
+                    return indice;
+                }
+                System.out.println("Indice CNPJ desatualizado, refazendo a partir do CSV");
+            }
+
+            IndiceCNPJ indice = construir(caminhoCSV);
+            gravar(indice, arquivo, tamanhoCSV, modificadoCSV);
+            System.out.println(String.format("Indice CNPJ montado: %d operadoras em %.1f ms (~%d bytes por operadora)",
+                indice.tamanho(), (System.nanoTime() - inicio) / 1_000_000.0, indice.bytesPorOperadora()));
+            return indice;
+
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[ERRO] indice CNPJ: " + e.getMessage() + " (usando HashMap)");
+            return null;
+        }
+    }
+
+    /**
+     * Operadora do CNPJ, ou null se não estiver no cadastro
+     */
+    EnriquecedorDados.Operadora buscar(String cnpj) {
+        long chave = chave(cnpj);
+        if (chave == VAZIO) return foraDoPadrao.get(cnpj);
+
+        int posicao = posicao(chaves, capacidade, chave);
+        if (chaves.get(posicao) == VAZIO) return null;
+
+        return new EnriquecedorDados.Operadora(
+            registro(posicao),
+            dicionarioModalidades.get(modalidades.get(posicao) & 0xFFFF),
+            dicionarioUfs.get(ufs.get(posicao) & 0xFFFF));
+    }
+
+    int tamanho() {
+        return tamanho + foraDoPadrao.size();
+    }
+
+    // Memória das colunas por operadora (tabela meio cheia = 2 posições por operadora)
+    long bytesPorOperadora() {
+        return tamanho == 0 ? 0 : (long) capacidade * (8 + 4 + 2 + 2 + 1) / tamanho;
+    }
+
+    private String registro(int posicao) {
+        byte digitos = digitosRegistro.get(posicao);
+        if (digitos == REGISTRO_TEXTO) return registrosTexto.get(posicao);
+
+        String texto = Integer.toString(registros.get(posicao));
+        if (digitos == 0) return "";
+        if (texto.length() >= digitos) return texto;
+        StringBuilder sb = new StringBuilder(digitos);
+        for (int i = texto.length(); i < digitos; i++) sb.append('0');
+        return sb.append(texto).toString();
+    }
+
+    // CNPJ de exatamente 14 dígitos como long; VAZIO se não for
+    static long chave(String cnpj) {
+        if (cnpj == null || cnpj.length() != 14) return VAZIO;
+        long valor = 0;
+        for (int i = 0; i < 14; i++) {
+            int d = cnpj.charAt(i) - '0';
+            if (d < 0 || d > 9) return VAZIO;
+            valor = valor * 10 + d;
+        }
+        return valor;
+    }
+
+    // Sondagem linear: posição da chave ou da primeira posição vazia
+    private static int posicao(LongBuffer chaves, int capacidade, long chave) {
+        int mascara = capacidade - 1;
+        int i = espalhar(chave) & mascara;
+        while (true) {
+            long atual = chaves.get(i);
+            if (atual == chave || atual == VAZIO) return i;
+            i = (i + 1) & mascara;
+        }
+    }
+
+    // Mistura os bits do CNPJ (finalizador do MurmurHash3)
+    private static int espalhar(long chave) {
+        chave ^= chave >>> 33;
+        chave *= 0xff51afd7ed558ccdL;
+        chave ^= chave >>> 33;
+        chave *= 0xc4ceb9fe1a85ec53L;
+        chave ^= chave >>> 33;
+        return (int) chave;
+    }
+
+    /**
+     * Monta o índice lendo o CSV (mesma leitura do carregarOperadoras)
+     */
+    static IndiceCNPJ construir(String caminhoCSV) throws IOException {
+        Construtor construtor = new Construtor();
+        EnriquecedorDados.lerOperadoras(caminhoCSV, construtor::adicionar);
+
+        System.out.println("Operadoras carregadas: " + (construtor.tamanho + construtor.foraDoPadrao.size()));
+        System.out.println("CNPJs duplicados encontrados: " + construtor.duplicados);
+        if (!construtor.foraDoPadrao.isEmpty()) {
+            System.out.println("[AVISO] CNPJs fora do padrao de 14 digitos: " + construtor.foraDoPadrao.size());
+        }
+        return construtor.criar();
+    }
+
+    // Grava em arquivo temporário e troca de uma vez (índice nunca fica pela metade)
+    private static void gravar(IndiceCNPJ indice, Path arquivo, long tamanhoCSV, long modificadoCSV) throws IOException {
+        Files.createDirectories(arquivo.toAbsolutePath().getParent());
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporario), 1 << 16))) {
+            out.writeInt(MAGICO);
+            out.writeInt(VERSAO);
+            out.writeLong(tamanhoCSV);
+            out.writeLong(modificadoCSV);
+            out.writeInt(indice.capacidade);
+            out.writeInt(indice.tamanho);
+
+            for (int i = 0; i < indice.capacidade; i++) out.writeLong(indice.chaves.get(i));
+            for (int i = 0; i < indice.capacidade; i++) out.writeInt(indice.registros.get(i));
+            for (int i = 0; i < indice.capacidade; i++) out.writeShort(indice.modalidades.get(i));
+            for (int i = 0; i < indice.capacidade; i++) out.writeShort(indice.ufs.get(i));
+            for (int i = 0; i < indice.capacidade; i++) out.writeByte(indice.digitosRegistro.get(i));
+
+            escreverLista(out, indice.dicionarioModalidades);
+            escreverLista(out, indice.dicionarioUfs);
+            out.writeInt(indice.registrosTexto.size());
+            for (Map.Entry<Integer, String> e : indice.registrosTexto.entrySet()) {
+                out.writeInt(e.getKey());
+                escreverTexto(out, e.getValue());
+            }
+            out.writeInt(indice.foraDoPadrao.size());
+            for (Map.Entry<String, EnriquecedorDados.Operadora> e : indice.foraDoPadrao.entrySet()) {
+                escreverTexto(out, e.getKey());
+                escreverTexto(out, e.getValue().registroANS);
+                escreverTexto(out, e.getValue().modalidade);
+                escreverTexto(out, e.getValue().uf);
+            }
+        }
+
+        try {
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Mapeia o arquivo; null se for de outra versão ou de outro CSV
+    private static IndiceCNPJ mapear(Path arquivo, long tamanhoCSV, long modificadoCSV) throws IOException {
+        MappedByteBuffer mapa;
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            if (canal.size() < TAMANHO_CABECALHO) return null;
+            // O mapeamento continua válido depois de fechar o canal
+            mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+
+        if (mapa.getInt(0) != MAGICO || mapa.getInt(4) != VERSAO) return null;
+        if (mapa.getLong(8) != tamanhoCSV || mapa.getLong(16) != modificadoCSV) return null;
+        int capacidade = mapa.getInt(24);
+        int tamanho = mapa.getInt(28);
+
+        int posicao = TAMANHO_CABECALHO;
+        LongBuffer chaves = fatia(mapa, posicao, capacidade * 8).asLongBuffer();
+        posicao += capacidade * 8;
+        IntBuffer registros = fatia(mapa, posicao, capacidade * 4).asIntBuffer();
+        posicao += capacidade * 4;
+        ShortBuffer modalidades = fatia(mapa, posicao, capacidade * 2).asShortBuffer();
+        posicao += capacidade * 2;
+        ShortBuffer ufs = fatia(mapa, posicao, capacidade * 2).asShortBuffer();
+        posicao += capacidade * 2;
+        ByteBuffer digitos = fatia(mapa, posicao, capacidade);
+        posicao += capacidade;
+
+        // Dicionários e registros em texto são pequenos: vão para o heap
+        ByteBuffer resto = fatia(mapa, posicao, mapa.capacity() - posicao);
+        List<String> dicionarioModalidades = lerLista(resto);
+        List<String> dicionarioUfs = lerLista(resto);
+        Map<Integer, String> registrosTexto = new HashMap<>();
+        int quantidadeTexto = resto.getInt();
+        for (int i = 0; i < quantidadeTexto; i++) {
+            int pos = resto.getInt();
+            registrosTexto.put(pos, lerTexto(resto));
+        }
+        Map<String, EnriquecedorDados.Operadora> foraDoPadrao = new HashMap<>();
+        int quantidadeFora = resto.getInt();
+        for (int i = 0; i < quantidadeFora; i++) {
+            String cnpj = lerTexto(resto);
+            foraDoPadrao.put(cnpj, new EnriquecedorDados.Operadora(lerTexto(resto), lerTexto(resto), lerTexto(resto)));
+        }
+
+        return new IndiceCNPJ(capacidade, chaves, registros, modalidades, ufs, digitos,
+            dicionarioModalidades, dicionarioUfs, registrosTexto, foraDoPadrao, tamanho);
+    }
+
+    private static ByteBuffer fatia(ByteBuffer mapa, int inicio, int tamanho) {
+        ByteBuffer copia = mapa.duplicate();
+        copia.position(inicio);
+        copia.limit(inicio + tamanho);
+        return copia.slice();
+    }
+
+    private static void escreverLista(DataOutputStream out, List<String> lista) throws IOException {
+        out.writeInt(lista.size());
+        for (String texto : lista) escreverTexto(out, texto);
+    }
+
+    private static void escreverTexto(DataOutputStream out, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static List<String> lerLista(ByteBuffer buffer) {
+        int quantidade = buffer.getInt();
+        List<String> lista = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) lista.add(lerTexto(buffer));
+        return lista;
+    }
+
+    private static String lerTexto(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Monta as colunas em arrays, dobrando a tabela quando passa de meio cheia
+     */
+    private static class Construtor {
+        int capacidade = 1024;
+        long[] chaves = new long[capacidade];
+        int[] registros = new int[capacidade];
+        short[] modalidades = new short[capacidade];
+        short[] ufs = new short[capacidade];
+        byte[] digitos = new byte[capacidade];
+        Map<Integer, String> registrosTexto = new HashMap<>();
+        final Map<String, Integer> codigosModalidade = new HashMap<>();
+        final List<String> dicionarioModalidades = new ArrayList<>();
+        final Map<String, Integer> codigosUf = new HashMap<>();
+        final List<String> dicionarioUfs = new ArrayList<>();
+        int tamanho = 0;
+        final Map<String, EnriquecedorDados.Operadora> foraDoPadrao = new HashMap<>();
+        int duplicados = 0;
+
+        void adicionar(String cnpj, String registroANS, String modalidade, String uf) {
+            long chave = chave(cnpj);
+            if (chave == VAZIO) {
+                if (foraDoPadrao.containsKey(cnpj)) {
+                    duplicado(cnpj);
+                } else {
+                    foraDoPadrao.put(cnpj, new EnriquecedorDados.Operadora(registroANS, modalidade, uf));
+                }
+                return;
+            }
+            if (2 * (tamanho + 1) > capacidade) crescer();
+
+            int i = posicao(LongBuffer.wrap(chaves), capacidade, chave);
+            if (chaves[i] != VAZIO) {
+                duplicado(cnpj);
+                return;
+            }
+
+            chaves[i] = chave;
+            gravarRegistro(i, registroANS);
+            modalidades[i] = codigo(codigosModalidade, dicionarioModalidades, modalidade);
+            ufs[i] = codigo(codigosUf, dicionarioUfs, uf);
+            tamanho++;
+        }
+
+        // Mesmo critério do HashMap: fica o primeiro
+        private void duplicado(String cnpj) {
+            duplicados++;
+            System.out.println("[AVISO] CNPJ duplicado no cadastro: " + cnpj);
+        }
+
+        private void gravarRegistro(int i, String registroANS) {
+            boolean numerico = registroANS.length() <= 9;
+            for (int c = 0; c < registroANS.length() && numerico; c++) {
+                numerico = Character.isDigit(registroANS.charAt(c)) && registroANS.charAt(c) < 128;
+            }
+            if (numerico) {
+                registros[i] = registroANS.isEmpty() ? 0 : Integer.parseInt(registroANS);
+                digitos[i] = (byte) registroANS.length();
+            } else {
+                digitos[i] = REGISTRO_TEXTO;
+                registrosTexto.put(i, registroANS);
+            }
+        }
+
+        private static short codigo(Map<String, Integer> codigos, List<String> dicionario, String valor) {
+            Integer codigo = codigos.get(valor);
+            if (codigo == null) {
+                codigo = dicionario.size();
+                if (codigo > 0xFFFF) throw new IllegalStateException("Valores distintos demais no dicionario");
+                codigos.put(valor, codigo);
+                dicionario.add(valor);
+            }
+            return (short) (int) codigo;
+        }
+
+        // Dobra a tabela e reposiciona todas as chaves
+        private void crescer() {
+            int novaCapacidade = capacidade * 2;
+            long[] novasChaves = new long[novaCapacidade];
+            int[] novosRegistros = new int[novaCapacidade];
+            short[] novasModalidades = new short[novaCapacidade];
+            short[] novasUfs = new short[novaCapacidade];
+            byte[] novosDigitos = new byte[novaCapacidade];
+            Map<Integer, String> novosTextos = new HashMap<>();
+            LongBuffer visao = LongBuffer.wrap(novasChaves);
+
+            for (int i = 0; i < capacidade; i++) {
+                if (chaves[i] == VAZIO) continue;
+                int j = posicao(visao, novaCapacidade, chaves[i]);
+                novasChaves[j] = chaves[i];
+                novosRegistros[j] = registros[i];
+                novasModalidades[j] = modalidades[i];
+                novasUfs[j] = ufs[i];
+                novosDigitos[j] = digitos[i];
+                if (digitos[i] == REGISTRO_TEXTO) novosTextos.put(j, registrosTexto.get(i));
+            }
+
+            capacidade = novaCapacidade;
+            chaves = novasChaves;
+            registros = novosRegistros;
+            modalidades = novasModalidades;
+            ufs = novasUfs;
+            digitos = novosDigitos;
+            registrosTexto = novosTextos;
+        }
+
+        IndiceCNPJ criar() {
+            return new IndiceCNPJ(capacidade, LongBuffer.wrap(chaves), IntBuffer.wrap(registros),
+                ShortBuffer.wrap(modalidades), ShortBuffer.wrap(ufs), ByteBuffer.wrap(digitos),
+                dicionarioModalidades, dicionarioUfs, registrosTexto, foraDoPadrao, tamanho);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package main.java.br.com.intuitivecare;
 
+import main.java.br.com.intuitivecare.comum.IndiceParticoes;
+
 /**
  * Orquestra o pipeline completo do Teste 2:
  * Validação → Enriquecimento → Agregação
@@ -27,23 +29,65 @@ package main.java.br.com.intuitivecare;
  *   - Calcula: Total, Média, Desvio Padrão, Média/Trimestre
  *   - Ordena por valor total (maior para menor)
  *   - Output: despesas_agregadas.csv
+ * 
+ * Com --fundido, os passos 1, 3 e 4 rodam numa única leitura do
+ * consolidado (PipelineFundido); validado/enriquecido só com --intermediarios
+ * 
+ * Com --revisoes, compara o consolidado com o resumo Merkle da última
+ * execução e reagrega só os trimestres/operadoras que mudaram (RevisaoTrimestres)
+ * 
+ * Com --colunar, os passos 1, 3 e 4 leem e gravam o formato colunar
+ * (consolidado_despesas.col do Teste 1 com --formato-saida=colunar)
+ * 
+ * Com --ano=2024 e/ou --trimestre=1T,2T (ou --particionado), os passos 1, 3
+ * e 4 abrem só as partições Ano/Trimestre do filtro (Teste 1 com --particionar)
  */
 public class Main {
     
     public static void main(String[] args) {
         System.out.println("=== TESTE 2: Transformacao e Validacao de Dados ===\n");
         
+        // Sem o consolidado do Teste 1 (ex.: gerado com --formato-saida=gzip ou binario) nenhum passo roda
+        if (!IndiceParticoes.particionado(args)) {
+            boolean colunar = args != null && java.util.Arrays.asList(args).contains("--colunar")
+                && !java.util.Arrays.asList(args).contains("--fundido") && !java.util.Arrays.asList(args).contains("--revisoes");
+            if (!ValidadorDados.consolidadoExiste("teste_1_api_integracao/output/consolidado_despesas" + (colunar ? ".col" : ".csv"))) {
+                System.out.println("\n=== PIPELINE INTERROMPIDO ===");
+                return;
+            }
+        }
+        
+        // Validação, enriquecimento e agregação em uma única leitura do consolidado
+        if (args != null && java.util.Arrays.asList(args).contains("--fundido")) {
+            System.out.println("PASSO 1: Baixando dados de operadoras...");
+            BaixadorOperadoras.main(null);
+            
+            System.out.println("\n\nPASSO 2: Validando, enriquecendo e agregando (passada unica)...");
+            PipelineFundido.main(args);
+            return;
+        }
+        
+        // Só o que mudou desde a última execução (trimestres republicados pela ANS)
+        if (args != null && java.util.Arrays.asList(args).contains("--revisoes")) {
+            System.out.println("PASSO 1: Baixando dados de operadoras...");
+            BaixadorOperadoras.main(null);
+            
+            System.out.println("\n\nPASSO 2: Detectando revisoes e reagregando operadoras alteradas...");
+            RevisaoTrimestres.main(args);
+            return;
+        }
+        
         System.out.println("PASSO 1: Validando dados consolidados...");
-        ValidadorDados.main(null);
+        ValidadorDados.main(args);
         
         System.out.println("\n\nPASSO 2: Baixando dados de operadoras...");
         BaixadorOperadoras.main(null);
         
         System.out.println("\n\nPASSO 3: Enriquecendo dados com informacoes cadastrais...");
-        EnriquecedorDados.main(null);
+        EnriquecedorDados.main(args);
         
         System.out.println("\n\nPASSO 4: Agregando despesas por operadora/UF...");
-        AgregadorDespesas.main(null);
+        AgregadorDespesas.main(args);
         
         System.out.println("\n\n=== PIPELINE COMPLETO CONCLUIDO ===");
         System.out.println("Arquivos gerados:");
@@ -0,0 +1,123 @@
+package main.java.br.com.intuitivecare;
+
+import main.java.br.com.intuitivecare.comum.Dinheiro;
+import main.java.br.com.intuitivecare.comum.EscritorCSV;
+import main.java.br.com.intuitivecare.comum.LeitorCSV;
+import main.java.br.com.intuitivecare.comum.LinhaCSV;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Teste 2 em uma única passada (--fundido)
+ *
+ * No modo normal cada passo grava um CSV completo que o passo seguinte lê
+ * e separa em campos de novo (consolidado → validado → enriquecido →
+ * agregado). Aqui o consolidado do Teste 1 é lido uma vez só e cada
+ * registro é validado, juntado com o cadastro e agregado em memória.
+ *
+ * Os arquivos intermediários (validado e enriquecido) passam a ser
+ * opcionais, só para depuração: --intermediarios
+ *
+ * O despesas_agregadas.csv sai igual ao do modo normal, inclusive nas
+ * regras do agregador: registros sem match no cadastro ou sem UF ficam de
+ * fora (no arquivo enriquecido eles ficam sem a coluna UF).
+ */
+public class PipelineFundido {
+
+    private static final String CAMINHO_ENTRADA = "teste_1_api_integracao/output/consolidado_despesas.csv";
+    private static final String PASTA_SAIDA = "teste_2_teste_de_transformacao_e_validacao_de_dados/output/";
+
+    public static void main(String[] args) {
+        boolean intermediarios = args != null && Arrays.asList(args).contains("--intermediarios");
+        long inicio = System.nanoTime();
+
+        Function<String, EnriquecedorDados.Operadora> operadoras = EnriquecedorDados.carregarCadastro(args);
+        Map<String, AgregadorDespesas.EstatisticasOperadora> agregacoes = new TreeMap<>();
+
+        int totalRegistros = 0;
+        int registrosInvalidos = 0;
+        int semMatch = 0;
+        int linhasProcessadas = 0;
+        int linhasIgnoradas = 0;
+
+        new File(PASTA_SAIDA).mkdirs();
+
+        try (
+            LeitorCSV leitor = LeitorCSV.abrir(CAMINHO_ENTRADA, StandardCharsets.UTF_8);
+            EscritorCSV validado = intermediarios
+                ? EscritorCSV.abrir(PASTA_SAIDA + "consolidado_despesas_validado.csv", StandardCharsets.UTF_8) : null;
+            EscritorCSV enriquecido = intermediarios
+                ? EscritorCSV.abrir(PASTA_SAIDA + "consolidado_despesas_enriquecido.csv", StandardCharsets.UTF_8) : null
+        ) {
+            LinhaCSV campos = new LinhaCSV();
+            if (leitor.proximo(campos) && intermediarios) {
+                validado.bruto(campos).fimLinha();
+                enriquecido.bruto(campos).bruto(";RegistroANS;Modalidade;UF").fimLinha();
+            }
+
+            while (leitor.proximo(campos)) {
+                totalRegistros++;
+
+                // Formato esperado: CNPJ;RazaoSocial;Trimestre;Ano;ValorDespesas
+                if (campos.camposPreenchidos() < 5) {
+                    System.out.println("[ERRO] Linha " + totalRegistros + " com formato incorreto");
+                    continue;
+                }
+
+                // 1. Validação (só marca no log; o registro segue, como no ValidadorDados)
+                String cnpj = campos.textoSemEspacos(0);
+                String razaoSocial = campos.textoSemEspacos(1);
+                String motivos = ValidadorDados.motivosInvalidez(cnpj, razaoSocial, campos.campo(campos.camposPreenchidos() - 1));
+                if (!motivos.isEmpty()) {
+                    registrosInvalidos++;
+                    System.out.println("[AVISO]" + motivos + " | CNPJ: " + cnpj);
+                }
+
+                // 2. Join com o cadastro pelo CNPJ
+                EnriquecedorDados.Operadora operadora = operadoras.apply(cnpj);
+                if (operadora == null) semMatch++;
+
+                if (intermediarios) {
+                    validado.bruto(campos).fimLinha();
+                    EnriquecedorDados.escreverEnriquecido(enriquecido, campos, operadora);
+                }
+
+                // 3. Agregação por RazaoSocial/UF
+                if (operadora == null || operadora.uf.isEmpty() || razaoSocial.isEmpty()) {
+                    linhasIgnoradas++;
+                    continue;
+                }
+                long valor = campos.centavos(4);
+                if (valor == Dinheiro.INVALIDO) {
+                    linhasIgnoradas++;
+                    System.out.println("[ERRO na linha] valor invalido: " + campos.texto(4));
+                    continue;
+                }
+                AgregadorDespesas.agregar(agregacoes, cnpj, razaoSocial, operadora.uf, campos.textoSemEspacos(2), valor);
+                linhasProcessadas++;
+            }
+
+        } catch (IOException e) {
+            System.out.println("[ERRO] ao processar arquivo: " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
+
+        System.out.println("\n=== VALIDACAO + ENRIQUECIMENTO (passada unica) ===");
+        System.out.println("Total de registros: " + totalRegistros);
+        System.out.println("Registros invalidos: " + registrosInvalidos);
+        System.out.println("Sem match no cadastro: " + semMatch);
+        if (intermediarios) {
+            System.out.println("Intermediarios gravados em: " + PASTA_SAIDA);
+        }
+
+        AgregadorDespesas.escreverAgregado(agregacoes, PASTA_SAIDA + "despesas_agregadas.csv",
+            linhasProcessadas, linhasIgnoradas);
+
+        System.out.println(String.format("%nPipeline fundido concluido em %.1f s",
+            (System.nanoTime() - inicio) / 1_000_000_000.0));
+    }
+}
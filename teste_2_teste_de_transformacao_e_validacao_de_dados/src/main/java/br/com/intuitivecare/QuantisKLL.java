@@ -0,0 +1,197 @@
+package main.java.br.com.intuitivecare;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Esboço KLL (Karnin, Lang, Liberty) para quantis aproximados: mediana, p90, p99
+ *
+ * Guarda cerca de k / (1 - C) = 3·k valores por esboço (~600 com o k
+ * padrão de 200, mais um ou dois por nível pelo arredondamento), qualquer
+ * que seja o número de despesas: os valores ficam em níveis, o de cima com
+ * capacidade k e cada um abaixo com C = 2/3 do anterior. Quando um nível
+ * enche, ele é ordenado e metade dos valores (um sim, um não) sobe para o
+ * nível de cima com o dobro do peso. Até encher o primeiro nível (k valores)
+ * os quantis são exatos.
+ *
+ * Esboços podem ser juntados (juntar), então cada bloco/thread tem o seu e
+ * a soma sai no fim, como as demais estatísticas do AgregadorDespesas.
+ *
+ * O deslocamento da compactação alterna entre 0 e 1 em vez de ser
+ * aleatório: o resultado é sempre o mesmo para a mesma entrada.
+ */
+public class QuantisKLL {
+
+    private static final int K_PADRAO = 200;
+    private static final double C = 2.0 / 3.0;
+
+    private final int k;
+    private double[][] niveis = new double[0][];
+    private int[] tamanhos = new int[0];
+    private int altura = 0;
+    private long contagem = 0;
+    private boolean deslocamento = false;
+
+    public QuantisKLL() {
+        this(K_PADRAO);
+    }
+
+    public QuantisKLL(int k) {
+        this.k = Math.max(8, k);
+        adicionarNivel();
+    }
+
+    public void adicionar(double valor) {
+        contagem++;
+        inserir(0, valor);
+        if (tamanhoTotal() >= capacidadeTotal()) comprimir();
+    }
+
+    /**
+     * Junta outro esboço neste (o outro não é alterado)
+     */
+    public void juntar(QuantisKLL outro) {
+        while (altura < outro.altura) adicionarNivel();
+        for (int h = 0; h < outro.altura; h++) {
+            for (int i = 0; i < outro.tamanhos[h]; i++) inserir(h, outro.niveis[h][i]);
+        }
+        contagem += outro.contagem;
+        while (tamanhoTotal() >= capacidadeTotal()) comprimir();
+    }
+
+    public long contagem() {
+        return contagem;
+    }
+
+    /**
+     * Grava o esboço (usado pelo EstadoAgregado)
+     */
+    public void gravar(DataOutputStream saida) throws IOException {
+        saida.writeInt(k);
+        saida.writeLong(contagem);
+        saida.writeBoolean(deslocamento);
+        saida.writeInt(altura);
+        for (int h = 0; h < altura; h++) {
+            saida.writeInt(tamanhos[h]);
+            for (int i = 0; i < tamanhos[h]; i++) saida.writeDouble(niveis[h][i]);
+        }
+    }
+
+    public static QuantisKLL ler(DataInputStream entrada) throws IOException {
+        QuantisKLL esboco = new QuantisKLL(entrada.readInt());
+        esboco.contagem = entrada.readLong();
+        esboco.deslocamento = entrada.readBoolean();
+        int altura = entrada.readInt();
+        while (esboco.altura < altura) esboco.adicionarNivel();
+        for (int h = 0; h < altura; h++) {
+            int tamanho = entrada.readInt();
+            for (int i = 0; i < tamanho; i++) esboco.inserir(h, entrada.readDouble());
+        }
+        return esboco;
+    }
+
+    /**
+     * Quantil q (0 a 1): menor valor com peso acumulado >= q * contagem
+     * Retorna 0 se o esboço estiver vazio
+     */
+    public double quantil(double q) {
+        return quantis(q)[0];
+    }
+
+    // Vários quantis com uma única ordenação
+    public double[] quantis(double... qs) {
+        double[] resultado = new double[qs.length];
+        int total = tamanhoTotal();
+        if (total == 0) return resultado;
+
+        // Valor e peso (2^nível) de cada item, ordenados pelo valor
+        double[] valores = new double[total];
+        long[] pesos = new long[total];
+        int n = 0;
+        for (int h = 0; h < altura; h++) {
+            for (int i = 0; i < tamanhos[h]; i++) {
+                valores[n] = niveis[h][i];
+                pesos[n] = 1L << h;
+                n++;
+            }
+        }
+        Integer[] ordem = new Integer[total];
+        for (int i = 0; i < total; i++) ordem[i] = i;
+        Arrays.sort(ordem, (a, b) -> Double.compare(valores[a], valores[b]));
+
+        long pesoTotal = 0;
+        for (long p : pesos) pesoTotal += p;
+
+        for (int j = 0; j < qs.length; j++) {
+            double alvo = qs[j] * pesoTotal;
+            long acumulado = 0;
+            resultado[j] = valores[ordem[total - 1]];
+            for (int i = 0; i < total; i++) {
+                acumulado += pesos[ordem[i]];
+                if (acumulado >= alvo) {
+                    resultado[j] = valores[ordem[i]];
+                    break;
+                }
+            }
+        }
+        return resultado;
+    }
+
+    // Capacidade do nível h: k no topo, diminuindo por C a cada nível abaixo (mínimo 2)
+    private int capacidade(int h) {
+        return Math.max(2, (int) Math.ceil(k * Math.pow(C, altura - h - 1)));
+    }
+
+    private int capacidadeTotal() {
+        int total = 0;
+        for (int h = 0; h < altura; h++) total += capacidade(h);
+        return total;
+    }
+
+    private int tamanhoTotal() {
+        int total = 0;
+        for (int h = 0; h < altura; h++) total += tamanhos[h];
+        return total;
+    }
+
+    private void inserir(int h, double valor) {
+        if (tamanhos[h] == niveis[h].length) {
+            niveis[h] = Arrays.copyOf(niveis[h], Math.max(8, niveis[h].length * 2));
+        }
+        niveis[h][tamanhos[h]++] = valor;
+    }
+
+    private void adicionarNivel() {
+        niveis = Arrays.copyOf(niveis, altura + 1);
+        tamanhos = Arrays.copyOf(tamanhos, altura + 1);
+        niveis[altura] = new double[8];
+        altura++;
+    }
+
+    // Compacta os níveis cheios, de baixo para cima, até caber na capacidade
+    private void comprimir() {
+        for (int h = 0; h < altura; h++) {
+            if (tamanhos[h] < capacidade(h)) continue;
+            if (h + 1 >= altura) adicionarNivel();
+
+            double[] nivel = niveis[h];
+            int tamanho = tamanhos[h];
+            Arrays.sort(nivel, 0, tamanho);
+
+            // Com quantidade ímpar, o maior valor fica neste nível
+            int pares = tamanho - (tamanho % 2);
+            int inicio = deslocamento ? 1 : 0;
+            deslocamento = !deslocamento;
+            for (int i = inicio; i < pares; i += 2) inserir(h + 1, nivel[i]);
+
+            if (tamanho % 2 == 1) {
+                nivel[0] = nivel[tamanho - 1];
+                tamanhos[h] = 1;
+            } else {
+                tamanhos[h] = 0;
+            }
+
+            if (tamanhoTotal() < capacidadeTotal()) break;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package main.java.br.com.intuitivecare;
+
+import main.java.br.com.intuitivecare.AgregadorDespesas.EstatisticasOperadora;
+import main.java.br.com.intuitivecare.comum.Dinheiro;
+import main.java.br.com.intuitivecare.comum.EscritorCSV;
+import main.java.br.com.intuitivecare.comum.LeitorCSV;
+import main.java.br.com.intuitivecare.comum.LinhaCSV;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Detecção de trimestres republicados pela ANS (--revisoes)
+ *
+ * A ANS às vezes republica trimestres antigos com correções. O Teste 1 com
+ * --manifesto já baixa de novo o ZIP que mudou; aqui descobrimos o que
+ * mudou dentro dele e reprocessamos só isso.
+ *
+ * Resumo Merkle (output/resumo_merkle.csv), calculado do consolidado do Teste 1:
+ * - folha: hash do conteúdo de uma operadora (CNPJ) num trimestre, soma dos
+ *   hashes das linhas (não depende da ordem das linhas)
+ * - raiz do trimestre: SHA-256 das folhas ordenadas por CNPJ
+ * - raiz geral: SHA-256 das raízes dos trimestres
+ *
+ * Numa nova execução, trimestres com a mesma raiz são pulados; nos que
+ * mudaram, as folhas dizem quais operadoras foram alteradas, incluídas ou
+ * removidas. Só essas são consultadas no cadastro (as demais reaproveitam a
+ * UF gravada no resumo) e só os grupos RazaoSocial/UF delas são agregados
+ * de novo no EstadoAgregado; a saída sai da junção dos parciais.
+ * Trimestres que ainda não estão no estado (ou no resumo) são agregados inteiros.
+ *
+ * Regras de agregação iguais às do PipelineFundido (sem match no cadastro,
+ * sem UF ou valor inválido ficam de fora). Supõe uma razão social por
+ * operadora em cada trimestre, como sai do Teste 1.
+ *
+ * Saídas: resumo_merkle.csv, revisoes.csv (Trimestre;CNPJ;Situacao),
+ * despesas_agregadas.csv e despesas_por_uf.csv
+ */
+public class RevisaoTrimestres {
+
+    private static final String CAMINHO_ENTRADA = "teste_1_api_integracao/output/consolidado_despesas.csv";
+    private static final String PASTA_SAIDA = "teste_2_teste_de_transformacao_e_validacao_de_dados/output/";
+    static final String CAMINHO_RESUMO = PASTA_SAIDA + "resumo_merkle.csv";
+    private static final String CABECALHO_RESUMO = "Tipo;Trimestre;CNPJ;Hash;Linhas;RazaoSocial;UF";
+
+    /**
+     * Folha do resumo: conteúdo de uma operadora num trimestre
+     */
+    static class Folha {
+        long soma = 0; // Soma dos hashes das linhas
+        int linhas = 0;
+        String razaoSocial = "";
+        String uf = null; // null = ainda não consultada no cadastro; "" = fora da agregação
+        String hash = null;
+
+        void adicionarLinha(long hashLinha, String razaoSocial) {
+            if (linhas == 0) this.razaoSocial = razaoSocial;
+            soma += hashLinha;
+            linhas++;
+        }
+
+        String fechar() {
+            if (hash == null) hash = String.format("%016x", HyperLogLog.hash64(soma + ":" + linhas));
+            return hash;
+        }
+
+        // Grupo RazaoSocial/UF em que as linhas dessa operadora são agregadas (null = nenhum)
+        String grupo() {
+            if (uf == null || uf.isEmpty() || razaoSocial.isEmpty()) return null;
+            return razaoSocial + ";" + uf;
+        }
+    }
+
+    /**
+     * Resumo: trimestre ("2024/1T") -> CNPJ -> folha
+     */
+    static class Resumo {
+        final Map<String, Map<String, Folha>> trimestres = new TreeMap<>();
+
+        Folha folha(String trimestre, String cnpj) {
+            return trimestres.computeIfAbsent(trimestre, k -> new TreeMap<>()).computeIfAbsent(cnpj, k -> new Folha());
+        }
+
+        String raizTrimestre(String trimestre) {
+            StringBuilder conteudo = new StringBuilder();
+            for (Map.Entry<String, Folha> e : trimestres.get(trimestre).entrySet()) {
+                conteudo.append(e.getKey()).append('=').append(e.getValue().fechar()).append('\n');
+            }
+            return sha256(conteudo.toString());
+        }
+
+        String raiz() {
+            StringBuilder conteudo = new StringBuilder();
+            for (String trimestre : trimestres.keySet()) {
+                conteudo.append(trimestre).append('=').append(raizTrimestre(trimestre)).append('\n');
+            }
+            return sha256(conteudo.toString());
+        }
+
+        // Arquivo ausente ou ilegível = resumo vazio (tudo é tratado como novo)
+        static Resumo carregar(String caminho) {
+            Resumo resumo = new Resumo();
+            File arquivo = new File(caminho);
+            if (!arquivo.exists()) return resumo;
+
+            try (LeitorCSV leitor = LeitorCSV.abrir(caminho, StandardCharsets.UTF_8)) {
+                LinhaCSV campos = new LinhaCSV();
+                leitor.proximo(campos); // Pula header
+                while (leitor.proximo(campos)) {
+                    if (campos.campos() < 7 || !campos.igual(0, "OPERADORA")) continue;
+                    Folha folha = resumo.folha(campos.texto(1), campos.texto(2));
+                    folha.hash = campos.texto(3);
+                    folha.linhas = Integer.parseInt(campos.texto(4));
+                    folha.razaoSocial = campos.texto(5);
+                    folha.uf = campos.texto(6);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("[AVISO] resumo Merkle ilegivel (" + e.getMessage() + "), tratando todos os trimestres como novos");
+                return new Resumo();
+            }
+            return resumo;
+        }
+
+        void gravar(String caminho) throws IOException {
+            new File(caminho).getParentFile().mkdirs();
+            try (EscritorCSV escritor = EscritorCSV.abrir(caminho, StandardCharsets.UTF_8)) {
+                escritor.bruto(CABECALHO_RESUMO).fimLinha();
+                int totalLinhas = 0;
+                for (Map<String, Folha> folhas : trimestres.values()) {
+                    for (Folha folha : folhas.values()) totalLinhas += folha.linhas;
+                }
+                escritor.campo("RAIZ").campo("").campo("").campo(raiz()).campo(totalLinhas).campo("").campo("").fimLinha();
+                for (Map.Entry<String, Map<String, Folha>> t : trimestres.entrySet()) {
+                    int linhas = 0;
+                    for (Folha folha : t.getValue().values()) linhas += folha.linhas;
+                    escritor.campo("TRIMESTRE").campo(t.getKey()).campo("").campo(raizTrimestre(t.getKey()))
+                        .campo(linhas).campo("").campo("").fimLinha();
+                }
+                for (Map.Entry<String, Map<String, Folha>> t : trimestres.entrySet()) {
+                    for (Map.Entry<String, Folha> e : t.getValue().entrySet()) {
+                        Folha folha = e.getValue();
+                        // Razão social com ';' sai entre aspas (RFC 4180)
+                        escritor.campo("OPERADORA").campo(t.getKey()).campo(e.getKey()).campo(folha.fechar())
+                            .campo(folha.linhas).campo(folha.razaoSocial).campo(folha.uf == null ? "" : folha.uf)
+                            .fimLinha();
+                    }
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        long inicio = System.nanoTime();
+
+        // 1. Resumo do consolidado atual (só hashes, sem enriquecer nada)
+        Resumo novo = new Resumo();
+        try {
+            calcularResumo(CAMINHO_ENTRADA, novo);
+        } catch (IOException e) {
+            System.out.println("[ERRO] ao ler consolidado: " + e.getMessage());
+            return;
+        }
+        Resumo anterior = Resumo.carregar(CAMINHO_RESUMO);
+        EstadoAgregado estado = EstadoAgregado.carregar(EstadoAgregado.CAMINHO);
+
+        System.out.println("Raiz anterior: " + (anterior.trimestres.isEmpty() ? "(nenhuma)" : anterior.raiz()));
+
+        // 2. Diff por trimestre e por operadora
+        Set<String> inteiros = new TreeSet<>();                // Trimestres agregados do zero
+        Map<String, Set<String>> alteradas = new TreeMap<>();  // Trimestre -> CNPJs alterados/incluídos/removidos
+        List<String> revisoes = new ArrayList<>();
+
+        for (String trimestre : novo.trimestres.keySet()) {
+            if (!anterior.trimestres.containsKey(trimestre) || !estado.trimestres().contains(trimestre)) {
+                inteiros.add(trimestre);
+                revisoes.add(trimestre + ";;TRIMESTRE_NOVO");
+                continue;
+            }
+            if (novo.raizTrimestre(trimestre).equals(anterior.raizTrimestre(trimestre))) continue;
+
+            Map<String, Folha> folhasNovas = novo.trimestres.get(trimestre);
+            Map<String, Folha> folhasAntigas = anterior.trimestres.get(trimestre);
+            Set<String> cnpjs = new TreeSet<>();
+            for (Map.Entry<String, Folha> e : folhasNovas.entrySet()) {
+                Folha antiga = folhasAntigas.get(e.getKey());
+                if (antiga == null) {
+                    cnpjs.add(e.getKey());
+                    revisoes.add(trimestre + ";" + e.getKey() + ";INCLUIDA");
+                } else if (!antiga.hash.equals(e.getValue().fechar())) {
+                    cnpjs.add(e.getKey());
+                    revisoes.add(trimestre + ";" + e.getKey() + ";ALTERADA");
+                }
+            }
+            for (String cnpj : folhasAntigas.keySet()) {
+                if (!folhasNovas.containsKey(cnpj)) {
+                    cnpjs.add(cnpj);
+                    revisoes.add(trimestre + ";" + cnpj + ";REMOVIDA");
+                }
+            }
+            alteradas.put(trimestre, cnpjs);
+        }
+
+        // 3. UF de cada operadora: reaproveita do resumo anterior; cadastro só para as alteradas/novas
+        Function<String, EnriquecedorDados.Operadora> operadoras = null;
+        int consultadas = 0;
+        for (Map.Entry<String, Map<String, Folha>> t : novo.trimestres.entrySet()) {
+            Map<String, Folha> folhasAntigas = anterior.trimestres.getOrDefault(t.getKey(), Collections.emptyMap());
+            Set<String> cnpjsAlterados = alteradas.getOrDefault(t.getKey(), Collections.emptySet());
+            for (Map.Entry<String, Folha> e : t.getValue().entrySet()) {
+                Folha antiga = folhasAntigas.get(e.getKey());
+                if (antiga != null && !inteiros.contains(t.getKey()) && !cnpjsAlterados.contains(e.getKey())) {
+                    e.getValue().uf = antiga.uf;
+                    continue;
+                }
+                if (operadoras == null) operadoras = EnriquecedorDados.carregarCadastro(args);
+                EnriquecedorDados.Operadora operadora = operadoras.apply(e.getKey());
+                e.getValue().uf = operadora == null ? "" : operadora.uf;
+                consultadas++;
+            }
+        }
+
+        // Grupos afetados em cada trimestre alterado: os de antes e os de agora das operadoras alteradas
+        Map<String, Set<String>> gruposAfetados = new TreeMap<>();
+        for (Map.Entry<String, Set<String>> t : alteradas.entrySet()) {
+            Set<String> grupos = new HashSet<>();
+            for (String cnpj : t.getValue()) {
+                Folha antiga = anterior.trimestres.get(t.getKey()).get(cnpj);
+                Folha atual = novo.trimestres.get(t.getKey()).get(cnpj);
+                if (antiga != null && antiga.grupo() != null) grupos.add(antiga.grupo());
+                if (atual != null && atual.grupo() != null) grupos.add(atual.grupo());
+            }
+            gruposAfetados.put(t.getKey(), grupos);
+        }
+
+        // 4. Reagrega só o necessário
+        Map<String, Map<String, EstatisticasOperadora>> recalculados = new TreeMap<>();
+        int[] contadores = {0, 0}; // processadas, ignoradas
+        if (!inteiros.isEmpty() || !gruposAfetados.isEmpty()) {
+            try {
+                reagregar(CAMINHO_ENTRADA, novo, inteiros, gruposAfetados, recalculados, contadores);
+            } catch (IOException e) {
+                System.out.println("[ERRO] ao reagregar: " + e.getMessage());
+                return;
+            }
+        }
+
+        for (String trimestre : inteiros) {
+            estado.substituir(trimestre, recalculados.getOrDefault(trimestre, Collections.emptyMap()));
+        }
+        for (Map.Entry<String, Set<String>> t : gruposAfetados.entrySet()) {
+            Map<String, EstatisticasOperadora> grupos = new TreeMap<>(estado.grupos(t.getKey()));
+            grupos.keySet().removeAll(t.getValue());
+            grupos.putAll(recalculados.getOrDefault(t.getKey(), Collections.emptyMap()));
+            estado.substituir(t.getKey(), grupos);
+        }
+
+        int gruposReagregados = 0;
+        for (Set<String> grupos : gruposAfetados.values()) gruposReagregados += grupos.size();
+        int operadorasAlteradas = 0;
+        for (Set<String> cnpjs : alteradas.values()) operadorasAlteradas += cnpjs.size();
+
+        System.out.println("\n=== REVISOES DE TRIMESTRES ===");
+        System.out.println("Trimestres no consolidado: " + novo.trimestres.keySet());
+        System.out.println("Trimestres novos (agregados inteiros): " + inteiros);
+        System.out.println("Trimestres revisados: " + alteradas.keySet()
+            + " | operadoras alteradas: " + operadorasAlteradas + " | grupos reagregados: " + gruposReagregados);
+        System.out.println("Operadoras consultadas no cadastro: " + consultadas);
+
+        // 5. Grava estado, resumo (mantém trimestres que saíram do consolidado) e saídas
+        for (Map.Entry<String, Map<String, Folha>> t : anterior.trimestres.entrySet()) {
+            novo.trimestres.putIfAbsent(t.getKey(), t.getValue());
+        }
+        try {
+            if (!inteiros.isEmpty() || !alteradas.isEmpty()) estado.gravar(EstadoAgregado.CAMINHO);
+            novo.gravar(CAMINHO_RESUMO);
+            gravarRevisoes(PASTA_SAIDA + "revisoes.csv", revisoes);
+        } catch (IOException e) {
+            System.out.println("[ERRO] ao gravar estado/resumo: " + e.getMessage());
+            return;
+        }
+        System.out.println("Raiz atual: " + novo.raiz());
+
+        AgregadorDespesas.escreverAgregado(estado.consolidar(), PASTA_SAIDA + "despesas_agregadas.csv",
+            contadores[0], contadores[1]);
+
+        System.out.println(String.format("%nRevisao concluida em %.1f s", (System.nanoTime() - inicio) / 1_000_000_000.0));
+    }
+
+    // Passada 1: folhas de cada operadora/trimestre
+    private static void calcularResumo(String caminho, Resumo resumo) throws IOException {
+        try (LeitorCSV leitor = LeitorCSV.abrir(caminho, StandardCharsets.UTF_8)) {
+            LinhaCSV campos = new LinhaCSV();
+            leitor.proximo(campos); // Pula header
+            while (leitor.proximo(campos)) {
+                // Formato esperado: CNPJ;RazaoSocial;Trimestre;Ano;ValorDespesas
+                if (campos.camposPreenchidos() < 5) continue;
+                String cnpj = campos.textoSemEspacos(0);
+                String razaoSocial = campos.textoSemEspacos(1);
+                String trimestre = EstadoAgregado.chaveTrimestre(campos.texto(3), campos.texto(2));
+
+                // Valor normalizado em centavos: "1.50" e "1.5" não contam como revisão
+                long centavos = campos.centavos(4);
+                String valor = centavos == Dinheiro.INVALIDO ? campos.textoSemEspacos(4) : Long.toString(centavos);
+                long hashLinha = HyperLogLog.hash64(cnpj + ";" + razaoSocial + ";" + trimestre + ";" + valor);
+
+                resumo.folha(trimestre, cnpj).adicionarLinha(hashLinha, razaoSocial);
+            }
+        }
+    }
+
+    // Passada 2: agrega as linhas dos trimestres inteiros e dos grupos afetados
+    private static void reagregar(String caminho, Resumo resumo, Set<String> inteiros,
+                                  Map<String, Set<String>> gruposAfetados,
+                                  Map<String, Map<String, EstatisticasOperadora>> recalculados,
+                                  int[] contadores) throws IOException {
+        try (LeitorCSV leitor = LeitorCSV.abrir(caminho, StandardCharsets.UTF_8)) {
+            LinhaCSV campos = new LinhaCSV();
+            leitor.proximo(campos); // Pula header
+            while (leitor.proximo(campos)) {
+                if (campos.camposPreenchidos() < 5) continue;
+                String trimestre = EstadoAgregado.chaveTrimestre(campos.texto(3), campos.texto(2));
+                Set<String> afetados = gruposAfetados.get(trimestre);
+                if (afetados == null && !inteiros.contains(trimestre)) continue;
+
+                String cnpj = campos.textoSemEspacos(0);
+                String razaoSocial = campos.textoSemEspacos(1);
+                String uf = resumo.trimestres.get(trimestre).get(cnpj).uf;
+                if (uf.isEmpty() || razaoSocial.isEmpty()) {
+                    contadores[1]++;
+                    continue;
+                }
+                if (afetados != null && !afetados.contains(razaoSocial + ";" + uf)) continue;
+
+                long valor = campos.centavos(4);
+                if (valor == Dinheiro.INVALIDO) {
+                    contadores[1]++;
+                    System.out.println("[ERRO na linha] valor invalido: " + campos.texto(4));
+                    continue;
+                }
+                AgregadorDespesas.agregar(recalculados.computeIfAbsent(trimestre, k -> new TreeMap<>()),
+                    cnpj, razaoSocial, uf, campos.textoSemEspacos(2), valor);
+                contadores[0]++;
+            }
+        }
+    }
+
+    private static void gravarRevisoes(String caminho, List<String> revisoes) throws IOException {
+        try (BufferedWriter escritor = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(caminho), StandardCharsets.UTF_8))) {
+            escritor.write("Trimestre;CNPJ;Situacao");
+            escritor.newLine();
+            for (String revisao : revisoes) {
+                escritor.write(revisao);
+                escritor.newLine();
+            }
+        }
+    }
+
+    private static String sha256(String conteudo) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(conteudo.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : hash) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,6 +1,17 @@
 package main.java.br.com.intuitivecare;
 
+import main.java.br.com.intuitivecare.comum.ArquivoColunar;
+import main.java.br.com.intuitivecare.comum.CNPJ;
+import main.java.br.com.intuitivecare.comum.Coluna;
+import main.java.br.com.intuitivecare.comum.Dinheiro;
+import main.java.br.com.intuitivecare.comum.EscritorCSV;
+import main.java.br.com.intuitivecare.comum.IndiceParticoes;
+import main.java.br.com.intuitivecare.comum.LeitorCSV;
+import main.java.br.com.intuitivecare.comum.LinhaCSV;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
 
 /**
@@ -11,69 +22,62 @@ import java.util.*;
  * 
  * Estratégia para CNPJs inválidos: MARCAR (não rejeita, marca com [INVALIDO])
  * Justificativa: Preserva dados para análise e reportagem, mas identifica problemas
+ * 
+ * Com --colunar, lê o consolidado_despesas.col do Teste 1 (comum.ArquivoColunar)
+ * carregando só CNPJ, RazaoSocial e ValorDespesas, e grava o validado em .col
+ * 
+ * Com --ano=2024 e/ou --trimestre=1T,2T (ou --particionado), lê só as
+ * partições Ano/Trimestre correspondentes do consolidado do Teste 1
  */
 public class ValidadorDados {
     
+    // Partições Ano/Trimestre do consolidado (Teste 1 com --particionar) e as do Teste 2
+    static final String PARTICOES_TESTE1 = "teste_1_api_integracao/output/particoes";
+    static final String PARTICOES = "teste_2_teste_de_transformacao_e_validacao_de_dados/output/particoes";
+    
     /**
      * Valida CNPJ usando algoritmo de dígitos verificadores
      * Aceita formato com ou sem formatação (14 dígitos)
+     * Sem regex nem Strings intermediárias (ver comum.CNPJ)
      */
-    private static boolean validarCNPJ(String cnpj) {
-        // Remove caracteres de formatação
-        cnpj = cnpj.replaceAll("[^0-9]", "");
-        
-        // CNPJ deve ter exatamente 14 dígitos
-        if (cnpj.length() != 14) return false;
-        
-        // Rejeita sequências repetidas (00000000000000, 11111111111111, etc)
-        if (cnpj.matches("(\\d)\\1{13}")) return false;
-        
-        try {
-            // Calcula primeiro dígito verificador
-            int soma = 0;
-            int multiplicador = 5;
-            for (int i = 0; i < 8; i++) {
-                soma += (Integer.parseInt(String.valueOf(cnpj.charAt(i))) * multiplicador);
-                multiplicador = (multiplicador == 2) ? 9 : multiplicador - 1;
-            }
-            int dv1 = 11 - (soma % 11);
-            dv1 = (dv1 >= 10) ? 0 : dv1;
-            
-            // Calcula segundo dígito verificador
-            soma = 0;
-            multiplicador = 6;
-            for (int i = 0; i < 9; i++) {
-                soma += (Integer.parseInt(String.valueOf(cnpj.charAt(i))) * multiplicador);
-                multiplicador = (multiplicador == 2) ? 9 : multiplicador - 1;
-            }
-            int dv2 = 11 - (soma % 11);
-            dv2 = (dv2 >= 10) ? 0 : dv2;
-            
-            // Valida os dígitos verificadores
-            return (dv1 == Integer.parseInt(String.valueOf(cnpj.charAt(12)))) &&
-                   (dv2 == Integer.parseInt(String.valueOf(cnpj.charAt(13))));
-        } catch (Exception e) {
-            return false;
-        }
+    private static boolean validarCNPJ(CharSequence cnpj) {
+        return CNPJ.valido(cnpj);
     }
     
     /**
      * Valida se o valor é numérico e positivo (> 0)
      */
-    private static boolean validarValor(String valor) {
-        try {
-            double v = Double.parseDouble(valor.replace(",", "."));
-            return v > 0;
-        } catch (Exception e) {
-            return false;
-        }
+    private static boolean validarValor(CharSequence valor) {
+        // INVALIDO é Long.MIN_VALUE, então texto não numérico também falha aqui
+        return Dinheiro.centavos(valor) > 0;
     }
     
     /**
      * Valida se Razão Social não está vazia
      */
-    private static boolean validarRazaoSocial(String razaoSocial) {
-        return razaoSocial != null && !razaoSocial.trim().isEmpty();
+    private static boolean validarRazaoSocial(CharSequence razaoSocial) {
+        if (razaoSocial == null) return false;
+        for (int i = 0; i < razaoSocial.length(); i++) {
+            if (razaoSocial.charAt(i) > ' ') return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Motivos de invalidez de um registro (" CNPJ_INVALIDO RAZAO_VAZIA ...")
+     * String vazia se o registro for válido (aceita as vistas da LinhaCSV)
+     */
+    static String motivosInvalidez(CharSequence cnpj, CharSequence razaoSocial, CharSequence valor) {
+        return motivos(validarCNPJ(cnpj), validarRazaoSocial(razaoSocial), validarValor(valor));
+    }
+    
+    // Mesmo texto a partir das checagens já feitas (usado também pelo modo colunar)
+    private static String motivos(boolean cnpjValido, boolean razaoValida, boolean valorValido) {
+        String motivos = "";
+        if (!cnpjValido) motivos += " CNPJ_INVALIDO";
+        if (!razaoValida) motivos += " RAZAO_VAZIA";
+        if (!valorValido) motivos += " VALOR_INVALIDO";
+        return motivos;
     }
     
     /**
@@ -81,77 +85,224 @@ public class ValidadorDados {
      * Marca registros inválidos com [INVALIDO] mas os mantém no arquivo
      */
     public static void main(String[] args) {
-        String caminhoEntrada = "teste_1_api_integracao/output/consolidado_despesas.csv";
-        String caminhoSaida = "teste_2_teste_de_transformacao_e_validacao_de_dados/output/consolidado_despesas_validado.csv";
-        new java.io.File(caminhoSaida).getParentFile().mkdirs();
+        boolean colunar = args != null && Arrays.asList(args).contains("--colunar");
+        boolean intermediarios = args != null && Arrays.asList(args).contains("--intermediarios");
+        
+        // Total, válidos e inválidos (somados entre as partições, se houver)
+        int[] contagem = new int[3];
         
-        int totalRegistros = 0;
-        int registrosValidos = 0;
-        int registrosInvalidos = 0;
+        try {
+            String caminhoSaida;
+            if (IndiceParticoes.particionado(args)) {
+                caminhoSaida = validarParticoes(args, colunar, intermediarios, contagem);
+                if (caminhoSaida == null) return;
+            } else if (colunar) {
+                String caminhoEntrada = "teste_1_api_integracao/output/consolidado_despesas.col";
+                if (!consolidadoExiste(caminhoEntrada)) return;
+                caminhoSaida = "teste_2_teste_de_transformacao_e_validacao_de_dados/output/consolidado_despesas_validado.col";
+                validarColunar(caminhoEntrada, caminhoSaida, intermediarios, contagem);
+            } else {
+                String caminhoEntrada = "teste_1_api_integracao/output/consolidado_despesas.csv";
+                if (!consolidadoExiste(caminhoEntrada)) return;
+                caminhoSaida = "teste_2_teste_de_transformacao_e_validacao_de_dados/output/consolidado_despesas_validado.csv";
+                validarCSV(caminhoEntrada, caminhoSaida, contagem);
+            }
+            
+            System.out.println("\n=== VALIDACAO CONCLUIDA ===");
+            System.out.println("Total de registros: " + contagem[0]);
+            System.out.println("Registros validos: " + contagem[1]);
+            System.out.println("Registros invalidos: " + contagem[2]);
+            System.out.println("Arquivo gerado: " + caminhoSaida);
+            
+        } catch (IOException e) {
+            System.out.println("[ERRO] ao processar arquivo: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Consolidado do Teste 1 presente? Com --formato-saida=gzip ou binario o
+     * Teste 1 não gera o .csv/.col (e apaga o de uma execução anterior)
+     */
+    static boolean consolidadoExiste(String caminho) {
+        if (new java.io.File(caminho).exists()) return true;
+        System.out.println("[ERRO] Consolidado nao encontrado: " + caminho
+            + " (rode o Teste 1 com --formato-saida=csv ou colunar; gzip e binario nao geram o arquivo lido aqui)");
+        return false;
+    }
+    
+    /**
+     * Valida um consolidado em CSV, gravando o validado em caminhoSaida
+     * Retorna quantos registros foram gravados
+     */
+    private static int validarCSV(String caminhoEntrada, String caminhoSaida, int[] contagem) throws IOException {
+        new java.io.File(caminhoSaida).getParentFile().mkdirs();
+        int linhas = 0;
+        int gravados = 0;
         
+        // Campos separados pelo LeitorCSV (RFC 4180: razão social entre aspas pode ter ';')
         try (
-            BufferedReader leitor = new BufferedReader(new FileReader(caminhoEntrada));
-            BufferedWriter escritor = new BufferedWriter(new FileWriter(caminhoSaida))
+            LeitorCSV leitor = LeitorCSV.abrir(caminhoEntrada, StandardCharsets.UTF_8);
+            EscritorCSV escritor = EscritorCSV.abrir(caminhoSaida, StandardCharsets.UTF_8)
         ) {
-            String linha;
-            String cabecalho = null;
+            LinhaCSV campos = new LinhaCSV();
             
             // Lê e escreve cabeçalho
-            if ((cabecalho = leitor.readLine()) != null) {
-                escritor.write(cabecalho);
-                escritor.newLine();
+            if (leitor.proximo(campos)) {
+                escritor.bruto(campos).fimLinha();
             }
             
             // Processa cada linha
-            while ((linha = leitor.readLine()) != null) {
-                totalRegistros++;
+            while (leitor.proximo(campos)) {
+                linhas++;
+                contagem[0]++;
                 
-                String[] campos = linha.split(";");
-                if (campos.length < 5) {
-                    System.out.println("[ERRO] Linha " + totalRegistros + " com formato incorreto");
+                if (campos.camposPreenchidos() < 5) {
+                    System.out.println("[ERRO] Linha " + linhas + " com formato incorreto");
                     continue;
                 }
                 
                 // Formato esperado: CNPJ;RazaoSocial;Trimestre;Ano;ValorDespesas
-                String cnpj = campos[0].trim();
-                String razaoSocial = campos[1].trim();
                 // O valor está sempre na última coluna
-                String valor = campos[campos.length - 1].trim();
-                
-                // Valida cada campo
-                boolean cnpjValido = validarCNPJ(cnpj);
-                boolean razaoValida = validarRazaoSocial(razaoSocial);
-                boolean valorValido = validarValor(valor);
+                String motivos = motivosInvalidez(campos.campo(0), campos.campo(1), campos.campo(campos.camposPreenchidos() - 1));
                 
-                if (cnpjValido && razaoValida && valorValido) {
-                    registrosValidos++;
-                    escritor.write(linha);
+                if (motivos.isEmpty()) {
+                    contagem[1]++;
                 } else {
-                    registrosInvalidos++;
+                    contagem[2]++;
                     // NÃO marca com [INVALIDO], apenas loga o problema
                     // Isso mantém compatibilidade com próximos passos
-                    if (!cnpjValido || !razaoValida || !valorValido) {
-                        String motivos = "";
-                        if (!cnpjValido) motivos += " CNPJ_INVALIDO";
-                        if (!razaoValida) motivos += " RAZAO_VAZIA";
-                        if (!valorValido) motivos += " VALOR_INVALIDO";
-                        System.out.println("[AVISO]" + motivos + " | CNPJ: " + cnpj);
-                    }
-                    // Escreve a linha normal mesmo assim (para enriquecimento continuar)
-                    escritor.write(linha);
+                    System.out.println("[AVISO]" + motivos + " | CNPJ: " + campos.textoSemEspacos(0));
                 }
-                escritor.newLine();
+                // Escreve a linha como veio mesmo se inválida (para enriquecimento continuar)
+                escritor.bruto(campos).fimLinha();
+                gravados++;
             }
+        }
+        return gravados;
+    }
+    
+    /**
+     * Linha que o modo CSV descarta como "formato incorreto": sem ValorDespesas
+     * (no CSV, o campo vazio do fim não conta e a linha fica com menos de 5 campos)
+     */
+    static boolean linhaIncompleta(Coluna valores, int linha) {
+        return valores.valor(linha) == Dinheiro.INVALIDO && valores.texto(linha).isEmpty();
+    }
+    
+    /**
+     * Modo --colunar: mesmas regras e mesmos avisos do CSV, lendo só as 3 colunas validadas
+     * - razão social checada uma vez por entrada do dicionário, não por linha
+     * - CNPJ já vem como número (CNPJ.valido(long), sem texto)
+     * - bloco sem valor inválido e com mínimo > 0 (estatísticas do arquivo) dispensa
+     *   a checagem do valor linha a linha
+     * O validado sai em .col; o CSV só com --intermediarios
+     */
+    private static int validarColunar(String caminhoEntrada, String caminhoSaida, boolean intermediarios,
+                                      int[] contagem) throws IOException {
+        new java.io.File(caminhoSaida).getParentFile().mkdirs();
+        
+        try (ArquivoColunar arquivo = ArquivoColunar.abrir(caminhoEntrada)) {
+            Coluna cnpjs = arquivo.ler("CNPJ");
+            Coluna razoes = arquivo.ler("RazaoSocial");
+            Coluna valores = arquivo.ler("ValorDespesas");
             
-            System.out.println("\n=== VALIDACAO CONCLUIDA ===");
-            System.out.println("Total de registros: " + totalRegistros);
-            System.out.println("Registros validos: " + registrosValidos);
-            System.out.println("Registros invalidos: " + registrosInvalidos);
-            System.out.println("Arquivo gerado: " + caminhoSaida);
+            boolean[] razaoValida = new boolean[razoes.tamanhoDicionario()];
+            for (int codigo = 0; codigo < razaoValida.length; codigo++) {
+                razaoValida[codigo] = validarRazaoSocial(razoes.entrada(codigo));
+            }
+            
+            // Linhas que seguem para o enriquecimento (todas menos as incompletas)
+            int[] mantidas = new int[arquivo.linhas()];
+            int quantidade = 0;
             
+            for (ArquivoColunar.EstatisticasBloco bloco : arquivo.blocos("ValorDespesas")) {
+                boolean valoresPositivos = bloco.invalidos == 0 && bloco.minimo > 0;
+                
+                for (int i = bloco.inicio; i < bloco.inicio + bloco.linhas; i++) {
+                    contagem[0]++;
+                    
+                    if (linhaIncompleta(valores, i)) {
+                        System.out.println("[ERRO] Linha " + (i + 1) + " com formato incorreto");
+                        continue;
+                    }
+                    
+                    String motivos = motivos(CNPJ.valido(cnpjs.valor(i)), razaoValida[razoes.codigo(i)],
+                        valoresPositivos || valores.valor(i) > 0);
+                    
+                    if (motivos.isEmpty()) {
+                        contagem[1]++;
+                    } else {
+                        contagem[2]++;
+                        System.out.println("[AVISO]" + motivos + " | CNPJ: " + cnpjs.texto(i).trim());
+                    }
+                    mantidas[quantidade++] = i;
+                }
+            }
+            
+            Path saida = Paths.get(caminhoSaida);
+            if (quantidade == arquivo.linhas()) {
+                // Nada descartado: o validado é o próprio consolidado
+                Files.copy(Paths.get(caminhoEntrada), saida, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                List<Coluna> colunas = new ArrayList<>();
+                for (String nome : arquivo.colunas()) {
+                    colunas.add(arquivo.ler(nome).selecionar(mantidas, quantidade));
+                }
+                ArquivoColunar.gravar(caminhoSaida, colunas);
+            }
+            if (intermediarios) {
+                String csv = ArquivoColunar.caminhoCSV(caminhoSaida);
+                ArquivoColunar.exportarCSV(caminhoSaida, csv);
+                System.out.println("CSV exportado: " + csv);
+            }
+            return quantidade;
+        }
+    }
+    
+    /**
+     * Modo particionado (--ano, --trimestre ou --particionado): abre só as
+     * partições do Teste 1 que passam no filtro e grava o validado de cada uma
+     * em output/particoes, atualizando o índice do validado (as partições fora
+     * do filtro continuam como estavam). Retorna o caminho do índice, ou null
+     * se não houver partições do Teste 1 ou faltar o arquivo de alguma
+     * selecionada (nesse caso nada é gravado)
+     */
+    private static String validarParticoes(String[] args, boolean colunar, boolean intermediarios,
+                                           int[] contagem) throws IOException {
+        IndiceParticoes origem = IndiceParticoes.carregar(PARTICOES_TESTE1, "consolidado_despesas");
+        if (!origem.existe()) {
+            System.out.println("[ERRO] Indice de particoes nao encontrado: " + origem.arquivoIndice()
+                + " (rode o Teste 1 com --particionar)");
+            return null;
+        }
+        List<IndiceParticoes.Particao> selecionadas = origem.selecionar(args);
+        System.out.println("Particoes selecionadas: " + IndiceParticoes.chaves(selecionadas)
+            + " (de " + origem.particoes().size() + ")");
+        
+        String extensao = colunar ? ".col" : ".csv";
+        List<String> entradas = origem.caminhos(selecionadas, extensao);
+        if (entradas == null) return null;
+        
+        // Partições novas vão para a pasta desta execução; o índice anterior só é trocado no fim
+        IndiceParticoes destino = IndiceParticoes.carregar(PARTICOES, "consolidado_despesas_validado");
+        try {
+            for (int i = 0; i < selecionadas.size(); i++) {
+                IndiceParticoes.Particao particao = selecionadas.get(i);
+                String arquivo = destino.novoArquivo(particao.ano, particao.trimestre, "consolidado_despesas_validado" + extensao);
+                String caminhoSaida = destino.caminho(arquivo);
+                
+                int gravados = colunar
+                    ? validarColunar(entradas.get(i), caminhoSaida, intermediarios, contagem)
+                    : validarCSV(entradas.get(i), caminhoSaida, contagem);
+                destino.registrar(particao.ano, particao.trimestre, arquivo, gravados);
+            }
+            destino.gravar();
         } catch (IOException e) {
-            System.out.println("[ERRO] ao processar arquivo: " + e.getMessage());
-            e.printStackTrace();
+            destino.descartarExecucao();
+            throw e;
         }
+        destino.limpar();
+        return destino.arquivoIndice().toString();
     }
 }